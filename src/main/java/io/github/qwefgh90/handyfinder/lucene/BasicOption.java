@@ -1,5 +1,6 @@
 package io.github.qwefgh90.handyfinder.lucene;
 
+import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.INDEX_PROFILE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.KEYWORD_MODE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.TARGET_MODE;
 import io.github.qwefgh90.handyfinder.lucene.model.Directory;
@@ -7,6 +8,7 @@ import io.github.qwefgh90.handyfinder.lucene.model.Directory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -18,6 +20,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -45,6 +48,9 @@ public class BasicOption {
 	}
 
 	/**
+	 * Default exclude patterns are applied to a new option only.
+	 * An option which is saved before exclude patterns were added keeps indexing all directories.
+	 * A watch mode is also on for a new option only, because a watcher holds handles of all watched directories.
 	 * 
 	 * @return if file is not exist, return default object
 	 * @throws JsonParseException
@@ -55,8 +61,17 @@ public class BasicOption {
 	JsonMappingException, IOException {
 		if (!Files.exists(appDataJsonPath))
 			return new BasicOptionModel();
-		else 
-			return om.readValue(appDataJsonPath.toFile(), BasicOptionModel.class);
+		final JsonNode tree = om.readTree(appDataJsonPath.toFile());
+		final BasicOptionModel model = om.treeToValue(tree, BasicOptionModel.class);
+		if (!tree.has("excludePatterns")) {
+			LOG.info("Default exclude patterns are not applied to an existing option");
+			model.setExcludePatterns(new ArrayList<>());
+		}
+		if (!tree.has("watchMode")) {
+			LOG.info("A watch mode is off for an existing option");
+			model.setWatchMode(false);
+		}
+		return model;
 	}
 
 	/**
@@ -159,6 +174,47 @@ public class BasicOption {
 	public void setDiskUseLimit(int diskUseLimit) {
 		model.setDiskUseLimit(diskUseLimit);
 	}
+
+	public boolean isWatchMode() {
+		return model.isWatchMode();
+	}
+
+	public void setWatchMode(boolean watchMode) {
+		model.setWatchMode(watchMode);
+	}
+
+	/**
+	 * @return exclusion patterns which are applied to all directories
+	 */
+	public List<String> getExcludePatterns() {
+		return Collections.unmodifiableList(model.getExcludePatterns());
+	}
+
+	public void setExcludePatterns(List<String> excludePatterns) {
+		model.setExcludePatterns(new ArrayList<>(excludePatterns));
+	}
+
+	/**
+	 * @return if .gitignore and .ignore files are honoured return true
+	 */
+	public boolean isIgnoreFilesUsed() {
+		return model.isIgnoreFilesUsed();
+	}
+
+	public void setIgnoreFilesUsed(boolean ignoreFilesUsed) {
+		model.setIgnoreFilesUsed(ignoreFilesUsed);
+	}
+
+	/**
+	 * @return a profile of the index. an index is migrated when it's changed
+	 */
+	public INDEX_PROFILE getIndexProfile() {
+		return model.getIndexProfile();
+	}
+
+	public void setIndexProfile(INDEX_PROFILE indexProfile) {
+		model.setIndexProfile(indexProfile);
+	}
 	
 	public Path getAppDataJsonPath() {
 		return appDataJsonPath;
@@ -1,6 +1,7 @@
 package io.github.qwefgh90.handyfinder.lucene;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -15,6 +16,10 @@ public class BasicOptionModel {
 			this.maximumDocumentMBSize = _maximumDocumentMBSize;
 			this.keywordMode = _keywordMode;
 			this.diskUseLimit = _diskUseLimit;
+			this.watchMode = _watchMode;
+			this.excludePatterns = new ArrayList<>(_excludePatterns);
+			this.ignoreFilesUsed = _ignoreFilesUsed;
+			this.indexProfile = _indexProfile;
 			this.targetMode = EnumSet.of(TARGET_MODE.PATH, TARGET_MODE.CONTENT);
 		}
 
@@ -23,6 +28,10 @@ public class BasicOptionModel {
 		private final int _maximumDocumentMBSize = 20;
 		private final KEYWORD_MODE _keywordMode = KEYWORD_MODE.OR;
 		private final int _diskUseLimit = 100;
+		private final boolean _watchMode = true;
+		private final List<String> _excludePatterns = Arrays.asList(".git/", ".svn/", ".hg/", "node_modules/", "__pycache__/");
+		private final boolean _ignoreFilesUsed = false;
+		private final INDEX_PROFILE _indexProfile = INDEX_PROFILE.DEFAULT;
 
 		/**
 		 * json fields
@@ -36,13 +45,59 @@ public class BasicOptionModel {
 			OR, AND
 		};
 
+		/**
+		 * DEFAULT stores term vectors of contents and a path twice.
+		 * COMPACT drops them and compresses stored fields best.
+		 * Without term vectors, a touched, renamed or copied file reuses contents only from a text store,
+		 * so a file longer than a highlighted text or an evicted text is extracted again.
+		 */
+		public enum INDEX_PROFILE{
+			DEFAULT, COMPACT
+		}
+
 		private EnumSet<TARGET_MODE> targetMode;
 		private List<Directory> directoryList;
 		private int limitCountOfResult;
 		private int maximumDocumentMBSize;
 		private KEYWORD_MODE keywordMode;
 		private int diskUseLimit;
+		private boolean watchMode;
+		private List<String> excludePatterns; // patterns of all directories
+		private boolean ignoreFilesUsed; // .gitignore and .ignore
+		private INDEX_PROFILE indexProfile;
+
+		public INDEX_PROFILE getIndexProfile() {
+			return indexProfile;
+		}
+
+		public void setIndexProfile(INDEX_PROFILE indexProfile) {
+			this.indexProfile = indexProfile == null ? _indexProfile : indexProfile;
+		}
 		
+		public List<String> getExcludePatterns() {
+			return excludePatterns;
+		}
+
+		public void setExcludePatterns(List<String> excludePatterns) {
+			this.excludePatterns = excludePatterns == null ? new ArrayList<>() : excludePatterns;
+		}
+
+		public boolean isIgnoreFilesUsed() {
+			return ignoreFilesUsed;
+		}
+
+		public void setIgnoreFilesUsed(boolean ignoreFilesUsed) {
+			this.ignoreFilesUsed = ignoreFilesUsed;
+		}
+
+		public boolean isWatchMode() {
+			return watchMode;
+		}
+
+		public void setWatchMode(boolean watchMode) {
+			this.watchMode = watchMode;
+		}
+
 
 		public int getDiskUseLimit() {
 			return diskUseLimit;
@@ -0,0 +1,139 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import org.apache.tika.mime.MediaType;
+
+/**
+ * A cheap sniffer of magic bytes which rejects binaries without text before they're parsed.
+ * Only first bytes of a file are read.
+ * <br><br>Images, audio, video and executables are always rejected.
+ * Archives are rejected if no extractor supports them.
+ * Other formats (e.g. zip based documents and PDF) are not sniffed.
+ *
+ * @author qwefgh90
+ *
+ */
+final class BinarySniffer {
+	static final int MAGIC_SIZE = 16;
+
+	private static final MediaType EXECUTABLE = MediaType.application("x-executable");
+
+	private BinarySniffer(){
+	}
+
+	/**
+	 * @param path
+	 * @return if a file is a binary which can't be indexed return true
+	 * @throws IOException
+	 */
+	static boolean isUnindexable(Path path) throws IOException {
+		final Optional<MediaType> sniffed = sniff(path);
+		if(!sniffed.isPresent())
+			return false;
+		final String type = sniffed.get().getType();
+		if(type.equals("image") || type.equals("audio") || type.equals("video") || sniffed.get().equals(EXECUTABLE))
+			return true;
+		return !ContentsExtractor.isSupported(sniffed.get());
+	}
+
+	/**
+	 * @param path
+	 * @return a mime type of a known binary signature
+	 * @throws IOException
+	 */
+	static Optional<MediaType> sniff(Path path) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(MAGIC_SIZE);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			while(buffer.hasRemaining() && channel.read(buffer) != -1);
+		}
+		buffer.flip();
+		return Optional.ofNullable(sniff(buffer));
+	}
+
+	static MediaType sniff(ByteBuffer magic){
+		// images
+		if(startsWith(magic, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A))
+			return MediaType.image("png");
+		if(startsWith(magic, 0, 0xFF, 0xD8, 0xFF))
+			return MediaType.image("jpeg");
+		if(startsWith(magic, 0, "GIF87a") || startsWith(magic, 0, "GIF89a"))
+			return MediaType.image("gif");
+		if(startsWith(magic, 0, "BM") && magic.remaining() >= 14 && magic.get(6) == 0 && magic.get(7) == 0)
+			return MediaType.image("bmp");
+		if(startsWith(magic, 0, 'I', 'I', 0x2A, 0x00) || startsWith(magic, 0, 'M', 'M', 0x00, 0x2A))
+			return MediaType.image("tiff");
+		if(startsWith(magic, 0, 0x00, 0x00, 0x01, 0x00))
+			return MediaType.image("vnd.microsoft.icon");
+		if(startsWith(magic, 0, "RIFF") && startsWith(magic, 8, "WEBP"))
+			return MediaType.image("webp");
+		// audio and video
+		if(startsWith(magic, 0, "RIFF") && (startsWith(magic, 8, "WAVE") || startsWith(magic, 8, "AVI ")))
+			return startsWith(magic, 8, "WAVE") ? MediaType.audio("vnd.wave") : MediaType.video("x-msvideo");
+		if(startsWith(magic, 0, "ID3") || startsWith(magic, 0, 0xFF, 0xFB))
+			return MediaType.audio("mpeg");
+		if(startsWith(magic, 0, "fLaC"))
+			return MediaType.audio("x-flac");
+		if(startsWith(magic, 0, "OggS"))
+			return MediaType.audio("ogg");
+		if(startsWith(magic, 4, "ftyp"))
+			return MediaType.video("mp4");
+		if(startsWith(magic, 0, 0x1A, 0x45, 0xDF, 0xA3))
+			return MediaType.video("x-matroska");
+		// executables
+		if(startsWith(magic, 0, 0x7F, 'E', 'L', 'F') || (startsWith(magic, 0, "MZ") && !isText(magic, 2, 2))
+				|| startsWith(magic, 0, 0xFE, 0xED, 0xFA, 0xCE) || startsWith(magic, 0, 0xFE, 0xED, 0xFA, 0xCF)
+				|| startsWith(magic, 0, 0xCE, 0xFA, 0xED, 0xFE) || startsWith(magic, 0, 0xCF, 0xFA, 0xED, 0xFE)
+				|| startsWith(magic, 0, 0xCA, 0xFE, 0xBA, 0xBE))
+			return EXECUTABLE;
+		// archives
+		if(startsWith(magic, 0, '7', 'z', 0xBC, 0xAF, 0x27, 0x1C))
+			return MediaType.application("x-7z-compressed");
+		if(startsWith(magic, 0, "Rar!"))
+			return MediaType.application("x-rar-compressed");
+		if(startsWith(magic, 0, 0x1F, 0x8B))
+			return MediaType.application("gzip");
+		if(startsWith(magic, 0, "BZh"))
+			return MediaType.application("x-bzip2");
+		if(startsWith(magic, 0, 0xFD, '7', 'z', 'X', 'Z', 0x00))
+			return MediaType.application("x-xz");
+		if(startsWith(magic, 0, "SQLite format 3"))
+			return MediaType.application("x-sqlite3");
+		return null;
+	}
+
+	private static boolean isText(ByteBuffer magic, int offset, int length){
+		if(magic.remaining() < offset + length)
+			return false;
+		for(int i = 0; i < length; i++){
+			final int b = magic.get(magic.position() + offset + i) & 0xFF;
+			if(b < 0x20 || b >= 0x7F)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean startsWith(ByteBuffer magic, int offset, String ascii){
+		final byte[] bytes = ascii.getBytes(StandardCharsets.US_ASCII);
+		final int[] mark = new int[bytes.length];
+		for(int i = 0; i < bytes.length; i++)
+			mark[i] = bytes[i];
+		return startsWith(magic, offset, mark);
+	}
+
+	private static boolean startsWith(ByteBuffer magic, int offset, int... mark){
+		if(magic.remaining() < offset + mark.length)
+			return false;
+		for(int i = 0; i < mark.length; i++){
+			if((magic.get(magic.position() + offset + i) & 0xFF) != mark[i])
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,100 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fingerprints of contents of a file.
+ * <br><br>A sampled fingerprint is a size and a hash of a head, a middle and a tail of a file.
+ * It's cheap and used as a key to find documents with same contents.
+ * A full hash is computed only when a sampled fingerprint collides with another file.
+ * If a file is smaller than samples, a sampled fingerprint is a full hash.
+ *
+ * @author qwefgh90
+ *
+ */
+final class ContentFingerprint {
+	static final int SAMPLE_SIZE = 16 * 1024;
+	static final int SAMPLE_COUNT = 3;
+
+	private ContentFingerprint(){
+	}
+
+	/**
+	 * @param size size of a file
+	 * @return if a sampled fingerprint covers all contents return true
+	 */
+	static boolean isSampledFully(long size){
+		return size <= SAMPLE_SIZE * SAMPLE_COUNT;
+	}
+
+	/**
+	 * Compute a fingerprint with size and samples of a file
+	 * @param path
+	 * @param size
+	 * @return a fingerprint
+	 * @throws IOException
+	 */
+	static String sampled(Path path, long size) throws IOException {
+		final MessageDigest digest = newDigest();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(isSampledFully(size)){
+				update(digest, channel, 0, (int)size);
+			}else{
+				update(digest, channel, 0, SAMPLE_SIZE);
+				update(digest, channel, size / 2 - SAMPLE_SIZE / 2, SAMPLE_SIZE);
+				update(digest, channel, size - SAMPLE_SIZE, SAMPLE_SIZE);
+			}
+		}
+		return size + ":" + toHex(digest.digest());
+	}
+
+	/**
+	 * Compute a hash of all contents of a file
+	 * @param path
+	 * @return a hash
+	 * @throws IOException
+	 */
+	static String full(Path path) throws IOException {
+		final MessageDigest digest = newDigest();
+		final byte[] buffer = new byte[64 * 1024];
+		try (InputStream is = Files.newInputStream(path)) {
+			int read;
+			while((read = is.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		}
+		return toHex(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, FileChannel channel, long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) == -1)
+				break; // a file is truncated after size is read
+		}
+		buffer.flip();
+		digest.update(buffer);
+	}
+
+	private static String toHex(byte[] bytes){
+		final StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes)
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return sb.toString();
+	}
+
+	private static MessageDigest newDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import io.github.qwefgh90.jsearch.JSearch;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParsingReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extractor of text of a file. It's used in a process of the index and in extraction workers.
+ * <br><br>An {@link Extractor} is selected by a mime type or a glob of a name.
+ * Plain text, source and structured text formats are decoded by {@link TextExtractor},
+ * HWP is extracted by JSearch and other formats are parsed by Tika.
+ * Extractors of {@link java.util.ServiceLoader} override built-in extractors.
+ * <br><br>Throughput of each extractor is measured by readers of {@link #measure(Extractor, Reader)}.
+ *
+ * @author qwefgh90
+ *
+ */
+final class ContentsExtractor {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(ContentsExtractor.class);
+
+	private static final Parser parser = new AutoDetectParser();
+	private static final MimeTypes mimeTypes = MimeTypes.getDefaultMimeTypes();
+	private static final Extractor tikaExtractor = new TikaExtractor();
+	private static final Map<MediaType, Extractor> extractorsByMime = new HashMap<>();
+	private static final List<Map.Entry<PathMatcher, Extractor>> extractorsByGlob = new ArrayList<>();
+	private static final Map<String, Throughput> throughputs = new ConcurrentHashMap<>();
+	private static final Set<MediaType> parserTypes = parser.getSupportedTypes(new ParseContext());
+
+	static {
+		register(new JSearchExtractor());
+		register(new TextExtractor());
+		try {
+			for(Extractor extractor : ServiceLoader.load(Extractor.class))
+				register(extractor);
+		} catch (ServiceConfigurationError e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	private ContentsExtractor(){
+	}
+
+	private static void register(Extractor extractor){
+		for(MediaType mimeType : extractor.getMimeTypes())
+			extractorsByMime.put(mimeType.getBaseType(), extractor);
+		for(String glob : extractor.getGlobs())
+			extractorsByGlob.add(0, new AbstractMap.SimpleImmutableEntry<>( // a later one is matched first
+					FileSystems.getDefault().getPathMatcher("glob:" + glob.toLowerCase(Locale.ROOT)), extractor));
+		LOG.debug("An extractor is registered : " + extractor.getName());
+	}
+
+	private static Extractor findByGlob(Path path){
+		final Path name = Paths.get(path.getFileName().toString().toLowerCase(Locale.ROOT));
+		for(Map.Entry<PathMatcher, Extractor> entry : extractorsByGlob){
+			if(entry.getKey().matches(name))
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Detect a mime type of a file. If a name matches a glob of an extractor,
+	 * a mime type is detected with a name without reading a file. Otherwise, JSearch reads a file.
+	 * @param path
+	 * @return a mime type
+	 * @throws IOException
+	 */
+	static MediaType detect(Path path) throws IOException {
+		if(findByGlob(path) != null){
+			final Metadata metadata = new Metadata();
+			metadata.set(Metadata.RESOURCE_NAME_KEY, path.getFileName().toString());
+			final MediaType mimeType = mimeTypes.detect(null, metadata);
+			if(!MediaType.OCTET_STREAM.equals(mimeType))
+				return mimeType;
+		}
+		return JSearch.getContentType(path.toFile(), path.getFileName().toString());
+	}
+
+	/**
+	 * Select an extractor of a file. A mime type is matched before a glob.
+	 * @param path
+	 * @param mimeType
+	 * @return an extractor. if nothing is matched return an extractor of Tika
+	 */
+	static Extractor select(Path path, MediaType mimeType){
+		final Extractor extractor = extractorsByMime.get(mimeType.getBaseType());
+		if(extractor != null)
+			return extractor;
+		final Extractor globExtractor = findByGlob(path);
+		return globExtractor != null ? globExtractor : tikaExtractor;
+	}
+
+	/**
+	 * @param mimeType
+	 * @return if an extractor or a parser of Tika supports a mime type return true
+	 */
+	static boolean isSupported(MediaType mimeType){
+		final MediaType baseType = mimeType.getBaseType();
+		return extractorsByMime.containsKey(baseType) || parserTypes.contains(baseType);
+	}
+
+	/**
+	 * Open a reader of contents of a file. Text is extracted while it's read.
+	 * @param path
+	 * @param mimeType
+	 * @param executor it runs a parser which writes text to a pipe
+	 * @return a reader which should be closed
+	 * @throws IOException
+	 */
+	static Reader open(Path path, MediaType mimeType, Executor executor) throws IOException {
+		return select(path, mimeType).open(path, mimeType, executor);
+	}
+
+	/**
+	 * Measure time which is spent in reading characters and a count of them.
+	 * A document is counted when a reader is closed.
+	 * @param extractor an extractor which opens a reader
+	 * @param reader
+	 * @return a reader which should be closed
+	 */
+	static Reader measure(Extractor extractor, Reader reader){
+		return new MeasuredReader(reader, throughputs.computeIfAbsent(extractor.getName(), name -> new Throughput()));
+	}
+
+	/**
+	 * @return throughput of extractors by names
+	 */
+	static Map<String, Throughput> getThroughputs(){
+		return Collections.unmodifiableMap(new TreeMap<>(throughputs));
+	}
+
+	/**
+	 * Counts of documents and characters and time which is spent by an extractor.
+	 */
+	static final class Throughput {
+		private final LongAdder documents = new LongAdder();
+		private final LongAdder characters = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		long getDocuments(){
+			return documents.sum();
+		}
+
+		long getCharacters(){
+			return characters.sum();
+		}
+
+		long getNanos(){
+			return nanos.sum();
+		}
+
+		/**
+		 * @return characters per second
+		 */
+		long getCharactersPerSecond(){
+			final long spent = getNanos();
+			return spent == 0 ? 0 : (long)(getCharacters() * 1e9 / spent);
+		}
+
+		@Override
+		public String toString() {
+			return getDocuments() + " documents, " + getCharacters() + " chars, "
+					+ (getNanos() / 1000000) + " ms, " + getCharactersPerSecond() + " chars/s";
+		}
+	}
+
+	private static final class MeasuredReader extends FilterReader {
+		private final Throughput throughput;
+		private boolean closed = false;
+
+		MeasuredReader(Reader in, Throughput throughput){
+			super(in);
+			this.throughput = throughput;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final char[] c = new char[1];
+			return read(c, 0, 1) == -1 ? -1 : c[0];
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			final long start = System.nanoTime();
+			final int read = super.read(cbuf, off, len);
+			throughput.nanos.add(System.nanoTime() - start);
+			if(read > 0)
+				throughput.characters.add(read);
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if(!closed){
+				closed = true;
+				throughput.documents.increment();
+			}
+			super.close();
+		}
+	}
+
+	/**
+	 * HWP is extracted by JSearch at once.
+	 */
+	private static final class JSearchExtractor implements Extractor {
+		private static final Set<MediaType> MIME_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+				MediaType.application("x-hwp"), MediaType.application("x-hwp-v5"))));
+
+		@Override
+		public String getName() {
+			return "jsearch";
+		}
+
+		@Override
+		public Set<MediaType> getMimeTypes() {
+			return MIME_TYPES;
+		}
+
+		@Override
+		public Reader open(Path path, MediaType mimeType, Executor executor) throws IOException {
+			return new StringReader(JSearch.extractContentsFromFile(path.toFile()));
+		}
+	}
+
+	/**
+	 * Binary containers are parsed by Tika.
+	 */
+	private static final class TikaExtractor implements Extractor {
+		@Override
+		public String getName() {
+			return "tika";
+		}
+
+		@Override
+		public Set<MediaType> getMimeTypes() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public Reader open(Path path, MediaType mimeType, Executor executor) throws IOException {
+			final Metadata metadata = new Metadata();
+			metadata.set(Metadata.RESOURCE_NAME_KEY, path.getFileName().toString());
+			return new ParsingReader(parser, Files.newInputStream(path), metadata, new ParseContext(), executor);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.postingshighlight.Passage;
+import org.apache.lucene.search.postingshighlight.PassageFormatter;
+import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
+
+/**
+ * A highlighter which uses offsets in postings instead of analyzing text again.
+ * <br><br>Text of contents is loaded with a {@link ContentsLoader} and only first
+ * <code>maxLength</code> characters are highlighted. So cost of a highlight is bounded.
+ * A snippet is a window of text around a first match of a best passage without markup.
+ * Other fields are loaded from stored fields.
+ *
+ * @author qwefgh90
+ *
+ */
+final class ContentsHighlighter extends PostingsHighlighter {
+	static final String CONTENTS_FIELD = "contents";
+
+	@FunctionalInterface
+	interface ContentsLoader {
+		String load(Document doc) throws IOException;
+	}
+
+	private final ContentsLoader loader;
+	private final Set<String> fieldsToLoad;
+	private final Analyzer keywordAnalyzer;
+	private final String keywordField;
+	private final PassageFormatter formatter;
+
+	/**
+	 * @param loader a loader of contents
+	 * @param keywordAnalyzer an analyzer of a keyword field. it's used for wildcard queries
+	 * @param keywordField a field indexed with a keyword analyzer
+	 * @param maxLength maximum characters to be highlighted
+	 * @param snippetLength length of a snippet
+	 */
+	ContentsHighlighter(ContentsLoader loader, Analyzer keywordAnalyzer, String keywordField, int maxLength, int snippetLength){
+		super(maxLength);
+		this.loader = loader;
+		this.keywordAnalyzer = keywordAnalyzer;
+		this.keywordField = keywordField;
+		this.fieldsToLoad = new HashSet<>(Arrays.asList("pathString", "lastModifiedTime", keywordField));
+		this.formatter = new SnippetFormatter(snippetLength);
+	}
+
+	@Override
+	protected String[][] loadFieldValues(IndexSearcher searcher, String[] fields, int[] docids, int maxLength) throws IOException {
+		final String[][] contents = new String[fields.length][docids.length];
+		for(int i = 0; i < docids.length; i++){
+			final Document doc = searcher.doc(docids[i], fieldsToLoad);
+			for(int j = 0; j < fields.length; j++){
+				String value = CONTENTS_FIELD.equals(fields[j]) ? loader.load(doc) : doc.get(fields[j]);
+				if(value == null && keywordField.equals(fields[j]))
+					value = doc.get("pathString"); // a path isn't stored twice in a compact profile
+				if(value == null)
+					contents[j][i] = "";
+				else
+					contents[j][i] = value.length() > maxLength ? value.substring(0, maxLength) : value;
+			}
+		}
+		return contents;
+	}
+
+	@Override
+	protected Analyzer getIndexAnalyzer(String field) {
+		// an analyzer is needed to highlight wildcard queries. it analyzes only a short keyword field.
+		return keywordField.equals(field) ? keywordAnalyzer : null;
+	}
+
+	@Override
+	protected BreakIterator getBreakIterator(String field) {
+		return BreakIterator.getSentenceInstance(Locale.ROOT);
+	}
+
+	@Override
+	protected PassageFormatter getFormatter(String field) {
+		return formatter;
+	}
+
+	@Override
+	protected Passage[] getEmptyHighlight(String fieldName, BreakIterator bi, int maxPassages) {
+		return new Passage[0]; // no snippet without a match
+	}
+
+	/**
+	 * Format a best passage into a window of text around a first match.
+	 * If there is no passage, return null.
+	 */
+	private static final class SnippetFormatter extends PassageFormatter {
+		private final int snippetLength;
+
+		SnippetFormatter(int snippetLength){
+			this.snippetLength = snippetLength;
+		}
+
+		@Override
+		public Object format(Passage[] passages, String content) {
+			Passage best = null;
+			for(Passage passage : passages){
+				if(passage.getNumMatches() > 0 && (best == null || passage.getScore() > best.getScore()))
+					best = passage;
+			}
+			if(best == null)
+				return null;
+			final int firstMatch = best.getMatchStarts()[0];
+			final int start = Math.max(best.getStartOffset(), firstMatch - snippetLength / 4);
+			final int end = Math.min(content.length(), start + snippetLength);
+			return content.substring(start, end).trim();
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable journal of a crawl. It's used to resume a crawl which is stopped or crashed.
+ * <br><br>Each line is a type and a value separated by a tab.
+ * <ul>
+ * <li>S : a signature of directories and options of a run</li>
+ * <li>R : a root directory which is crawled and committed</li>
+ * <li>I : a path of which indexing is started</li>
+ * <li>D : a path of which indexing is done</li>
+ * <li>X : a path of which indexing is failed</li>
+ * <li>K : a checkpoint. it's written after a commit of the index</li>
+ * <li>C : a run is completed</li>
+ * </ul>
+ * A journal is compacted into S, R, X, I and K lines at every checkpoint.
+ * An I line is written before a path is extracted, so it's kept when a parser crashes a process.
+ * D and X lines are buffered and written with a next I line or at a next checkpoint.
+ * A path which is started but not done at open is regarded as failed because it may crash a process.
+ * A path done just before a crash may be regarded as failed too, and it's indexed by a next run which isn't resumed.
+ * When a run is resumed, failed paths of a last run are skipped.
+ *
+ * @author qwefgh90
+ *
+ */
+final class CrawlJournal implements Closeable {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(CrawlJournal.class);
+
+	private final Path journalPath;
+	private BufferedWriter writer;
+
+	private String signature = "";
+	private boolean completed = true;
+	private final Set<String> committedRoots = new LinkedHashSet<>();
+	private final Set<String> crawledRoots = new LinkedHashSet<>(); // not committed yet
+	private final Set<String> inFlightPaths = new HashSet<>();
+	private final Set<String> failedPaths = new HashSet<>();
+	private final Set<String> skippedPaths = new HashSet<>();
+
+	private CrawlJournal(Path journalPath){
+		this.journalPath = journalPath;
+	}
+
+	/**
+	 * Open a journal and recover a state of a last run.
+	 * @param journalPath
+	 * @return a journal
+	 * @throws IOException
+	 */
+	static CrawlJournal open(Path journalPath) throws IOException {
+		final CrawlJournal journal = new CrawlJournal(journalPath);
+		if(Files.exists(journalPath))
+			journal.recover(Files.readAllLines(journalPath, StandardCharsets.UTF_8));
+		journal.writeCheckpoint();
+		return journal;
+	}
+
+	private void recover(List<String> lines){
+		for(String line : lines){
+			final int tab = line.indexOf('\t');
+			final String type = tab < 0 ? line : line.substring(0, tab);
+			final String value = tab < 0 ? "" : line.substring(tab + 1);
+			switch(type){
+			case "S":
+				signature = value;
+				completed = false;
+				committedRoots.clear();
+				inFlightPaths.clear();
+				failedPaths.clear();
+				break;
+			case "R":
+				committedRoots.add(value);
+				break;
+			case "I":
+				inFlightPaths.add(value);
+				break;
+			case "D":
+				inFlightPaths.remove(value);
+				failedPaths.remove(value);
+				break;
+			case "X":
+				inFlightPaths.remove(value);
+				failedPaths.add(value);
+				break;
+			case "C":
+				completed = true;
+				break;
+			default:
+				break; // K or a broken line
+			}
+		}
+		if(!inFlightPaths.isEmpty())
+			LOG.warn(inFlightPaths.size() + " paths were in indexing when a process exited. They are skipped in a next run.");
+		failedPaths.addAll(inFlightPaths);
+		inFlightPaths.clear();
+	}
+
+	/**
+	 * Begin a run. If a last run with a same signature is not completed, it's resumed.
+	 * Otherwise a journal is cleared.
+	 * @param signature a signature of directories and options
+	 * @return if a last run is resumed return true, otherwise return false
+	 * @throws IOException
+	 */
+	synchronized boolean begin(String signature) throws IOException {
+		final boolean resumed = !completed && this.signature.equals(signature);
+		skippedPaths.clear();
+		if(resumed){
+			skippedPaths.addAll(failedPaths);
+		}else{
+			committedRoots.clear();
+			failedPaths.clear();
+		}
+		this.signature = signature;
+		this.completed = false;
+		crawledRoots.clear();
+		inFlightPaths.clear();
+		writeCheckpoint();
+		if(resumed)
+			LOG.info("Resume a crawl. " + committedRoots.size() + " directories are skipped.");
+		return resumed;
+	}
+
+	/**
+	 * @return roots which are crawled and committed in a last run
+	 */
+	synchronized Set<String> getCommittedRoots(){
+		return Collections.unmodifiableSet(new LinkedHashSet<>(committedRoots));
+	}
+
+	/**
+	 * @param pathString
+	 * @return if a path is failed or crashed in a last run which is resumed return true
+	 */
+	synchronized boolean isSkipped(String pathString){
+		return skippedPaths.contains(pathString);
+	}
+
+	synchronized void started(String pathString){
+		inFlightPaths.add(pathString);
+		append("I", pathString);
+		flush();
+	}
+
+	synchronized void done(String pathString){
+		inFlightPaths.remove(pathString);
+		failedPaths.remove(pathString);
+		append("D", pathString);
+	}
+
+	synchronized void failed(String pathString){
+		inFlightPaths.remove(pathString);
+		failedPaths.add(pathString);
+		append("X", pathString);
+	}
+
+	/**
+	 * A root is recorded as committed at a next checkpoint.
+	 * @param root
+	 */
+	synchronized void rootCrawled(String root){
+		crawledRoots.add(root);
+	}
+
+	/**
+	 * It should be called after a commit of the index.
+	 */
+	synchronized void checkpoint(){
+		committedRoots.addAll(crawledRoots);
+		crawledRoots.clear();
+		try {
+			writeCheckpoint();
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Mark a run as completed. A next run crawls all directories.
+	 * It should be called after a last commit of a run.
+	 */
+	synchronized void complete(){
+		completed = true;
+		committedRoots.clear();
+		crawledRoots.clear();
+		failedPaths.clear();
+		skippedPaths.clear();
+		try {
+			writeCheckpoint();
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Forget a last run. It's called when the index is cleared.
+	 */
+	synchronized void reset(){
+		signature = "";
+		complete();
+	}
+
+	private void append(String type, String value){
+		if(writer == null)
+			return;
+		try {
+			writer.write(type);
+			writer.write('\t');
+			writer.write(value);
+			writer.newLine();
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Buffered lines are handed to an operating system, so they survive an exit of a process
+	 * but not a crash of a system. A checkpoint syncs them to a disk.
+	 */
+	private void flush(){
+		if(writer == null)
+			return;
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Rewrite a journal with a compact state and sync it to a disk.
+	 * @throws IOException
+	 */
+	private void writeCheckpoint() throws IOException {
+		if(writer != null)
+			writer.close();
+		final Path tempPath = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+		try (BufferedWriter tempWriter = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+			if(!completed){
+				tempWriter.write("S\t" + signature);
+				tempWriter.newLine();
+				for(String root : committedRoots){
+					tempWriter.write("R\t" + root);
+					tempWriter.newLine();
+				}
+				for(String path : failedPaths){
+					tempWriter.write("X\t" + path);
+					tempWriter.newLine();
+				}
+				for(String path : inFlightPaths){
+					tempWriter.write("I\t" + path);
+					tempWriter.newLine();
+				}
+			}
+			tempWriter.write("K");
+			tempWriter.newLine();
+			if(completed){
+				tempWriter.write("C");
+				tempWriter.newLine();
+			}
+		}
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		writer = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(writer != null)
+			writer.close();
+		writer = null;
+	}
+}
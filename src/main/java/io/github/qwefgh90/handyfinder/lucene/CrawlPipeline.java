@@ -0,0 +1,225 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import io.github.qwefgh90.handyfinder.lucene.Result.IndexResult;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A producer/consumer pipeline between a crawler and index workers.
+ * <br><br>A crawler offers paths into a bounded queue and workers drain it.
+ * When the queue is full, a crawler waits until workers take paths.
+ * So memory usage doesn't depend on a count of files in directories.
+ *
+ * @author qwefgh90
+ *
+ */
+final class CrawlPipeline {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(CrawlPipeline.class);
+
+	private final static Path END_OF_CRAWL = Paths.get("");
+	private final static long POLL_MILLIS = 100;
+
+	private final ExecutorService executor;
+	private final int workerCount;
+	private final BlockingQueue<Path> queue;
+	private final Function<Path, IndexResult> indexer;
+	private final BooleanSupplier stopped;
+
+	private final AtomicInteger submittedCount = new AtomicInteger(0);
+	private final AtomicInteger successCount = new AtomicInteger(0);
+	private final AtomicInteger processedCount = new AtomicInteger(0);
+	private final ConcurrentLinkedQueue<Path> failedPaths = new ConcurrentLinkedQueue<>();
+	private final List<CompletableFuture<Void>> workers = new ArrayList<>();
+
+	/**
+	 * @param executor executor where workers run
+	 * @param workerCount a count of workers
+	 * @param capacity maximum count of paths which wait for workers
+	 * @param indexer a function which indexes a path
+	 * @param stopped if it returns true, a crawler and workers stop
+	 */
+	CrawlPipeline(ExecutorService executor, int workerCount, int capacity
+			, Function<Path, IndexResult> indexer, BooleanSupplier stopped){
+		if(workerCount <= 0 || capacity <= 0)
+			throw new IllegalArgumentException("A count of workers and capacity should be greater than zero.");
+		this.executor = executor;
+		this.workerCount = workerCount;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.indexer = indexer;
+		this.stopped = stopped;
+	}
+
+	/**
+	 * Start workers which drain a queue.
+	 */
+	void start(){
+		for(int i = 0; i < workerCount; i++){
+			workers.add(CompletableFuture.runAsync(this::drain, executor));
+		}
+	}
+
+	/**
+	 * Put a path into a queue. If a queue is full, wait until there is a space.
+	 * A wait is managed by a fork/join pool of a calling thread, so other directories are walked while it waits.
+	 * @param path a path to be indexed
+	 * @return if a pipeline is stopped return false, otherwise return true
+	 */
+	boolean offer(Path path){
+		final Offer offer = new Offer(path);
+		try {
+			ForkJoinPool.managedBlock(offer);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return offer.offered;
+	}
+
+	/**
+	 * An offer which is released when a path is put or a pipeline is stopped.
+	 */
+	private final class Offer implements ForkJoinPool.ManagedBlocker {
+		private final Path path;
+		private boolean offered = false;
+
+		Offer(Path path){
+			this.path = path;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			while(!stopped.getAsBoolean()){
+				if(queue.offer(path, POLL_MILLIS, TimeUnit.MILLISECONDS)){
+					submittedCount.incrementAndGet();
+					offered = true;
+					break;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if(offered || stopped.getAsBoolean())
+				return true;
+			offered = tryOffer(path);
+			return offered;
+		}
+	}
+
+	/**
+	 * Put a path into a queue without waiting.
+	 * @param path a path to be indexed
+	 * @return if a queue is full or a pipeline is stopped return false, otherwise return true
+	 */
+	boolean tryOffer(Path path){
+		if(stopped.getAsBoolean() || !queue.offer(path))
+			return false;
+		submittedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Notify workers that there is no more path. It should be called once after crawling.
+	 */
+	void finish(){
+		try {
+			for(int i = 0; i < workerCount; i++){
+				while(!queue.offer(END_OF_CRAWL, POLL_MILLIS, TimeUnit.MILLISECONDS)){
+					if(stopped.getAsBoolean())
+						return; // workers exit by themselves
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wait until all paths which are offered until now are processed.
+	 * @return if a pipeline is stopped return false, otherwise return true
+	 */
+	boolean awaitProcessed(){
+		final int target = submittedCount.get();
+		try {
+			while(processedCount.get() < target){
+				if(stopped.getAsBoolean())
+					return false;
+				Thread.sleep(POLL_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return !stopped.getAsBoolean();
+	}
+
+	/**
+	 * Wait until all workers exit.
+	 */
+	void await(){
+		try {
+			CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	private void drain(){
+		try {
+			while(!stopped.getAsBoolean()){
+				final Path path = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if(path == null)
+					continue;
+				if(path == END_OF_CRAWL)
+					return;
+				try {
+					final IndexResult result = indexer.apply(path);
+					if(result.code == IndexResult.IndexResultCode.SUCCESS)
+						successCount.incrementAndGet();
+					else if(result.code == IndexResult.IndexResultCode.EXCEPTION)
+						failedPaths.add(result.path.orElse(path));
+				} finally {
+					processedCount.incrementAndGet();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	int getSubmittedCount(){
+		return submittedCount.get();
+	}
+
+	int getSuccessCount(){
+		return successCount.get();
+	}
+
+	/**
+	 * @return paths which are failed to be indexed. it's valid after await() returns.
+	 */
+	List<Path> getFailedPaths(){
+		return new ArrayList<>(failedPaths);
+	}
+}
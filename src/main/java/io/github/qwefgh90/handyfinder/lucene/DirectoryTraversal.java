@@ -0,0 +1,193 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A parallel traversal of directories with work stealing.
+ * <br><br>Each directory is a task of a fork/join pool and subdirectories are forked.
+ * So large subtrees are split across threads and roots are walked concurrently.
+ * Attributes are read from entries of a directory stream without following links
+ * (On Windows, they're cached by a directory stream and no more I/O is needed).
+ * A visitor is called concurrently and should be thread-safe.
+ * <br><br>A rate of traversal is measured while at least one walk is running.
+ *
+ * @author qwefgh90
+ *
+ */
+final class DirectoryTraversal implements Closeable {
+	/**
+	 * A visitor of files. It's called by multiple threads.
+	 */
+	interface Visitor {
+		/**
+		 * It's called before a subdirectory is walked. A root isn't passed.
+		 * @param dir
+		 * @param attrs attributes of a directory without following links
+		 * @return if a subtree of a directory should be skipped return false
+		 */
+		default boolean preVisitDirectory(Path dir, BasicFileAttributes attrs){
+			return true;
+		}
+
+		/**
+		 * @param file
+		 * @param attrs attributes of a file without following links
+		 * @return if a walk should be terminated return false
+		 */
+		boolean visitFile(Path file, BasicFileAttributes attrs);
+
+		/**
+		 * @param path a file or a directory which can't be read
+		 * @param exc
+		 */
+		void visitFileFailed(Path path, IOException exc);
+	}
+
+	private final ForkJoinPool pool;
+	private final LongAdder visitedFiles = new LongAdder();
+	private final LongAdder visitedDirectories = new LongAdder();
+	private int activeWalks = 0;
+	private long busySince = 0;
+	private long busyNanos = 0;
+
+	/**
+	 * @param parallelism a count of threads which walk directories
+	 */
+	DirectoryTraversal(int parallelism){
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Start to walk a directory.
+	 * @param root a directory
+	 * @param recursively if false, only files in a root are visited
+	 * @param visitor
+	 * @return a task which returns true if a walk isn't terminated by a visitor
+	 */
+	ForkJoinTask<Boolean> walk(Path root, boolean recursively, Visitor visitor){
+		final Walk walk = new Walk(visitor, recursively ? Integer.MAX_VALUE : 1);
+		begin();
+		return pool.submit(() -> {
+			try {
+				new DirectoryTask(root, 0, walk).invoke();
+				return !walk.terminated.get();
+			} finally {
+				end();
+			}
+		});
+	}
+
+	private synchronized void begin(){
+		if(activeWalks++ == 0)
+			busySince = System.nanoTime();
+	}
+
+	private synchronized void end(){
+		if(--activeWalks == 0)
+			busyNanos += System.nanoTime() - busySince;
+	}
+
+	long getVisitedFileCount(){
+		return visitedFiles.sum();
+	}
+
+	long getVisitedDirectoryCount(){
+		return visitedDirectories.sum();
+	}
+
+	/**
+	 * @return visited files per second while directories are walked
+	 */
+	synchronized long getFilesPerSecond(){
+		final long nanos = busyNanos + (activeWalks > 0 ? System.nanoTime() - busySince : 0);
+		return nanos == 0 ? 0 : (long)(getVisitedFileCount() * (double)TimeUnit.SECONDS.toNanos(1) / nanos);
+	}
+
+	@Override
+	public void close() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * A state of a single walk which is shared by tasks.
+	 */
+	private static final class Walk {
+		private final Visitor visitor;
+		private final int maxDepth;
+		private final AtomicBoolean terminated = new AtomicBoolean(false);
+
+		Walk(Visitor visitor, int maxDepth){
+			this.visitor = visitor;
+			this.maxDepth = maxDepth;
+		}
+	}
+
+	private final class DirectoryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Path directory;
+		private final int depth;
+		private final Walk walk;
+
+		DirectoryTask(Path directory, int depth, Walk walk){
+			this.directory = directory;
+			this.depth = depth;
+			this.walk = walk;
+		}
+
+		@Override
+		protected void compute() {
+			if(walk.terminated.get())
+				return;
+			visitedDirectories.increment();
+			final List<DirectoryTask> subtasks = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for(Path entry : stream){
+					if(walk.terminated.get())
+						return;
+					final BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e) {
+						walk.visitor.visitFileFailed(entry, e);
+						continue;
+					}
+					if(attrs.isDirectory()){
+						if(depth + 1 < walk.maxDepth && walk.visitor.preVisitDirectory(entry, attrs)){
+							final DirectoryTask subtask = new DirectoryTask(entry, depth + 1, walk);
+							subtask.fork(); // it can be stolen by an idle thread
+							subtasks.add(subtask);
+						}
+					}else{
+						visitedFiles.increment();
+						if(!walk.visitor.visitFile(entry, attrs)){
+							walk.terminated.set(true);
+							return;
+						}
+					}
+				}
+			} catch (IOException e) {
+				walk.visitor.visitFileFailed(directory, e);
+			} catch (DirectoryIteratorException e) {
+				walk.visitor.visitFileFailed(directory, e.getCause());
+			} finally {
+				for(DirectoryTask subtask : subtasks)
+					subtask.join();
+			}
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import io.github.qwefgh90.handyfinder.lucene.model.Directory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * It watches directories with WatchService and passes changes in batch.
+ * <br><br>Events are coalesced until there is no event for a quiet period
+ * or a maximum delay is expired. If events are lost by overflow,
+ * a directory is passed to be rescanned.
+ * <br><br>Excluded directories of a root are not watched, so they don't use watches or cause events.
+ *
+ * @author qwefgh90
+ *
+ */
+final class DirectoryWatcher implements Closeable {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(DirectoryWatcher.class);
+
+	static final long DEFAULT_QUIET_MILLIS = 1000;
+	static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+
+	/**
+	 * A batch of changes
+	 */
+	interface ChangeHandler {
+		/**
+		 * @param changedPaths created or modified paths
+		 * @param deletedPaths deleted paths. it can be a file or a directory.
+		 * @param rescanPaths directories to be rescanned and whether it's recursive
+		 */
+		void apply(Set<Path> changedPaths, Set<Path> deletedPaths, Map<Path, Boolean> rescanPaths);
+	}
+
+	private final WatchService watchService;
+	private final ChangeHandler handler;
+	private final long quietMillis;
+	private final long maxDelayMillis;
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+	private final Map<WatchKey, Boolean> recursiveKeys = new HashMap<>();
+	private final Map<WatchKey, ExclusionFilter> exclusionKeys = new HashMap<>();
+	private final List<Directory> roots;
+	private final Function<Directory, ExclusionFilter> exclusions;
+	private final Thread thread;
+	private volatile boolean closed = false;
+
+	private final Set<Path> changedPaths = new LinkedHashSet<>();
+	private final Set<Path> deletedPaths = new LinkedHashSet<>();
+	private final Map<Path, Boolean> rescanPaths = new LinkedHashMap<>();
+	private long firstEventMillis = 0;
+	private long lastEventMillis = 0;
+
+	DirectoryWatcher(List<Directory> roots, Function<Directory, ExclusionFilter> exclusions, ChangeHandler handler) throws IOException {
+		this(roots, exclusions, handler, DEFAULT_QUIET_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+	}
+
+	/**
+	 * @param roots directories to be watched
+	 * @param exclusions a function which compiles exclusion rules of a root
+	 * @param handler a handler which applies changes
+	 * @param quietMillis changes are passed if there is no event for this period
+	 * @param maxDelayMillis changes are passed at least once in this period
+	 * @throws IOException
+	 */
+	DirectoryWatcher(List<Directory> roots, Function<Directory, ExclusionFilter> exclusions, ChangeHandler handler
+			, long quietMillis, long maxDelayMillis) throws IOException {
+		if(quietMillis <= 0 || maxDelayMillis < quietMillis)
+			throw new IllegalArgumentException("A maximum delay should be greater than or equal to a quiet period.");
+		this.roots = new ArrayList<>(roots);
+		this.exclusions = exclusions;
+		this.handler = handler;
+		this.quietMillis = quietMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.thread = new Thread(this::run, "directory-watcher");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Register directories and start to watch in a background thread.
+	 */
+	void start(){
+		thread.start();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+		if(Thread.currentThread() != thread){
+			try {
+				thread.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void run(){
+		try {
+			for(Directory root : roots){
+				final Path path = Paths.get(root.getPathString());
+				if(Files.isDirectory(path))
+					register(path, root.isRecursively(), exclusions.apply(root));
+			}
+			LOG.info("Watching " + keys.size() + " directories");
+			while(!closed){
+				final WatchKey key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+				if(key != null)
+					processEvents(key);
+				flushIfExpired();
+			}
+		} catch (ClosedWatchServiceException e) {
+			LOG.debug("Watch service is closed");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Register a directory. If recursively is true, register all sub directories which are not excluded.
+	 * @param directory
+	 * @param recursively
+	 * @param exclusion exclusion rules of a root
+	 * @throws IOException
+	 */
+	private void register(Path directory, boolean recursively, ExclusionFilter exclusion) throws IOException {
+		if(!recursively){
+			registerOne(directory, false, exclusion);
+			return;
+		}
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if(closed)
+					return FileVisitResult.TERMINATE;
+				if(exclusion.isExcluded(dir, true))
+					return FileVisitResult.SKIP_SUBTREE;
+				registerOne(dir, true, exclusion);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void registerOne(Path directory, boolean recursively, ExclusionFilter exclusion){
+		try {
+			final WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+			keys.put(key, directory);
+			recursiveKeys.put(key, recursively);
+			exclusionKeys.put(key, exclusion);
+		} catch (IOException e) {
+			// e.g. a limit of watches. the directory is updated by a next crawl
+			LOG.warn("Can't watch " + directory + " : " + e.toString());
+		}
+	}
+
+	private void processEvents(WatchKey key) throws IOException {
+		final Path directory = keys.get(key);
+		final boolean recursively = recursiveKeys.getOrDefault(key, false);
+		final ExclusionFilter exclusion = exclusionKeys.get(key);
+		if(directory == null){
+			key.cancel();
+			return;
+		}
+		for(WatchEvent<?> event : key.pollEvents()){
+			final WatchEvent.Kind<?> kind = event.kind();
+			touch();
+			if(kind == OVERFLOW){
+				LOG.info("Events are lost. " + directory + " will be rescanned");
+				rescanPaths.merge(directory, recursively, Boolean::logicalOr);
+				continue;
+			}
+			final Path child = directory.resolve((Path)event.context());
+			if(kind == ENTRY_DELETE){
+				changedPaths.remove(child);
+				deletedPaths.add(child);
+			}else if(Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)){
+				if(kind == ENTRY_CREATE && recursively && !exclusion.isExcluded(child, true)){
+					// files can be created before a directory is registered
+					register(child, true, exclusion);
+					rescanPaths.merge(child, true, Boolean::logicalOr);
+				}
+			}else{
+				deletedPaths.remove(child);
+				changedPaths.add(child);
+			}
+		}
+		if(!key.reset()){
+			keys.remove(key);
+			recursiveKeys.remove(key);
+			exclusionKeys.remove(key);
+		}
+	}
+
+	private void touch(){
+		final long now = System.currentTimeMillis();
+		if(isEmpty())
+			firstEventMillis = now;
+		lastEventMillis = now;
+	}
+
+	private boolean isEmpty(){
+		return changedPaths.isEmpty() && deletedPaths.isEmpty() && rescanPaths.isEmpty();
+	}
+
+	private void flushIfExpired(){
+		if(isEmpty())
+			return;
+		final long now = System.currentTimeMillis();
+		if(now - lastEventMillis < quietMillis && now - firstEventMillis < maxDelayMillis)
+			return;
+		final Set<Path> changed = new LinkedHashSet<>(changedPaths);
+		final Set<Path> deleted = new LinkedHashSet<>(deletedPaths);
+		final Map<Path, Boolean> rescan = new LinkedHashMap<>(rescanPaths);
+		changedPaths.clear();
+		deletedPaths.clear();
+		rescanPaths.clear();
+		LOG.debug("Apply watched changes : " + changed.size() + " changed, " + deleted.size() + " deleted, " + rescan.size() + " rescanned");
+		try {
+			handler.apply(changed, deleted, rescan);
+		} catch (Exception e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+}
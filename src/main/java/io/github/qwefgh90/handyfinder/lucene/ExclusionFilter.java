@@ -0,0 +1,171 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exclusion rules of a crawl under a root directory. Rules are compiled once per crawl.
+ * <br><br>A pattern without a slash (e.g. <code>node_modules</code>, <code>*.tmp</code>) matches
+ * a name of any file or directory under a root, ignoring case.
+ * A pattern with a slash (e.g. <code>/build</code>, <code>docs/*.bak</code>) matches a path relative to a root.
+ * A pattern which ends with a slash matches only directories.
+ * An excluded directory is pruned with its subtree.
+ * <br><br>Optionally, <code>.gitignore</code> and <code>.ignore</code> files are honoured with a same syntax.
+ * Their patterns are relative to a directory of a file and inherited by subdirectories.
+ * Negation (<code>!</code>) is not supported and such lines are ignored.
+ *
+ * @author qwefgh90
+ *
+ */
+final class ExclusionFilter {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(ExclusionFilter.class);
+
+	static final List<String> IGNORE_FILES = Collections.unmodifiableList(Arrays.asList(".gitignore", ".ignore"));
+
+	private final Path root;
+	private final Rules rules;
+	private final boolean ignoreFilesUsed;
+	private final Map<Path, Rules> ignoreFileRules = new ConcurrentHashMap<>(); // rules of a directory
+
+	/**
+	 * @param root a root directory
+	 * @param patterns patterns relative to a root
+	 * @param ignoreFilesUsed if true, ignore files in directories are honoured
+	 */
+	ExclusionFilter(Path root, Collection<String> patterns, boolean ignoreFilesUsed){
+		this.root = root.toAbsolutePath();
+		this.rules = Rules.compile(root.getFileSystem(), patterns);
+		this.ignoreFilesUsed = ignoreFilesUsed;
+	}
+
+	/**
+	 * Check whether a path is excluded. If one of ancestors of a path is excluded, a path is excluded.
+	 * @param path a path under a root
+	 * @param directory if a path is a directory
+	 * @return if a path is excluded return true
+	 */
+	boolean isExcluded(Path path, boolean directory){
+		final Path absolutePath = path.toAbsolutePath();
+		if(!absolutePath.startsWith(root) || absolutePath.equals(root))
+			return false;
+		if(rules.matches(root.relativize(absolutePath), directory))
+			return true;
+		if(!ignoreFilesUsed)
+			return false;
+		for(Path ancestor = absolutePath.getParent(); ancestor != null && ancestor.startsWith(root); ancestor = ancestor.getParent()){
+			final Rules ancestorRules = ignoreFileRules.computeIfAbsent(ancestor, ExclusionFilter::loadIgnoreFiles);
+			if(ancestorRules.matches(ancestor.relativize(absolutePath), directory))
+				return true;
+		}
+		return false;
+	}
+
+	private static Rules loadIgnoreFiles(Path directory){
+		final List<String> patterns = new ArrayList<>();
+		for(String name : IGNORE_FILES){
+			final Path file = directory.resolve(name);
+			if(!Files.isRegularFile(file))
+				continue;
+			try {
+				for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)){
+					final String pattern = line.trim();
+					if(pattern.isEmpty() || pattern.startsWith("#"))
+						continue;
+					if(pattern.startsWith("!")){
+						LOG.debug("negation isn't supported : " + pattern + " in " + file);
+						continue;
+					}
+					patterns.add(pattern);
+				}
+			} catch (IOException e) {
+				LOG.warn("skip " + file + " : " + e.toString());
+			}
+		}
+		return Rules.compile(directory.getFileSystem(), patterns);
+	}
+
+	/**
+	 * Compiled patterns of names and relative paths.
+	 */
+	private static final class Rules {
+		private final GlobMatcher names;
+		private final GlobMatcher directoryNames;
+		private final List<PathMatcher> paths = new ArrayList<>();
+		private final List<PathMatcher> directoryPaths = new ArrayList<>();
+
+		private Rules(Collection<String> names, Collection<String> directoryNames){
+			this.names = GlobMatcher.compile(names);
+			this.directoryNames = GlobMatcher.compile(directoryNames);
+		}
+
+		static Rules compile(FileSystem fileSystem, Collection<String> patterns){
+			final List<String> names = new ArrayList<>();
+			final List<String> directoryNames = new ArrayList<>();
+			final List<String> paths = new ArrayList<>();
+			final List<String> directoryPaths = new ArrayList<>();
+			for(String pattern : patterns){
+				final boolean directoryOnly = pattern.endsWith("/");
+				String glob = directoryOnly ? pattern.substring(0, pattern.length() - 1) : pattern;
+				if(glob.isEmpty())
+					continue;
+				if(glob.indexOf('/') == -1){
+					(directoryOnly ? directoryNames : names).add(glob);
+				}else{
+					if(glob.startsWith("/"))
+						glob = glob.substring(1); // anchored to a root
+					(directoryOnly ? directoryPaths : paths).add(glob);
+				}
+			}
+			final Rules rules = new Rules(names, directoryNames);
+			for(String glob : paths)
+				rules.paths.add(fileSystem.getPathMatcher("glob:" + glob));
+			for(String glob : directoryPaths)
+				rules.directoryPaths.add(fileSystem.getPathMatcher("glob:" + glob));
+			return rules;
+		}
+
+		/**
+		 * @param relative a relative path of which parents are directories
+		 * @param directory if a last name is a directory
+		 * @return if a path or one of its parents matches return true
+		 */
+		boolean matches(Path relative, boolean directory){
+			final int count = relative.getNameCount();
+			for(int i = 0; i < count; i++){
+				final boolean isDirectory = i < count - 1 || directory;
+				final String name = relative.getName(i).toString();
+				if(names.matches(name) || (isDirectory && directoryNames.matches(name)))
+					return true;
+				if(paths.isEmpty() && directoryPaths.isEmpty())
+					continue;
+				final Path subpath = relative.subpath(0, i + 1);
+				for(PathMatcher matcher : paths){
+					if(matcher.matches(subpath))
+						return true;
+				}
+				if(isDirectory){
+					for(PathMatcher matcher : directoryPaths){
+						if(matcher.matches(subpath))
+							return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.mime.MediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of forked JVMs which extract text of files.
+ * So a pathological file can't hang a thread or exhaust a heap of a process of the index.
+ * <br><br>Each worker has its own maximum heap and extracts one document at once.
+ * If a worker doesn't output a document in time, it's killed.
+ * Time is counted only while a reader waits for a worker, not while text is analyzed by a caller.
+ * <br><br>A started worker reports that it's ready. If a worker can't be started or exits before it,
+ * e.g. a class path or a java executable is wrong, a pool becomes unusable and a caller extracts text in its process.
+ * A worker is recycled after a number of documents, on an error of a process
+ * or if a reader of a document is closed before an end of text.
+ * A protocol is described in {@link ExtractionWorker}.
+ *
+ * @author qwefgh90
+ *
+ */
+final class ExtractionPool implements Closeable {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(ExtractionPool.class);
+
+	private final String workerClassName;
+	private final int maxHeapMB;
+	private final long timeoutMillis;
+	private final int maxDocumentsPerWorker;
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<Worker> idleWorkers = new LinkedBlockingDeque<>();
+	private final List<Worker> allWorkers = new ArrayList<>();
+	private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread thread = new Thread(r, "extraction-watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile boolean closed = false;
+	private volatile boolean usable = true;
+
+	/**
+	 * @param size maximum count of workers
+	 * @param maxHeapMB maximum heap of a worker
+	 * @param timeoutMillis maximum time to extract a document
+	 * @param maxDocumentsPerWorker a count of documents after which a worker is recycled
+	 */
+	ExtractionPool(int size, int maxHeapMB, long timeoutMillis, int maxDocumentsPerWorker){
+		this(ExtractionWorker.class.getName(), size, maxHeapMB, timeoutMillis, maxDocumentsPerWorker);
+	}
+
+	/**
+	 * @param workerClassName a main class of a worker
+	 * @param size maximum count of workers
+	 * @param maxHeapMB maximum heap of a worker
+	 * @param timeoutMillis maximum time to extract a document
+	 * @param maxDocumentsPerWorker a count of documents after which a worker is recycled
+	 */
+	ExtractionPool(String workerClassName, int size, int maxHeapMB, long timeoutMillis, int maxDocumentsPerWorker){
+		if(size <= 0 || maxHeapMB <= 0 || timeoutMillis <= 0 || maxDocumentsPerWorker <= 0)
+			throw new IllegalArgumentException("Parameters should be greater than zero.");
+		this.workerClassName = workerClassName;
+		this.permits = new Semaphore(size, true);
+		this.maxHeapMB = maxHeapMB;
+		this.timeoutMillis = timeoutMillis;
+		this.maxDocumentsPerWorker = maxDocumentsPerWorker;
+	}
+
+	/**
+	 * Extract text of a file in a worker. A worker is returned to a pool when a reader is closed.
+	 * @param path
+	 * @param mimeType
+	 * @return a reader of text which should be closed
+	 * @throws IOException if a worker can't be started or a pool is closed or unusable
+	 * @throws InterruptedException
+	 */
+	Reader extract(Path path, MediaType mimeType) throws IOException, InterruptedException {
+		if(closed)
+			throw new IOException("An extraction pool is closed.");
+		if(!usable)
+			throw new IOException("An extraction pool is unusable.");
+		permits.acquire();
+		Worker worker = null;
+		try {
+			worker = idleWorkers.pollFirst();
+			if(worker == null)
+				worker = startWorker();
+			worker.request(path.toAbsolutePath().toString(), mimeType.toString());
+			return new WorkerReader(worker, path);
+		} catch (IOException | RuntimeException e) {
+			if(worker != null)
+				worker.kill("request is failed");
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return if workers can be started return true. if it's false, text should be extracted in process
+	 */
+	boolean isUsable(){
+		return usable && !closed;
+	}
+
+	/**
+	 * Start a worker and wait until it's ready. If it fails, a pool becomes unusable.
+	 * @return a worker which is ready
+	 * @throws IOException
+	 */
+	private Worker startWorker() throws IOException {
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + maxHeapMB + "m"
+				, "-cp", System.getProperty("java.class.path"), workerClassName);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		final Worker worker;
+		try {
+			worker = new Worker(builder.start());
+		} catch (IOException e) {
+			markUnusable(e.toString());
+			throw e;
+		}
+		synchronized(allWorkers){
+			allWorkers.add(worker);
+		}
+		if(!worker.awaitReady()){
+			worker.kill("it isn't ready");
+			markUnusable("a worker exits before it's ready");
+			throw new IOException("An extraction worker can't be started.");
+		}
+		LOG.debug("An extraction worker is started");
+		return worker;
+	}
+
+	private void markUnusable(String reason){
+		if(usable)
+			LOG.warn("Extraction workers can't be used, text is extracted in process : " + reason);
+		usable = false;
+	}
+
+	private void giveBack(Worker worker, boolean reusable){
+		if(reusable && !closed && worker.documentCount < maxDocumentsPerWorker && worker.process.isAlive())
+			idleWorkers.offerFirst(worker); // a recently used worker is warm
+		else
+			worker.kill(reusable ? "it's recycled" : "a document isn't completed");
+		permits.release();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		final List<Worker> workers;
+		synchronized(allWorkers){
+			workers = new ArrayList<>(allWorkers);
+		}
+		for(Worker worker : workers)
+			worker.kill("a pool is closed");
+		idleWorkers.clear();
+		watchdog.shutdownNow();
+	}
+
+	/**
+	 * A forked JVM and its pipes.
+	 */
+	private final class Worker {
+		private final Process process;
+		private final DataOutputStream out;
+		private final DataInputStream in;
+		private int documentCount = 0;
+		private volatile String killedReason = null;
+
+		Worker(Process process){
+			this.process = process;
+			this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+		}
+
+		/**
+		 * @return if a worker reports that it's ready in time return true
+		 */
+		boolean awaitReady(){
+			final ScheduledFuture<?> timeout = watchdog.schedule(() -> kill("timeout of start"), timeoutMillis, TimeUnit.MILLISECONDS);
+			try {
+				return in.readInt() == ExtractionWorker.READY;
+			} catch (IOException e) {
+				return false;
+			} finally {
+				timeout.cancel(false);
+			}
+		}
+
+		void request(String pathString, String mimeType) throws IOException {
+			documentCount++;
+			out.writeUTF(pathString);
+			out.writeUTF(mimeType);
+			out.flush();
+		}
+
+		void kill(String reason){
+			killedReason = reason;
+			process.destroyForcibly();
+			synchronized(allWorkers){
+				allWorkers.remove(this);
+			}
+			LOG.debug("An extraction worker is stopped : " + reason);
+		}
+	}
+
+	/**
+	 * A reader of chunks of text from a worker.
+	 * A time limit is enforced only while it waits for a chunk, so time to analyze text isn't counted.
+	 */
+	private final class WorkerReader extends Reader {
+		private final Worker worker;
+		private final Path path;
+		private long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		private char[] chunk = new char[0];
+		private int position = 0;
+		private boolean ended = false;
+		private boolean closed = false;
+
+		WorkerReader(Worker worker, Path path){
+			this.worker = worker;
+			this.path = path;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if(closed)
+				throw new IOException("A reader is closed.");
+			while(position == chunk.length){
+				if(ended)
+					return -1;
+				readChunk();
+			}
+			final int count = Math.min(len, chunk.length - position);
+			System.arraycopy(chunk, position, cbuf, off, count);
+			position += count;
+			return count;
+		}
+
+		private void readChunk() throws IOException {
+			final long started = System.nanoTime();
+			final ScheduledFuture<?> timeout = watchdog.schedule(() -> worker.kill("timeout of " + path)
+					, Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+			try {
+				final int length = worker.in.readInt();
+				if(length == ExtractionWorker.END_OF_TEXT){
+					ended = true;
+				}else if(length < 0){
+					ended = true;
+					final String message = worker.in.readUTF();
+					if(message.startsWith(OutOfMemoryError.class.getName()))
+						worker.kill("OutOfMemoryError"); // a worker exits
+					throw new IOException("Extraction is failed : " + path + ", " + message);
+				}else{
+					final byte[] bytes = new byte[length];
+					worker.in.readFully(bytes);
+					chunk = new String(bytes, StandardCharsets.UTF_8).toCharArray();
+					position = 0;
+				}
+			} catch (EOFException e) {
+				ended = true;
+				throw new IOException("Extraction is stopped : " + path + ", "
+						+ (worker.killedReason == null ? "a worker exits" : worker.killedReason));
+			} finally {
+				timeout.cancel(false);
+				remainingNanos -= System.nanoTime() - started;
+			}
+		}
+
+		@Override
+		public void close() {
+			if(closed)
+				return;
+			closed = true;
+			// a response which isn't read to an end can't be reused
+			giveBack(worker, ended && worker.killedReason == null && position == chunk.length);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.tika.mime.MediaType;
+
+/**
+ * An entry point of a forked JVM which extracts text of files for {@link ExtractionPool}.
+ * <br><br>When a worker is started and extractors are loaded, it writes {@link #READY} to standard output.
+ * <br><br>A request is a path and a mime type written with <code>writeUTF</code> to standard input.
+ * A response is chunks of UTF-8 text written to standard output.
+ * Each chunk is a length and bytes. A length 0 is an end of text
+ * and a negative length is followed by a message of an error.
+ * Standard output is used only for responses. Logs are written to standard error.
+ * <br><br>If an OutOfMemoryError occurs, a worker reports it and exits.
+ *
+ * @author qwefgh90
+ *
+ */
+public final class ExtractionWorker {
+	static final int CHUNK_SIZE = 16 * 1024; // characters
+	static final int END_OF_TEXT = 0;
+	static final int ERROR = -1;
+	static final int READY = 0x48465752; // a first int of standard output
+
+	private ExtractionWorker(){
+	}
+
+	public static void main(String[] args) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+		System.setOut(System.err); // before a logger is initialized
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+		ContentsExtractor.isSupported(MediaType.TEXT_PLAIN); // a worker exits if extractors can't be loaded
+		out.writeInt(READY);
+		out.flush();
+		final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+			final Thread thread = new Thread(r);
+			thread.setDaemon(true);
+			return thread;
+		});
+		while(true){
+			final String pathString;
+			final String mimeType;
+			try {
+				pathString = in.readUTF();
+				mimeType = in.readUTF();
+			} catch (EOFException e) {
+				return; // a pool is closed
+			}
+			try {
+				extract(pathString, mimeType, executor, out);
+				out.writeInt(END_OF_TEXT);
+			} catch (OutOfMemoryError e) {
+				writeError(out, e.toString());
+				out.flush();
+				System.exit(1);
+			} catch (Exception | LinkageError e) {
+				writeError(out, e.toString());
+			}
+			out.flush();
+		}
+	}
+
+	private static void extract(String pathString, String mimeType, ExecutorService executor, DataOutputStream out) throws IOException {
+		try (Reader reader = ContentsExtractor.open(Paths.get(pathString), MediaType.parse(mimeType), executor)) {
+			final char[] buffer = new char[CHUNK_SIZE];
+			int length = 0;
+			int read;
+			while((read = reader.read(buffer, length, buffer.length - length)) != -1){
+				length += read;
+				if(length < buffer.length)
+					continue;
+				// a surrogate pair isn't split into chunks
+				final int chunk = Character.isHighSurrogate(buffer[length - 1]) ? length - 1 : length;
+				writeChunk(out, buffer, chunk);
+				System.arraycopy(buffer, chunk, buffer, 0, length - chunk);
+				length -= chunk;
+			}
+			if(length > 0)
+				writeChunk(out, buffer, length);
+		}
+	}
+
+	private static void writeChunk(DataOutputStream out, char[] buffer, int length) throws IOException {
+		final byte[] bytes = new String(buffer, 0, length).getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		out.flush(); // a parent analyzes text while it's extracted
+	}
+
+	private static void writeError(DataOutputStream out, String message) throws IOException {
+		out.writeInt(ERROR);
+		out.writeUTF(message == null ? "" : message);
+	}
+}
@@ -0,0 +1,59 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.apache.tika.mime.MediaType;
+
+/**
+ * A service provider which extracts text of files of mime types or globs.
+ * Providers are loaded with {@link java.util.ServiceLoader} from
+ * <code>META-INF/services/io.github.qwefgh90.handyfinder.lucene.Extractor</code>
+ * and override built-in extractors of same keys.
+ * A file of which no extractor is found is extracted by Tika.
+ *
+ * @author qwefgh90
+ *
+ */
+public interface Extractor {
+	/**
+	 * @return a name which is used in statistics
+	 */
+	String getName();
+
+	/**
+	 * @return mime types without parameters
+	 */
+	Set<MediaType> getMimeTypes();
+
+	/**
+	 * A file of which a name matches one of globs is extracted without detection of a mime type by contents.
+	 * @return globs of lower case names such as <code>*.txt</code>
+	 */
+	default Set<String> getGlobs(){
+		return Collections.emptySet();
+	}
+
+	/**
+	 * An extractor which is isolated is run in an extraction worker.
+	 * An extractor which only decodes text can be run in a process of the index.
+	 * @return if it should be isolated return true
+	 */
+	default boolean isIsolated(){
+		return true;
+	}
+
+	/**
+	 * Open a reader of contents of a file. Text should be extracted while it's read.
+	 * @param path
+	 * @param mimeType
+	 * @param executor it can be used to run a parser
+	 * @return a reader which should be closed
+	 * @throws IOException
+	 */
+	Reader open(Path path, MediaType mimeType, Executor executor) throws IOException;
+}
@@ -0,0 +1,137 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A matcher of file names which is compiled from globs of tika-mimetypes.xml.
+ * Names are matched ignoring case.
+ * <br><br>Most of globs are suffixes such as <code>*.txt</code>.
+ * They are compiled into a single trie of reversed suffixes, so a name is matched in a time of its length.
+ * Literal names such as <code>Makefile</code> are matched with a set
+ * and other globs or regular expressions (<code>^rdf$</code>) are matched with patterns.
+ *
+ * @author qwefgh90
+ *
+ */
+final class GlobMatcher {
+	private final Node suffixes = new Node();
+	private final Set<String> names = new HashSet<>();
+	private final List<Pattern> patterns = new ArrayList<>();
+	private int size = 0;
+
+	private GlobMatcher(){
+	}
+
+	/**
+	 * @param globs globs or regular expressions which start with ^
+	 * @return a matcher of globs
+	 */
+	static GlobMatcher compile(Collection<String> globs){
+		final GlobMatcher matcher = new GlobMatcher();
+		for(String glob : globs)
+			matcher.add(glob.toLowerCase(Locale.ROOT));
+		return matcher;
+	}
+
+	private void add(String glob){
+		if(glob.isEmpty())
+			return;
+		size++;
+		if(glob.startsWith("^")){
+			addPattern(glob);
+		}else if(glob.charAt(0) == '*' && !hasWildcard(glob.substring(1))){
+			Node node = suffixes;
+			for(int i = glob.length() - 1; i > 0; i--)
+				node = node.children.computeIfAbsent(glob.charAt(i), c -> new Node());
+			node.terminal = true;
+		}else if(!hasWildcard(glob)){
+			names.add(glob);
+		}else{
+			addPattern(toRegex(glob));
+		}
+	}
+
+	private void addPattern(String regex){
+		try {
+			patterns.add(Pattern.compile(regex));
+		} catch (PatternSyntaxException e) {
+			size--; // an invalid glob never matches
+		}
+	}
+
+	private static boolean hasWildcard(String glob){
+		for(int i = 0; i < glob.length(); i++){
+			final char c = glob.charAt(i);
+			if(c == '*' || c == '?' || c == '[')
+				return true;
+		}
+		return false;
+	}
+
+	private static String toRegex(String glob){
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < glob.length(); i++){
+			final char c = glob.charAt(i);
+			if(c == '*')
+				sb.append(".*");
+			else if(c == '?')
+				sb.append('.');
+			else if(c == '['){
+				final int end = glob.indexOf(']', i + 1);
+				if(end == -1){
+					sb.append("\\[");
+				}else{
+					sb.append('[').append(glob.substring(i + 1, end).replace("\\", "\\\\")).append(']');
+					i = end;
+				}
+			}else if("\\.^$|+(){}".indexOf(c) != -1)
+				sb.append('\\').append(c);
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param name a file name
+	 * @return if one of globs matches a name return true
+	 */
+	boolean matches(String name){
+		if(size == 0)
+			return false;
+		final String lowerName = name.toLowerCase(Locale.ROOT);
+		if(names.contains(lowerName))
+			return true;
+		Node node = suffixes;
+		for(int i = lowerName.length() - 1; i >= 0; i--){
+			node = node.children.get(lowerName.charAt(i));
+			if(node == null)
+				break;
+			if(node.terminal)
+				return true;
+		}
+		for(Pattern pattern : patterns){
+			if(pattern.matcher(lowerName).matches())
+				return true;
+		}
+		return false;
+	}
+
+	boolean isEmpty(){
+		return size == 0;
+	}
+
+	private static final class Node {
+		private final Map<Character, Node> children = new HashMap<>(4);
+		private boolean terminal = false;
+	}
+}
@@ -0,0 +1,122 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * It groups changes of IndexWriter into one durable commit.
+ * <br><br>A commit is executed when one of thresholds is exceeded.
+ * (a count of pending documents, elapsed time since last commit, ram usage of IndexWriter)
+ * Changes which are not committed yet are visible to near-real-time readers.
+ *
+ * @author qwefgh90
+ *
+ */
+final class GroupCommitter {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(GroupCommitter.class);
+
+	static final int DEFAULT_MAX_PENDING_DOCUMENTS = 1000;
+	static final long DEFAULT_MAX_INTERVAL_MILLIS = 10 * 1000;
+	// a writer flushes a segment without a commit when its RAM buffer is full, so a threshold is below it
+	static final long DEFAULT_MAX_PENDING_RAM_BYTES = (long)(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB * 1024 * 1024) * 3 / 4;
+
+	private final int maxPendingDocuments;
+	private final long maxIntervalMillis;
+	private final long maxPendingRamBytes;
+
+	private final AtomicInteger pendingDocuments = new AtomicInteger(0);
+	private final Object commitLock = new Object();
+	private volatile long lastCommitMillis = System.currentTimeMillis();
+	private volatile long lastChangedMillis = System.currentTimeMillis();
+	private volatile Runnable commitListener = () -> {};
+
+	GroupCommitter(){
+		this(DEFAULT_MAX_PENDING_DOCUMENTS, DEFAULT_MAX_INTERVAL_MILLIS, DEFAULT_MAX_PENDING_RAM_BYTES);
+	}
+
+	/**
+	 * @param maxPendingDocuments a count of changed documents which triggers a commit
+	 * @param maxIntervalMillis maximum time between a change and a commit
+	 * @param maxPendingRamBytes ram usage of IndexWriter which triggers a commit
+	 */
+	GroupCommitter(int maxPendingDocuments, long maxIntervalMillis, long maxPendingRamBytes){
+		if(maxPendingDocuments <= 0 || maxIntervalMillis <= 0 || maxPendingRamBytes <= 0)
+			throw new IllegalArgumentException("Thresholds should be greater than zero.");
+		this.maxPendingDocuments = maxPendingDocuments;
+		this.maxIntervalMillis = maxIntervalMillis;
+		this.maxPendingRamBytes = maxPendingRamBytes;
+	}
+
+	/**
+	 * Record changes and commit them if a count or ram threshold is exceeded.
+	 * @param writer writer which has changes
+	 * @param count a count of changed documents
+	 * @return if commit is executed return true, otherwise return false
+	 * @throws IOException
+	 */
+	boolean onChanged(IndexWriter writer, int count) throws IOException {
+		lastChangedMillis = System.currentTimeMillis();
+		final int pending = pendingDocuments.addAndGet(count);
+		if(pending >= maxPendingDocuments || writer.ramBytesUsed() >= maxPendingRamBytes)
+			return commit(writer);
+		return false;
+	}
+
+	/**
+	 * Commit changes if a time threshold is exceeded. It's called periodically.
+	 * @param writer writer which has changes
+	 * @return if commit is executed return true, otherwise return false
+	 * @throws IOException
+	 */
+	boolean commitIfExpired(IndexWriter writer) throws IOException {
+		if(pendingDocuments.get() > 0
+				&& System.currentTimeMillis() - lastCommitMillis >= maxIntervalMillis)
+			return commit(writer);
+		return false;
+	}
+
+	/**
+	 * Commit all pending changes. If there is nothing to commit, do nothing.
+	 * @param writer writer which has changes
+	 * @return if commit is executed return true, otherwise return false
+	 * @throws IOException
+	 */
+	boolean commit(IndexWriter writer) throws IOException {
+		synchronized(commitLock){
+			final int pending = pendingDocuments.getAndSet(0);
+			if(!writer.isOpen())
+				return false;
+			if(pending == 0 && !writer.hasUncommittedChanges())
+				return false;
+			writer.commit();
+			lastCommitMillis = System.currentTimeMillis();
+			LOG.debug("Group commit : " + pending + " documents");
+			commitListener.run();
+			return true;
+		}
+	}
+
+	/**
+	 * @param commitListener it's called after every commit
+	 */
+	void setCommitListener(Runnable commitListener){
+		this.commitListener = commitListener;
+	}
+
+	/**
+	 * @return a last time when changes are recorded
+	 */
+	long getLastChangedMillis(){
+		return lastChangedMillis;
+	}
+
+	int getPendingDocuments(){
+		return pendingDocuments.get();
+	}
+}
@@ -0,0 +1,177 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A background maintenance of the index which reclaims deleted documents.
+ * <br><br>Segments with deleted documents are merged only when a ratio of deleted documents exceeds a threshold
+ * and the index is idle for a while. So a crawl isn't blocked by a merge which rewrites segments.
+ * Only segments of which a ratio of deletes exceeds a threshold are rewritten by a merge policy.
+ * I/O of merges is throttled by a merge scheduler.
+ * A maintenance runs once at a time and a status is passed to a listener.
+ *
+ * @author qwefgh90
+ *
+ */
+final class IndexMaintenance {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(IndexMaintenance.class);
+
+	private final double deletedRatioThreshold;
+	private final long idleMillis;
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private volatile Status lastStatus = new Status(Status.State.IDLE, 0, 0, 0);
+
+	/**
+	 * @param deletedRatioThreshold a ratio of deleted documents which triggers a merge (0 ~ 1)
+	 * @param idleMillis time without changes of the index before a merge
+	 */
+	IndexMaintenance(double deletedRatioThreshold, long idleMillis){
+		if(deletedRatioThreshold <= 0 || deletedRatioThreshold >= 1)
+			throw new IllegalArgumentException("A threshold should be between 0 and 1. " + deletedRatioThreshold);
+		if(idleMillis < 0)
+			throw new IllegalArgumentException("An idle time should not be negative. " + idleMillis);
+		this.deletedRatioThreshold = deletedRatioThreshold;
+		this.idleMillis = idleMillis;
+	}
+
+	/**
+	 * @param forceMergeMBPerSec a rate of I/O of merges which are requested by a maintenance
+	 * @return a merge scheduler of which I/O is throttled
+	 */
+	static ConcurrentMergeScheduler createMergeScheduler(double forceMergeMBPerSec){
+		final ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler();
+		scheduler.enableAutoIOThrottle(); // natural merges are throttled by a rate of indexing
+		scheduler.setForceMergeMBPerSec(forceMergeMBPerSec);
+		return scheduler;
+	}
+
+	/**
+	 * @return a merge policy which rewrites only segments with enough deletes
+	 */
+	TieredMergePolicy createMergePolicy(){
+		final TieredMergePolicy policy = new TieredMergePolicy();
+		policy.setForceMergeDeletesPctAllowed(deletedRatioThreshold * 100);
+		return policy;
+	}
+
+	/**
+	 * @param writer
+	 * @return a ratio of deleted documents in segments
+	 */
+	static double getDeletedRatio(IndexWriter writer){
+		final int maxDoc = writer.maxDoc();
+		return maxDoc == 0 ? 0 : (double)(maxDoc - writer.numDocs()) / maxDoc;
+	}
+
+	/**
+	 * @param writer
+	 * @param lastChangedMillis a last time when the index is changed
+	 * @param ready if no crawl is running return true
+	 * @return if a maintenance should run return true
+	 */
+	boolean isDue(IndexWriter writer, long lastChangedMillis, boolean ready){
+		return ready && !running.get() && writer.isOpen()
+				&& System.currentTimeMillis() - lastChangedMillis >= idleMillis
+				&& getDeletedRatio(writer) >= deletedRatioThreshold;
+	}
+
+	/**
+	 * Merge segments with deleted documents, delete unused files and commit.
+	 * @param writer
+	 * @param committer
+	 * @param listener it's called when a maintenance starts and ends
+	 * @return a status after a maintenance. if another maintenance is running return empty
+	 * @throws IOException
+	 */
+	Optional<Status> run(IndexWriter writer, GroupCommitter committer, Consumer<Status> listener) throws IOException {
+		if(!running.compareAndSet(false, true))
+			return Optional.empty();
+		final long start = System.currentTimeMillis();
+		try {
+			update(new Status(Status.State.MERGING, getDeletedRatio(writer), writer.maxDoc() - writer.numDocs(), 0), listener);
+			writer.forceMergeDeletes(true);
+			writer.deleteUnusedFiles();
+			committer.commit(writer);
+			final Status status = new Status(Status.State.DONE, getDeletedRatio(writer)
+					, writer.maxDoc() - writer.numDocs(), System.currentTimeMillis() - start);
+			update(status, listener);
+			LOG.info("A maintenance of the index is done : " + status);
+			return Optional.of(status);
+		} catch (IOException | RuntimeException e) {
+			update(new Status(Status.State.FAILED, lastStatus.getDeletedRatio(), lastStatus.getDeletedDocuments()
+					, System.currentTimeMillis() - start), listener);
+			throw e;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	private void update(Status status, Consumer<Status> listener){
+		lastStatus = status;
+		try {
+			listener.accept(status);
+		} catch (RuntimeException e) {
+			LOG.warn(e.toString());
+		}
+	}
+
+	boolean isRunning(){
+		return running.get();
+	}
+
+	Status getLastStatus(){
+		return lastStatus;
+	}
+
+	/**
+	 * A status of a maintenance.
+	 */
+	static final class Status {
+		enum State {
+			IDLE, MERGING, DONE, FAILED
+		}
+
+		private final State state;
+		private final double deletedRatio;
+		private final int deletedDocuments;
+		private final long elapsedMillis;
+
+		Status(State state, double deletedRatio, int deletedDocuments, long elapsedMillis){
+			this.state = state;
+			this.deletedRatio = deletedRatio;
+			this.deletedDocuments = deletedDocuments;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		State getState(){
+			return state;
+		}
+
+		double getDeletedRatio(){
+			return deletedRatio;
+		}
+
+		int getDeletedDocuments(){
+			return deletedDocuments;
+		}
+
+		long getElapsedMillis(){
+			return elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return state + ", " + deletedDocuments + " deleted documents (" + Math.round(deletedRatio * 100) + "%), " + elapsedMillis + " ms";
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene60.Lucene60Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ParallelLeafReader;
+import org.apache.lucene.index.SlowCodecReaderWrapper;
+import org.apache.lucene.search.highlight.TokenSources;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An offline migration of the index to another profile.
+ * <br><br>Documents are rewritten into a new commit of a same directory while a last commit is read.
+ * Contents aren't extracted again. They are rebuilt from term vectors of a document.
+ * A document without term vectors or doc values can't be rebuilt. It's copied as it is and stays searchable,
+ * but its last modified time is unknown, so it's indexed again by a next crawl.
+ * A last commit is kept until a new commit is written, so an interrupted migration leaves the index as before.
+ * <br><br>Fields which are derived from a path are added to older segments by {@link #backfill(Directory, IndexWriterConfig, Function)}.
+ * Other fields of a document are copied as they are, so documents keep their last modified times
+ * and they aren't indexed again by a crawl.
+ * <br><br>It runs while the index isn't opened by a writer.
+ *
+ * @author qwefgh90
+ *
+ */
+final class IndexMigration {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(IndexMigration.class);
+	private static final Set<String> PATH_FIELDS = Collections.singleton(IndexSnapshot.PATH_FIELD);
+
+	/**
+	 * A factory of a document of a new profile.
+	 */
+	interface DocumentFactory {
+		/**
+		 * @param stored stored fields of a document
+		 * @param size a size of a file
+		 * @param contents a token stream of contents
+		 * @return a new document. if a document can't be rebuilt return null
+		 * @throws IOException
+		 */
+		Document create(Document stored, long size, TokenStream contents) throws IOException;
+	}
+
+	private IndexMigration(){
+	}
+
+	/**
+	 * @return a codec which compresses stored fields best
+	 */
+	static Codec createCompactCodec(){
+		return new Lucene60Codec(Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION);
+	}
+
+	/**
+	 * @param dir a directory of the index
+	 * @param config a config of a new profile
+	 * @param factory
+	 * @return a report of a migration
+	 * @throws IOException
+	 */
+	static Result migrate(Directory dir, IndexWriterConfig config, DocumentFactory factory) throws IOException {
+		final long start = System.currentTimeMillis();
+		final long bytesBefore = sizeOf(dir);
+		int migrated = 0;
+		int stale = 0;
+		config.setOpenMode(OpenMode.CREATE); // readers see a last commit until a reader is closed
+		try (DirectoryReader reader = DirectoryReader.open(dir);
+				IndexWriter writer = new IndexWriter(dir, config)) {
+			final List<CodecReader> staleReaders = new ArrayList<>();
+			for(LeafReaderContext context : reader.leaves()){
+				final LeafReader leaf = context.reader();
+				final Bits liveDocs = leaf.getLiveDocs();
+				final NumericDocValues sizeValues = leaf.getNumericDocValues(IndexSnapshot.SIZE_FIELD);
+				final Bits docsWithSize = leaf.getDocsWithField(IndexSnapshot.SIZE_FIELD);
+				final FixedBitSet staleDocs = new FixedBitSet(Math.max(1, leaf.maxDoc()));
+				for(int doc = 0; doc < leaf.maxDoc(); doc++){
+					if(liveDocs != null && !liveDocs.get(doc))
+						continue;
+					final Document stored = leaf.document(doc);
+					if(stored.get(IndexSnapshot.PATH_FIELD) == null)
+						continue; // a document of initialization
+					final TokenStream contents = TokenSources.getTermVectorTokenStreamOrNull(ContentsHighlighter.CONTENTS_FIELD
+							, leaf.getTermVectors(doc), -1);
+					final Document migratedDoc = contents == null || sizeValues == null || !docsWithSize.get(doc) ? null
+							: factory.create(stored, sizeValues.get(doc), contents);
+					if(migratedDoc == null){
+						staleDocs.set(doc);
+						stale++;
+						continue;
+					}
+					writer.addDocument(migratedDoc);
+					migrated++;
+				}
+				if(staleDocs.cardinality() > 0)
+					staleReaders.add(SlowCodecReaderWrapper.wrap(new StaleDocumentsReader(leaf, staleDocs)));
+			}
+			if(!staleReaders.isEmpty())
+				writer.addIndexes(staleReaders.toArray(new CodecReader[staleReaders.size()]));
+			if(migrated + stale == 0)
+				writer.addDocument(new Document());
+			writer.commit();
+		}
+		final Result result = new Result(migrated, stale, bytesBefore, sizeOf(dir), System.currentTimeMillis() - start);
+		LOG.info("The index is migrated : " + result);
+		return result;
+	}
+
+	/**
+	 * Add fields of a path to documents of segments which don't have them.
+	 * Fields are indexed into a parallel segment of which documents are aligned with a segment,
+	 * and both are copied into a new commit. Contents aren't read, so documents of any profile are kept.
+	 * @param dir a directory of the index
+	 * @param config a config of a writer. its analyzer analyzes fields of a path
+	 * @param pathFields a factory of fields of a path
+	 * @return a count of documents of which fields are added
+	 * @throws IOException
+	 */
+	static int backfill(Directory dir, IndexWriterConfig config, Function<Path, Document> pathFields) throws IOException {
+		final long start = System.currentTimeMillis();
+		int backfilled = 0;
+		try (DirectoryReader reader = DirectoryReader.open(dir)) {
+			if(hasPathFields(reader))
+				return 0;
+			config.setOpenMode(OpenMode.CREATE); // readers see a last commit until a reader is closed
+			try (IndexWriter writer = new IndexWriter(dir, config)) {
+				for(LeafReaderContext context : reader.leaves()){
+					final LeafReader leaf = context.reader();
+					if(hasPathFields(leaf)){
+						writer.addIndexes(SlowCodecReaderWrapper.wrap(leaf));
+						continue;
+					}
+					try (RAMDirectory fieldsDir = new RAMDirectory()) {
+						writePathFields(leaf, fieldsDir, config.getAnalyzer(), pathFields);
+						try (DirectoryReader fieldsReader = DirectoryReader.open(fieldsDir)) {
+							// fields of a segment come first, so it keeps fields which are also in a parallel segment
+							writer.addIndexes(SlowCodecReaderWrapper.wrap(
+									new ParallelLeafReader(false, leaf, fieldsReader.leaves().get(0).reader())));
+						}
+					}
+					backfilled += leaf.numDocs();
+				}
+				writer.commit();
+			}
+		}
+		LOG.info("Fields of paths are added to " + backfilled + " documents in " + (System.currentTimeMillis() - start) + " ms");
+		return backfilled;
+	}
+
+	/**
+	 * @param reader
+	 * @return if all documents with a path have fields of a path return true
+	 * @throws IOException
+	 */
+	static boolean hasPathFields(IndexReader reader) throws IOException {
+		return PathHierarchy.isIndexed(reader) && PathSubstringQuery.hasGrams(reader);
+	}
+
+	/**
+	 * Write a single segment of which a document has fields of a path of a same document of a segment.
+	 * A deleted document or a document without a path is an empty document, so documents are aligned.
+	 * @param leaf
+	 * @param fieldsDir
+	 * @param analyzer
+	 * @param pathFields
+	 * @throws IOException
+	 */
+	private static void writePathFields(LeafReader leaf, Directory fieldsDir, Analyzer analyzer
+			, Function<Path, Document> pathFields) throws IOException {
+		final IndexWriterConfig config = new IndexWriterConfig(analyzer);
+		config.setMergePolicy(new LogDocMergePolicy()); // adjacent segments are merged, so an order is kept
+		final Bits liveDocs = leaf.getLiveDocs();
+		final BinaryDocValues pathValues = leaf.getBinaryDocValues(IndexSnapshot.PATH_FIELD);
+		final Bits docsWithPath = leaf.getDocsWithField(IndexSnapshot.PATH_FIELD);
+		try (IndexWriter writer = new IndexWriter(fieldsDir, config)) {
+			for(int doc = 0; doc < leaf.maxDoc(); doc++){
+				String pathString = null;
+				if(liveDocs == null || liveDocs.get(doc)){
+					pathString = pathValues != null && docsWithPath.get(doc) ? pathValues.get(doc).utf8ToString()
+							: leaf.document(doc, PATH_FIELDS).get(IndexSnapshot.PATH_FIELD);
+				}
+				writer.addDocument(pathString == null || pathString.isEmpty() ? new Document() : pathFields.apply(Paths.get(pathString)));
+			}
+			writer.forceMerge(1);
+		}
+	}
+
+	/**
+	 * @param dir
+	 * @return a sum of sizes of files
+	 * @throws IOException
+	 */
+	static long sizeOf(Directory dir) throws IOException {
+		long size = 0;
+		for(String file : dir.listAll()){
+			try {
+				size += dir.fileLength(file);
+			} catch (IOException e) {
+				// a file is deleted while it's listed
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * A segment of which only documents which can't be rebuilt are live.
+	 * Their last modified times are unknown, so a crawl indexes them again.
+	 */
+	private static final class StaleDocumentsReader extends FilterLeafReader {
+		private final FixedBitSet staleDocs;
+		private final int numDocs;
+
+		StaleDocumentsReader(LeafReader in, FixedBitSet staleDocs){
+			super(in);
+			this.staleDocs = staleDocs;
+			this.numDocs = staleDocs.cardinality();
+		}
+
+		@Override
+		public Bits getLiveDocs() {
+			return staleDocs;
+		}
+
+		@Override
+		public int numDocs() {
+			return numDocs;
+		}
+
+		@Override
+		public NumericDocValues getNumericDocValues(String field) throws IOException {
+			if(!IndexSnapshot.LAST_MODIFIED_TIME_FIELD.equals(field))
+				return super.getNumericDocValues(field);
+			return new NumericDocValues() {
+				@Override
+				public long get(int docID) {
+					return IndexSnapshot.UNKNOWN;
+				}
+			};
+		}
+	}
+
+	/**
+	 * A report of a migration.
+	 */
+	static final class Result {
+		private final int migratedDocuments;
+		private final int staleDocuments; // copied and indexed again by a crawl
+		private final long bytesBefore;
+		private final long bytesAfter;
+		private final long elapsedMillis;
+
+		Result(int migratedDocuments, int staleDocuments, long bytesBefore, long bytesAfter, long elapsedMillis){
+			this.migratedDocuments = migratedDocuments;
+			this.staleDocuments = staleDocuments;
+			this.bytesBefore = bytesBefore;
+			this.bytesAfter = bytesAfter;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		int getMigratedDocuments(){
+			return migratedDocuments;
+		}
+
+		int getStaleDocuments(){
+			return staleDocuments;
+		}
+
+		long getBytesBefore(){
+			return bytesBefore;
+		}
+
+		long getBytesAfter(){
+			return bytesAfter;
+		}
+
+		long getElapsedMillis(){
+			return elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return migratedDocuments + " migrated, " + staleDocuments + " to be indexed again, "
+					+ bytesBefore / 1024 + " KB -> " + bytesAfter / 1024 + " KB, " + elapsedMillis + " ms";
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.StringHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A snapshot of indexed paths with last modified time and size.
+ * <br><br>It's loaded once per crawl from doc values and classifies a visited file
+ * without a query. Paths are kept in BytesRefHash, and times and sizes are kept in primitive arrays.
+ * <br><br>Files are classified by multiple crawler threads without a lock.
+ * After it's loaded, paths are looked up in a read-only table of ordinals
+ * (a lookup of BytesRefHash isn't thread-safe) and visited paths are marked in an atomic bitset.
+ *
+ * @author qwefgh90
+ *
+ */
+final class IndexSnapshot {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(IndexSnapshot.class);
+
+	static final String PATH_FIELD = "pathString";
+	static final String LAST_MODIFIED_TIME_FIELD = "lastModifiedTime";
+	static final String SIZE_FIELD = "size";
+	static final String MIME_TYPE_FIELD = "mimeType";
+	static final long UNKNOWN = -1;
+
+	enum FileState{
+		NEW, CHANGED, UNCHANGED;
+	}
+
+	private final BytesRefHash paths = new BytesRefHash();
+	private long[] lastModifiedTimes = new long[16];
+	private long[] sizes = new long[16];
+	private final int[] table; // ordinals of paths by hash, -1 is empty. it's read-only after load
+	private final AtomicLongArray visited;
+	private final BytesRef scratch = new BytesRef(); // for a single thread which iterates paths
+	private final AtomicInteger changedCount = new AtomicInteger(0);
+	private final ThreadLocal<BytesRefBuilder> keys = ThreadLocal.withInitial(BytesRefBuilder::new);
+	private final ThreadLocal<BytesRef> candidates = ThreadLocal.withInitial(BytesRef::new);
+
+	private IndexSnapshot(IndexReader reader) throws IOException {
+		final IndexedFileCursor cursor = IndexedFileCursor.open(reader);
+		while (cursor.next()) {
+			int ord = paths.add(cursor.getPath());
+			if (ord < 0)
+				ord = -ord - 1;
+			lastModifiedTimes = ArrayUtil.grow(lastModifiedTimes, ord + 1);
+			sizes = ArrayUtil.grow(sizes, ord + 1);
+			// a legacy document is regarded as changed and indexed again with doc values
+			lastModifiedTimes[ord] = cursor.getLastModifiedTime();
+			sizes[ord] = cursor.getSize();
+		}
+		table = new int[Integer.highestOneBit(Math.max(1, paths.size()) * 2) * 2];
+		Arrays.fill(table, -1);
+		for (int ord = 0; ord < paths.size(); ord++) {
+			int slot = hash(paths.get(ord, scratch)) & (table.length - 1);
+			while (table[slot] != -1)
+				slot = (slot + 1) & (table.length - 1);
+			table[slot] = ord;
+		}
+		visited = new AtomicLongArray((paths.size() >>> 6) + 1);
+		LOG.debug("Snapshot is loaded : " + paths.size() + " paths");
+	}
+
+	/**
+	 * Load a snapshot from live documents of a reader.
+	 * @param reader
+	 * @return a snapshot
+	 * @throws IOException
+	 */
+	static IndexSnapshot load(IndexReader reader) throws IOException {
+		return new IndexSnapshot(reader);
+	}
+
+	/**
+	 * Classify a visited file and mark it as visited.
+	 * @param pathString absolute path of a file
+	 * @param lastModifiedTime last modified time of a file
+	 * @param size size of a file
+	 * @return a state of a file compared with the index
+	 */
+	FileState classify(String pathString, long lastModifiedTime, long size) {
+		final int ord = find(pathString);
+		if (ord < 0)
+			return FileState.NEW;
+		markVisited(ord);
+		if (lastModifiedTimes[ord] == lastModifiedTime && (sizes[ord] == size || sizes[ord] == UNKNOWN))
+			return FileState.UNCHANGED; // a size isn't stored in documents indexed before doc values
+		changedCount.incrementAndGet();
+		return FileState.CHANGED;
+	}
+
+	/**
+	 * A key and a candidate are buffers of a calling thread, so nothing is allocated.
+	 * @param pathString
+	 * @return an ordinal of a path. if it's not indexed return -1
+	 */
+	private int find(String pathString) {
+		final BytesRefBuilder key = keys.get();
+		key.copyChars(pathString);
+		final BytesRef keyRef = key.get();
+		final BytesRef candidate = candidates.get();
+		int slot = hash(keyRef) & (table.length - 1);
+		while (table[slot] != -1) {
+			if (paths.get(table[slot], candidate).bytesEquals(keyRef))
+				return table[slot];
+			slot = (slot + 1) & (table.length - 1);
+		}
+		return -1;
+	}
+
+	private static int hash(BytesRef bytes) {
+		return StringHelper.murmurhash3_x86_32(bytes, 0);
+	}
+
+	private void markVisited(int ord) {
+		final int index = ord >>> 6;
+		final long mask = 1L << ord; // a shift is modulo 64
+		while (true) {
+			final long bits = visited.get(index);
+			if ((bits & mask) != 0 || visited.compareAndSet(index, bits, bits | mask))
+				return;
+		}
+	}
+
+	private boolean isVisited(int ord) {
+		return (visited.get(ord >>> 6) & (1L << ord)) != 0;
+	}
+
+	/**
+	 * Iterate paths which are indexed but not visited.
+	 * After a whole crawl, they are deleted or not contained in directories.
+	 * @param consumer
+	 */
+	void forEachUnvisited(Consumer<String> consumer) {
+		for (int ord = 0; ord < paths.size(); ord++) {
+			if (!isVisited(ord))
+				consumer.accept(paths.get(ord, scratch).utf8ToString());
+		}
+	}
+
+	int size() {
+		return paths.size();
+	}
+
+	/**
+	 * @return a count of files which are classified as changed
+	 */
+	int getChangedCount() {
+		return changedCount.get();
+	}
+}
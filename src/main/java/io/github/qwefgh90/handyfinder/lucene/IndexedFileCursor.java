@@ -0,0 +1,160 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A forward-only cursor over indexed files. Segments are streamed one by one from doc values,
+ * so stored documents are never loaded.
+ * <br><br>A document indexed before doc values were added is read from stored fields.
+ * Its last modified time is the stored one and its size is unknown.
+ * A document without a path (e.g. an empty document of initialization) is skipped.
+ * A segment without {@link PathHierarchy} or n-grams of {@link PathSubstringQuery} isn't indexed again by a crawl,
+ * because these fields are backfilled by {@link IndexMigration}.
+ * <br><br>A cursor is valid while a reader is open and it's not thread-safe.
+ *
+ * @author qwefgh90
+ *
+ */
+final class IndexedFileCursor {
+	private static final Set<String> LEGACY_FIELDS = Collections.unmodifiableSet(
+			new HashSet<>(Arrays.asList(IndexSnapshot.PATH_FIELD, IndexSnapshot.LAST_MODIFIED_TIME_FIELD
+					, IndexSnapshot.MIME_TYPE_FIELD)));
+
+	private final List<LeafReaderContext> leaves;
+	private int leafIndex = -1;
+	private LeafReader leaf;
+	private Bits liveDocs;
+	private BinaryDocValues pathValues;
+	private Bits docsWithPath;
+	private NumericDocValues timeValues;
+	private NumericDocValues sizeValues;
+	private SortedDocValues mimeTypeValues;
+	private int doc;
+	private Document legacyDocument; // a current document if it has no doc values
+
+	private IndexedFileCursor(IndexReader reader){
+		this.leaves = reader.leaves();
+	}
+
+	/**
+	 * @param reader
+	 * @return a cursor which is positioned before a first file
+	 */
+	static IndexedFileCursor open(IndexReader reader){
+		return new IndexedFileCursor(reader);
+	}
+
+	/**
+	 * Count live documents with a path. Only bits are read for documents with doc values.
+	 * @param reader
+	 * @return a count of indexed files
+	 * @throws IOException
+	 */
+	static int count(IndexReader reader) throws IOException {
+		final IndexedFileCursor cursor = open(reader);
+		int count = 0;
+		while(cursor.next())
+			count++;
+		return count;
+	}
+
+	private boolean nextLeaf() throws IOException {
+		if(++leafIndex >= leaves.size())
+			return false;
+		leaf = leaves.get(leafIndex).reader();
+		liveDocs = leaf.getLiveDocs();
+		pathValues = leaf.getBinaryDocValues(IndexSnapshot.PATH_FIELD);
+		docsWithPath = leaf.getDocsWithField(IndexSnapshot.PATH_FIELD);
+		timeValues = leaf.getNumericDocValues(IndexSnapshot.LAST_MODIFIED_TIME_FIELD);
+		sizeValues = leaf.getNumericDocValues(IndexSnapshot.SIZE_FIELD);
+		mimeTypeValues = leaf.getSortedDocValues(IndexSnapshot.MIME_TYPE_FIELD);
+		doc = -1;
+		return true;
+	}
+
+	/**
+	 * Move to a next live file.
+	 * @return if there is no more file return false
+	 * @throws IOException
+	 */
+	boolean next() throws IOException {
+		legacyDocument = null;
+		while(leaf != null || nextLeaf()){
+			while(++doc < leaf.maxDoc()){
+				if(liveDocs != null && !liveDocs.get(doc))
+					continue;
+				if(pathValues != null && docsWithPath.get(doc)){
+					if(pathValues.get(doc).length > 0)
+						return true;
+					continue;
+				}
+				// a document indexed before doc values were added
+				final Document document = leaf.document(doc, LEGACY_FIELDS);
+				final String pathString = document.get(IndexSnapshot.PATH_FIELD);
+				if(pathString != null && !pathString.isEmpty()){
+					legacyDocument = document;
+					return true;
+				}
+			}
+			leaf = null;
+		}
+		return false;
+	}
+
+	/**
+	 * @return a path of a current file. it's valid until a cursor is moved
+	 */
+	BytesRef getPath(){
+		return legacyDocument != null ? new BytesRef(legacyDocument.get(IndexSnapshot.PATH_FIELD)) : pathValues.get(doc);
+	}
+
+	String getPathString(){
+		return legacyDocument != null ? legacyDocument.get(IndexSnapshot.PATH_FIELD) : pathValues.get(doc).utf8ToString();
+	}
+
+	/**
+	 * @return a last modified time. if it's unknown return {@link IndexSnapshot#UNKNOWN}
+	 */
+	long getLastModifiedTime(){
+		if(legacyDocument != null){
+			final IndexableField storedTime = legacyDocument.getField(IndexSnapshot.LAST_MODIFIED_TIME_FIELD);
+			return storedTime == null ? IndexSnapshot.UNKNOWN : storedTime.numericValue().longValue();
+		}
+		return timeValues == null ? IndexSnapshot.UNKNOWN : timeValues.get(doc);
+	}
+
+	/**
+	 * @return a size. if it's unknown return {@link IndexSnapshot#UNKNOWN}
+	 */
+	long getSize(){
+		return legacyDocument != null || sizeValues == null ? IndexSnapshot.UNKNOWN : sizeValues.get(doc);
+	}
+
+	/**
+	 * @return a mime type. if a document is indexed before a mime type is added to doc values, it's read from stored fields
+	 * @throws IOException
+	 */
+	String getMimeType() throws IOException {
+		if(legacyDocument != null)
+			return legacyDocument.get(IndexSnapshot.MIME_TYPE_FIELD);
+		if(mimeTypeValues != null && mimeTypeValues.getOrd(doc) != -1)
+			return mimeTypeValues.get(doc).utf8ToString();
+		return leaf.document(doc, LEGACY_FIELDS).get(IndexSnapshot.MIME_TYPE_FIELD);
+	}
+}
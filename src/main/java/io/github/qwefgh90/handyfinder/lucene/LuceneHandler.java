@@ -1,35 +1,34 @@
 package io.github.qwefgh90.handyfinder.lucene;
 
 import io.github.qwefgh90.handyfinder.gui.AppStartup;
+import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.INDEX_PROFILE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.KEYWORD_MODE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.TARGET_MODE;
 import io.github.qwefgh90.handyfinder.lucene.LuceneHandlerState.INDEX_WRITE_STATE;
 import io.github.qwefgh90.handyfinder.lucene.LuceneHandlerState.TransitionObserver;
 import io.github.qwefgh90.handyfinder.lucene.Result.IndexResult;
 import io.github.qwefgh90.handyfinder.lucene.model.Directory;
-import io.github.qwefgh90.handyfinder.memory.monitor.FunctionalLatch;
+import io.github.qwefgh90.handyfinder.memory.monitor.MemoryBudget;
+import io.github.qwefgh90.handyfinder.springweb.websocket.MaintenanceMessage;
 import io.github.qwefgh90.handyfinder.springweb.websocket.MessageController;
-import io.github.qwefgh90.jsearch.JSearch;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.InvalidParameterException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
@@ -37,14 +36,17 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.activity.InvalidActivityException;
 import javax.annotation.PostConstruct;
@@ -58,18 +60,21 @@ import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.ngram.NGramTokenizerFactory;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.LegacyLongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -78,19 +83,19 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
-import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
-import org.apache.lucene.search.highlight.QueryScorer;
-import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
-import org.apache.lucene.search.highlight.TextFragment;
 import org.apache.lucene.search.highlight.TokenSources;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Bits;
+import org.apache.lucene.store.NRTCachingDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.tika.mime.MediaType;
 import org.slf4j.Logger;
@@ -113,24 +118,67 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	final File writerFile;
 	final private org.apache.lucene.store.Directory dir;
 	final private Analyzer analyzer;
+	final private MultiTermQuery.RewriteMethod pathRewriteMethod; // a substring of a path is matched by n-grams
 	final private int minGramSize = 2;
 	final private int maxGramSize = 8;
 	final private long multiplyForNGram;
-	final FunctionalLatch latch = new FunctionalLatch();
+	final private double maxMergeSizeMBForCache = 5.0;
+	final private double maxCachedMB = 60.0;
+	final private int maxReuseCandidates = 8;
+	final private int maxHighlightLength = 100 * 1000; // characters of contents to be highlighted
+	final private int snippetLength = 200;
+	final private double indexMemoryRatio = 0.5; // a ratio of a budget for indexing in maximum heap
+	final private double heapThresholdRatio = 0.85; // a ratio of heap usage after GC which admits one document at once
+	final private static String[] HIGHLIGHT_FIELDS = {ContentsHighlighter.CONTENTS_FIELD, "pathStringForQuery"};
+	final GroupCommitter groupCommitter = new GroupCommitter();
+	private volatile long refreshIntervalInProgress = 1000; // millisecond
+	private volatile long refreshIntervalInReady = 10 * 1000; // millisecond
+	private volatile long lastRefreshMillis = 0;
+	private ScheduledFuture<?> refreshTask; // guarded by refreshTaskLock
+	private final Object refreshTaskLock = new Object();
+	final MemoryBudget memoryBudget; // in-flight documents and a RAM buffer of IndexWriter
 	final LuceneHandlerState state = LuceneHandlerState.self;
 	final ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(1);
 	final ExecutorService mainExecutor = Executors.newCachedThreadPool();
-	final ExecutorService indexExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+	final private int indexWorkerCount = Runtime.getRuntime().availableProcessors() * 2;
+	final private int crawlQueueCapacity = indexWorkerCount * 64; // a count of files which wait for workers
+	final ExecutorService indexExecutor = Executors.newFixedThreadPool(indexWorkerCount);
+	final private int watchWorkerCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	final ExecutorService watchExecutor = Executors.newFixedThreadPool(watchWorkerCount); // a watch doesn't wait for a crawl
+	final private int extractionWorkerCount = Math.min(indexWorkerCount, Runtime.getRuntime().availableProcessors());
+	final private int extractionWorkerHeapMB = 256;
+	final private long extractionTimeoutMillis = 60 * 1000;
+	final private int documentsPerExtractionWorker = 500; // a worker is recycled after it
+	final ExtractionPool extractionPool = new ExtractionPool(extractionWorkerCount, extractionWorkerHeapMB
+			, extractionTimeoutMillis, documentsPerExtractionWorker);
+	final private int deleteBatchSize = 1024; // terms which are deleted in a single call
+	final private double maintenanceDeletedRatio = 0.2; // a ratio of deleted documents which triggers a merge
+	final private long maintenanceIdleMillis = 60 * 1000; // the index isn't changed for it before a merge
+	final private long maintenanceIntervalMillis = 30 * 1000;
+	final private double maintenanceMergeMBPerSec = 20; // I/O rate of merges of a maintenance
+	final IndexMaintenance maintenance = new IndexMaintenance(maintenanceDeletedRatio, maintenanceIdleMillis);
+	final private int traversalThreadCount = Runtime.getRuntime().availableProcessors() * 2; // a walk waits for I/O
+	final DirectoryTraversal traversal = new DirectoryTraversal(traversalThreadCount);
 	
 	
 	private AtomicInteger currentProgress = new AtomicInteger(0); // indexed documents count
 	private AtomicInteger totalProcess = new AtomicInteger(0); // total documents count to be indexed
 	
-	// mutable config, writer, reader, searcher
+	// mutable config, writer, searcher manager
 	private IndexWriterConfig indexConfig;
+	private volatile INDEX_PROFILE writerProfile = INDEX_PROFILE.DEFAULT; // a profile of new documents and segments
 	private IndexWriter writer;
-	private DirectoryReader reader;
-	private IndexSearcher searcher;
+	private volatile SearcherManager searcherManager;
+	private DirectoryWatcher watcher;
+	private CrawlPipeline watchPipeline; // guarded by this
+	private AtomicBoolean watchStopped; // guarded by this
+	private volatile CompletableFuture<Void> watchTasks = CompletableFuture.completedFuture(null); // rescans of a watch in order
+	private final CrawlJournal journal;
+	private volatile CompiledScope compiledScope; // compiled from options, replaced as a whole
+	private final Object searchScopeLock = new Object();
+	private final SearchScope.SegmentCache scopeCache = new SearchScope.SegmentCache(); // shared by compiled scopes
+	private final TextStore textStore; // extracted text for highlighting
+	private final ContentsHighlighter highlighter;
 	
 	private MessageController invokerForCommand; // for command to client
 	private BasicOption basicOption;
@@ -169,18 +217,36 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		try {
 			final Map<String, Analyzer> perFieldAnalyzer = new TreeMap<>();
 			perFieldAnalyzer.put("pathStringForQuery", getKeywordAnalyzer());
+			final Analyzer pathGramAnalyzer = getPathGramAnalyzer();
+			perFieldAnalyzer.put(PathSubstringQuery.FIELD, pathGramAnalyzer);
 			analyzer = new PerFieldAnalyzerWrapper(getNgramAnalyzer(), perFieldAnalyzer);
+			pathRewriteMethod = PathSubstringQuery.rewriteMethod(pathGramAnalyzer);
 			writerPath = path;
 			writerFile = path.toFile();
-			dir = FSDirectory.open(path);
-			indexConfig = new IndexWriterConfig(analyzer);
+			dir = new NRTCachingDirectory(FSDirectory.open(path), maxMergeSizeMBForCache, maxCachedMB);
+			indexConfig = createIndexWriterConfig();
 			writer = new IndexWriter(dir, indexConfig);
 			if (writer.numDocs() == 0)
 				writer.addDocument(new Document());
 			writer.commit();
 
-			reader = DirectoryReader.open(dir);
-			searcher = new IndexSearcher(reader);
+			searcherManager = new SearcherManager(writer, null);
+			memoryBudget = new MemoryBudget((long)(Runtime.getRuntime().maxMemory() * indexMemoryRatio), this::getBufferedBytes);
+			memoryBudget.watchHeapPools(heapThresholdRatio);
+			// files of the index are kept next to it, in AppStartup.pathForAppdata for an application
+			journal = CrawlJournal.open(path.resolveSibling(path.getFileName() + "-crawl.journal"));
+			textStore = TextStore.open(path.resolveSibling(path.getFileName() + "-text"));
+			highlighter = new ContentsHighlighter(doc -> getContents(doc.get("pathString"), doc.getField("lastModifiedTime"))
+					, getKeywordAnalyzer(), "pathStringForQuery", maxHighlightLength, snippetLength);
+			groupCommitter.setCommitListener(() -> {
+				memoryBudget.signalAll(); // a RAM buffer is flushed
+				journal.checkpoint();
+				try {
+					textStore.flush();
+				} catch (IOException e) {
+					LOG.warn(ExceptionUtils.getStackTrace(e));
+				}
+			});
 
 			long temp = 0;
 			for(int i=minGramSize; i<maxGramSize; i++){
@@ -211,11 +277,37 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 				LOG.warn(ExceptionUtils.getStackTrace(e));
 			}
 		}
+		if(basicOption.getIndexProfile() != writerProfile){
+			try {
+				reopenIndexWriter(basicOption.getIndexProfile()); // new segments are written in a profile of options
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
+		}
+		try {
+			backfillPathFields(); // before a crawl compares last modified times
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
 		scheduledExecutor.schedule(() -> {
 			if(state.isReady())
 				restartIndexAsync(basicOption.getDirectoryList()).join();
 		}
 		, 3, TimeUnit.SECONDS); 
+		scheduledExecutor.scheduleWithFixedDelay(() -> {
+			try {
+				if(writer != null)
+					groupCommitter.commitIfExpired(writer);
+			} catch (Exception e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
+		}, 1, 1, TimeUnit.SECONDS);
+		scheduleRefreshTask();
+		scheduledExecutor.scheduleWithFixedDelay(() -> {
+			// a merge runs in an idle window on another thread not to delay commits
+			if(writer != null && maintenance.isDue(writer, groupCommitter.getLastChangedMillis(), state.isReady()))
+				mainExecutor.execute(this::maintainIndex);
+		}, maintenanceIntervalMillis, maintenanceIntervalMillis, TimeUnit.MILLISECONDS);
 	}
 	
 	@PreDestroy
@@ -228,30 +320,217 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		mainExecutor.awaitTermination(10, TimeUnit.SECONDS);
 		indexExecutor.shutdown();
 		indexExecutor.awaitTermination(10, TimeUnit.SECONDS);
+		watchExecutor.shutdown();
+		watchExecutor.awaitTermination(10, TimeUnit.SECONDS);
 		LuceneHandler.closeResources();
 	}
 
 	/**
-	 * If some changes are in indexes, update it.
+	 * Set intervals of refreshing a searcher.
+	 * A searcher is refreshed in background, not on a thread of query.
+	 * @param inProgress interval while indexing is in progress (millisecond)
+	 * @param inReady interval while indexing is not running (millisecond)
+	 */
+	public void setRefreshInterval(long inProgress, long inReady){
+		if(inProgress <= 0 || inReady <= 0)
+			throw new IllegalArgumentException("Interval should be greater than zero.");
+		this.refreshIntervalInProgress = inProgress;
+		this.refreshIntervalInReady = inReady;
+		scheduleRefreshTask();
+	}
+
+	/**
+	 * Schedule a task which refreshes a searcher in a shorter interval.
+	 * A previous task is cancelled.
+	 */
+	private void scheduleRefreshTask() {
+		synchronized(refreshTaskLock){
+			if(scheduledExecutor.isShutdown())
+				return;
+			if(refreshTask != null)
+				refreshTask.cancel(false);
+			final long delay = Math.min(refreshIntervalInProgress, refreshIntervalInReady);
+			refreshTask = scheduledExecutor.scheduleWithFixedDelay(() -> {
+				try {
+					refreshSearcherIfExpired();
+				} catch (Exception e) {
+					LOG.warn(ExceptionUtils.getStackTrace(e));
+				}
+			}, delay, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * If an interval which depends on a state of handler is expired, refresh a searcher.
+	 * A near-real-time reader is opened from writer. so uncommitted changes are visible.
 	 * @throws IOException
 	 */
-	private void updateIndexReader() throws IOException {
-		DirectoryReader temp = DirectoryReader.openIfChanged(reader);
-		if (temp != null) {
-			reader = temp;
-			searcher = new IndexSearcher(reader);
+	private void refreshSearcherIfExpired() throws IOException {
+		final long interval = state.isReady() ? refreshIntervalInReady : refreshIntervalInProgress;
+		if(System.currentTimeMillis() - lastRefreshMillis >= interval){
+			final SearcherManager manager = searcherManager;
+			if(manager != null){
+				manager.maybeRefresh();
+				lastRefreshMillis = System.currentTimeMillis();
+				memoryBudget.signalAll(); // a RAM buffer is flushed
+			}
+		}
+	}
+
+	/**
+	 * @return bytes of a RAM buffer of IndexWriter
+	 */
+	private long getBufferedBytes() {
+		final IndexWriter currentWriter = writer;
+		try {
+			return currentWriter == null ? 0 : currentWriter.ramBytesUsed();
+		} catch (AlreadyClosedException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Refresh a searcher synchronously. It's called after a batch of changes.
+	 */
+	void refreshSearcher() {
+		final SearcherManager manager = searcherManager;
+		if(manager == null)
+			return;
+		try {
+			manager.maybeRefreshBlocking();
+			lastRefreshMillis = System.currentTimeMillis();
+			memoryBudget.signalAll(); // a RAM buffer is flushed
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
 		}
 	}
 	
 	/**
-	 * If writer is close, recover writer
+	 * Merges are throttled and segments with deleted documents are merged by a maintenance.
+	 * @return a config of IndexWriter
+	 */
+	private IndexWriterConfig createIndexWriterConfig() {
+		return createIndexWriterConfig(writerProfile);
+	}
+
+	/**
+	 * Stored fields of segments of a compact profile are compressed best.
+	 * A RAM buffer is set explicitly because a RAM threshold of {@link GroupCommitter} is below it.
+	 * @param profile
+	 * @return a config of IndexWriter
+	 */
+	private IndexWriterConfig createIndexWriterConfig(INDEX_PROFILE profile) {
+		final IndexWriterConfig config = new IndexWriterConfig(analyzer);
+		config.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+		config.setMergeScheduler(IndexMaintenance.createMergeScheduler(maintenanceMergeMBPerSec));
+		config.setMergePolicy(maintenance.createMergePolicy());
+		if(profile == INDEX_PROFILE.COMPACT)
+			config.setCodec(IndexMigration.createCompactCodec());
+		return config;
+	}
+
+	/**
+	 * Close a writer and open it with a profile. Existing segments are kept.
+	 * @param profile
+	 * @throws IOException
+	 */
+	private synchronized void reopenIndexWriter(INDEX_PROFILE profile) throws IOException {
+		writer.close(); // pending changes are committed
+		writerProfile = profile;
+		recoverIndexWriter();
+	}
+
+	/**
+	 * Stop and migrate the index to a profile and crawl again.
+	 * Documents which can't be rebuilt stay searchable until they are indexed by a crawl.
+	 * @param profile
+	 * @return if a process succeed return true, otherwise return false
+	 */
+	public CompletableFuture<Boolean> migrateIndexAsync(final INDEX_PROFILE profile){
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				stopWatch();
+				stopIndexAsync().get(30, TimeUnit.SECONDS);
+				if (!state.isReady())
+					throw new IllegalStateException("Can't change a state to progress");
+				if(state.progress()){
+					try{
+						migrateIndex(profile);
+					}finally{
+						refreshSearcher();
+						state.ready();
+					}
+				}
+			} catch (Exception e){
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+				return false;
+			}
+			return true;
+		}).thenCompose(migrated -> migrated ? restartIndexAsync(basicOption.getDirectoryList())
+				: CompletableFuture.completedFuture(false));
+	}
+
+	/**
+	 * Migrate the index to a profile offline. A writer is closed while documents are rewritten.
+	 * Contents of documents are rebuilt from term vectors. Documents of a compact profile don't have them,
+	 * so they are kept as they are and indexed again by a next crawl.
+	 * @param profile
+	 * @return a report of a migration
+	 * @throws IOException
+	 */
+	synchronized IndexMigration.Result migrateIndex(final INDEX_PROFILE profile) throws IOException {
+		checkAndRecoverIndexWriter();
+		groupCommitter.commit(writer);
+		writer.close(); // a lock of the index is released
+		final IndexMigration.Result result;
+		try {
+			result = IndexMigration.migrate(dir, createIndexWriterConfig(profile)
+					, (stored, size, contents) -> createMigratedDocument(stored, size, contents, profile));
+			writerProfile = profile;
+		} finally {
+			recoverIndexWriter();
+		}
+		return result;
+	}
+
+	/**
+	 * Add fields of a path to documents which are indexed before they were added.
+	 * It's done once offline, so a crawl doesn't extract files of an older index again.
+	 * @throws IOException
+	 */
+	synchronized void backfillPathFields() throws IOException {
+		checkAndRecoverIndexWriter();
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			if(IndexMigration.hasPathFields(searcher.getIndexReader()))
+				return;
+		} finally {
+			manager.release(searcher);
+		}
+		groupCommitter.commit(writer);
+		writer.close(); // a lock of the index is released
+		try {
+			IndexMigration.backfill(dir, createIndexWriterConfig(), this::createPathFields);
+		} finally {
+			recoverIndexWriter();
+		}
+		refreshSearcher();
+	}
+
+	/**
+	 * If writer is close, recover writer and searcher manager which depends on writer
 	 * @throws IOException
 	 */
-	private void recoverIndexWriter() throws IOException{
+	private synchronized void recoverIndexWriter() throws IOException{
 		if(writer != null && !writer.isOpen()){
 			LOG.debug("Reopen IndexWriter");
-			indexConfig = new IndexWriterConfig(analyzer);
+			indexConfig = createIndexWriterConfig();
 			writer = new IndexWriter(dir, indexConfig);
+			final SearcherManager oldManager = searcherManager;
+			searcherManager = new SearcherManager(writer, null);
+			if(oldManager != null)
+				oldManager.close(); // acquired searchers are valid until they are released
 		}
 	}
 	
@@ -271,6 +550,21 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		return ngramAnalyzer;
 	}
 	
+	/**
+	 * All grams up to a size of {@link PathSubstringQuery#GRAM_SIZE}, so a short keyword is a gram
+	 * @return an analyzer of n-grams of a path
+	 * @throws IOException
+	 */
+	private Analyzer getPathGramAnalyzer() throws IOException{
+		final Map<String, String> map = new HashMap<>();
+		map.put("minGramSize", "1");
+		map.put("maxGramSize", String.valueOf(PathSubstringQuery.GRAM_SIZE));
+		return CustomAnalyzer.builder()
+				.withTokenizer(NGramTokenizerFactory.class, map)
+				.addTokenFilter(LowerCaseFilterFactory.class)
+				.build();
+	}
+
 	private Analyzer getKeywordAnalyzer() throws IOException {
 		final Analyzer pathAnalyzer = CustomAnalyzer.builder()
 				.withTokenizer(KeywordTokenizerFactory.class)
@@ -287,72 +581,62 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	 * @throws IllegalStateException if state cannot be changed to progress normally throw it. 
 	 */
 	public CompletableFuture<Integer> startIndexAsync(final List<Directory> list) throws IOException {
-		compactAndCleanIndex();
+		commitAndCleanIndex();
 		invokerForCommand.prepareProgress();
-		totalProcess.set(sizeOfindexDirectories(list));
+		totalProcess.set(0); // it's a running estimate which grows while crawling
 		invokerForCommand.startProgress(totalProcess.get());
 		
-		LOG.info("First try");
-		final List<CompletableFuture<IndexResult>> listOfFutureToBeIndexed = indexDirectoriesAsync(list);	//First try
-		final CompletableFuture<Integer> futureOfAllTry = CompletableFuture.allOf(listOfFutureToBeIndexed.toArray(new CompletableFuture[listOfFutureToBeIndexed.size()]))
-				.thenComposeAsync((result) -> {
-					return CompletableFuture.supplyAsync(() ->{	//Second try
-						//Get a result from futures
-						final List<IndexResult> listOfFirstTry = listOfFutureToBeIndexed.stream()
-								.map((CompletableFuture<IndexResult> future) -> {try {
-									return future.get();
-								} catch (InterruptedException e) {
-									throw new IllegalStateException(e);
-								} catch (ExecutionException e) {
-									throw new IllegalStateException("A stream is failed. " + ExceptionUtils.getStackTrace(e));
-								}}).collect(Collectors.toList());
-						final long firstSuccessCount = listOfFirstTry.stream().filter((IndexResult _result) -> {
-							return _result.code == IndexResult.IndexResultCode.SUCCESS;}).count();
-						
-						//Print a log
-						LOG.info("First try to index is completed. " + firstSuccessCount + " / " + listOfFirstTry.size());
-
-						//Get failed documents
-						final Stream<Path> failedDocumentsStream = listOfFirstTry.stream()
-								.filter((IndexResult _result) -> { return _result.code == IndexResult.IndexResultCode.EXCEPTION;})
-								.map((IndexResult mapParam) -> { return mapParam.path.get(); });
-
-						LOG.info("Second try");
-						//Try it
-						final List<CompletableFuture<IndexResult>> futureForSecondTry = indexFailedDocumentsAsync(failedDocumentsStream);
-						try {
-							//Await computing
-							CompletableFuture.allOf(futureForSecondTry.toArray(new CompletableFuture[futureForSecondTry.size()])).get();
-
-							//Get a result from futures
-							final List<IndexResult> listOfSecondTry = futureForSecondTry.stream()
-									.map((CompletableFuture<IndexResult> future) -> {try {
-										return future.get();
-									} catch (InterruptedException e) {
-										throw new IllegalStateException(e);
-									} catch (ExecutionException e) {
-										throw new IllegalStateException("A stream is failed. " + ExceptionUtils.getStackTrace(e));
-									}}).collect(Collectors.toList());
-
-							final long secondSuccessCount = listOfSecondTry.stream().filter((IndexResult _result) -> {
-								return _result.code == IndexResult.IndexResultCode.SUCCESS;}).count();
-
-							//Print a log
-							LOG.info("Second try to index is completed. "  + secondSuccessCount + " / " + listOfSecondTry.size());
-							compactAndCleanIndex();
-							invokerForCommand.terminateProgress(totalProcess.get());
-							return (int)(firstSuccessCount + secondSuccessCount);						
-						} catch (InterruptedException | ExecutionException e) {
-							LOG.warn(ExceptionUtils.getStackTrace(e));
-							return (int)(firstSuccessCount);
-						} catch (IOException e) {
-							LOG.warn(ExceptionUtils.getStackTrace(e));
-							return (int)(firstSuccessCount);
-						}
-
-					});
-				});
-		return futureOfAllTry;
+		final List<Directory> copiedList = new ArrayList<Directory>(list);
+		journal.begin(getCrawlSignature(copiedList));
+		refreshSearcher();
+		final IndexSnapshot snapshot = loadIndexSnapshot();
+		return CompletableFuture.supplyAsync(() -> {
+			LOG.info("First try");
+			final List<Path> keptPaths = new ArrayList<>();
+			final CrawlPipeline firstTry = createCrawlPipeline();
+			Map.Entry<Integer, Integer> deletedCount = new AbstractMap.SimpleImmutableEntry<>(0, 0);
+			final boolean completed;
+			invokerForCommand.startUpdateSummary();
+			firstTry.start();
+			try{
+				completed = crawlDirectories(copiedList, snapshot, firstTry, keptPaths);
+				if(completed)
+					deletedCount = deleteUnvisitedDocuments(snapshot, keptPaths, path -> true);
+			}finally{
+				firstTry.finish();
+			}
+			firstTry.await();
+			invokerForCommand.terminateUpdateSummary(deletedCount.getKey(), deletedCount.getValue(), snapshot.getChangedCount());
+			final int firstSuccessCount = firstTry.getSuccessCount();
+			LOG.info("First try to index is completed. " + firstSuccessCount + " / " + firstTry.getSubmittedCount());
+
+			LOG.info("Second try");
+			final CrawlPipeline secondTry = createCrawlPipeline();
+			secondTry.start();
+			try{
+				for(Path failedPath : firstTry.getFailedPaths()){
+					if(!secondTry.offer(failedPath))
+						break;
+				}
+			}finally{
+				secondTry.finish();
+			}
+			secondTry.await();
+			final int secondSuccessCount = secondTry.getSuccessCount();
+			LOG.info("Second try to index is completed. "  + secondSuccessCount + " / " + secondTry.getSubmittedCount());
+			LOG.info("Throughput of extractors : " + ContentsExtractor.getThroughputs());
+			
+			try {
+				commitAndCleanIndex();
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+				return firstSuccessCount;
+			}
+			if(completed && !state.isStopping())
+				journal.complete();
+			invokerForCommand.terminateProgress(totalProcess.get());
+			return firstSuccessCount + secondSuccessCount;
+		}, mainExecutor);
 	}
 	
 	/**
@@ -362,14 +646,19 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	public CompletableFuture<Boolean> restartIndexAsync(List<Directory> list){
 		CompletableFuture<Boolean> f = CompletableFuture.supplyAsync(() -> {
 			try {
+				stopWatch();
 				stopIndexAsync().get(30, TimeUnit.SECONDS);
 				if (!state.isReady())
 					throw new IllegalStateException("Can't change a state to progress");
 				if(state.progress()){
 					try{
+						// changes while crawling are also applied by a watcher
+						if(basicOption.isWatchMode())
+							startWatch(list);
 						startIndexAsync(list).get();
-						updateIndexedDocuments(list);
 					}finally{
+						commitPendingChanges();
+						refreshSearcher();
 						state.ready();
 					}
 				}
@@ -386,39 +675,190 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	}
 
 	/**
-	 * remove or update index
-	 * 
-	 * @param rootIndexDirectory index of a directory to be updated
-	 * @return if a exception occurs return false, otherwise return true 
+	 * Start to watch directories. Changes are applied to the index in batch.
+	 * Changed files are indexed by workers of a pipeline which is kept while directories are watched.
+	 * @param list a list of directories
+	 * @throws IOException
+	 */
+	synchronized void startWatch(List<Directory> list) throws IOException {
+		stopWatch();
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		final CrawlPipeline pipeline = new CrawlPipeline(watchExecutor, watchWorkerCount, crawlQueueCapacity
+				, this::indexFile, stopped::get);
+		pipeline.start();
+		watchStopped = stopped;
+		watchPipeline = pipeline;
+		watcher = new DirectoryWatcher(list, root -> getExclusionFilter(Paths.get(root.getPathString()))
+				, (changedPaths, deletedPaths, rescanPaths) -> applyWatchedChanges(changedPaths, deletedPaths, rescanPaths, pipeline));
+		watcher.start();
+	}
+
+	/**
+	 * Stop to watch directories. Files which are not indexed yet are indexed by a next crawl.
+	 */
+	public synchronized void stopWatch() {
+		if(watcher != null){
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
+			watcher = null;
+		}
+		if(watchPipeline != null){
+			watchStopped.set(true);
+			watchPipeline.await(); // a writer isn't changed by workers after it
+			watchPipeline = null;
+			watchStopped = null;
+		}
+	}
+
+	/**
+	 * Apply a batch of changes from a watcher. It's called on a thread of a watcher, so it doesn't wait for index.
+	 * Documents are deleted at once. Changed files are offered to a pipeline and directories are rescanned
+	 * in background. If a pipeline is full, a parent of a file is rescanned instead.
+	 * @param changedPaths created or modified paths
+	 * @param deletedPaths deleted files or directories
+	 * @param rescanPaths directories to be rescanned
+	 * @param pipeline a pipeline of a watch
+	 */
+	void applyWatchedChanges(Set<Path> changedPaths, Set<Path> deletedPaths, Map<Path, Boolean> rescanPaths
+			, CrawlPipeline pipeline) {
+		if(state.isStopping())
+			return; // a next crawl will apply them
+		checkAndRecoverIndexWriter();
+		final Map<Path, ExclusionFilter> exclusionFilters = new HashMap<>();
+		final Map<Path, Boolean> rescans = new HashMap<>(rescanPaths);
+		for(Path path : deletedPaths){
+			final String pathString = path.toAbsolutePath().toString();
+			try {
+				// if a directory is deleted, documents under it are deleted
+				writer.deleteDocuments(new Term("pathString", pathString), PathHierarchy.subtree(path));
+				if(!isPathHierarchyIndexed())
+					writer.deleteDocuments(new PrefixQuery(new Term("pathString", pathString + File.separator)));
+				textStore.remove(pathString); // text under a directory is evicted later
+				groupCommitter.onChanged(writer, 1);
+				LOG.debug("watched delete : " + pathString);
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
+		}
+		for(Path path : changedPaths){
+			try {
+				if(!Files.isRegularFile(path))
+					continue;
+				if(Files.size(path) / (1000 * 1000) <= basicOption.getMaximumDocumentMBSize() && isAllowedName(path)
+						&& !isExcluded(path, exclusionFilters)){
+					totalProcess.incrementAndGet(); // STATE UPDATE
+					if(!pipeline.tryOffer(path) && path.getParent() != null)
+						rescans.merge(path.getParent(), false, Boolean::logicalOr);
+				}else{
+					deleteDocument(path);
+				}
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
+		}
+		refreshSearcher(); // deleted documents
+		// rescans and a refresh after offered files are indexed run in order, but not on this thread
+		watchTasks = watchTasks.thenRunAsync(() -> {
+			for(Map.Entry<Path, Boolean> entry : rescans.entrySet()){
+				try {
+					rescanDirectory(entry.getKey(), entry.getValue(), pipeline);
+				} catch (IOException e) {
+					LOG.warn(ExceptionUtils.getStackTrace(e));
+				}
+			}
+			if(pipeline.awaitProcessed())
+				refreshSearcher();
+		}, mainExecutor);
+	}
+
+	/**
+	 * Crawl a single directory again into a pipeline and delete documents which are not present under it.
+	 * @param directory
+	 * @param recursively
+	 * @param pipeline a pipeline which is started
+	 * @throws IOException
+	 */
+	void rescanDirectory(final Path directory, final boolean recursively, final CrawlPipeline pipeline) throws IOException {
+		LOG.info("Rescan " + directory);
+		refreshSearcher();
+		final IndexSnapshot snapshot = loadIndexSnapshot();
+		final List<Path> keptPaths = new ArrayList<>();
+		final boolean completed = crawlDirectory(directory, recursively, snapshot, pipeline, keptPaths);
+		if(completed && pipeline.awaitProcessed()){
+			final Path absoluteDirectory = directory.toAbsolutePath();
+			deleteUnvisitedDocuments(snapshot, keptPaths, path -> recursively ? path.startsWith(absoluteDirectory)
+					: absoluteDirectory.equals(path.getParent()));
+		}
+	}
+
+	/**
+	 * Apply a change of supported types without a whole crawl.
+	 * Documents of mime types which are not allowed anymore are deleted
+	 * and files which match globs of mime types which are allowed again are indexed.
+	 * If the index is in progress, files of allowed types are indexed in a next crawl.
+	 * @param notAllowedMimesBefore mime types which were not allowed before a change
+	 * @return if a change is applied return true, otherwise return false
 	 */
-	public boolean updateIndexedDocuments(List<Directory> rootIndexDirectory) {
-		int nonPresentCount = 0;
-		int nonContainedCount = 0;
-		int updateCount = 0;
+	public CompletableFuture<Boolean> updateSupportTypeAsync(final Set<String> notAllowedMimesBefore){
+		final Set<String> notAllowedMimes = mimeOption.getNotAllowedMimeList();
+		return CompletableFuture.supplyAsync(() -> {
 			try {
-				invokerForCommand.startUpdateSummary();
-				Map.Entry<List<Document>, Integer> tempReturnValue;
-
-				// clean non present file
-				final List<Document> list = getDocumentList();
-				tempReturnValue = cleanNonPresentInternalIndex(list);
-				nonPresentCount = tempReturnValue.getValue();
-				// clean non contained file
-				tempReturnValue = cleanNonContainedInternalIndex(tempReturnValue.getKey(),
-						new ArrayList<>(rootIndexDirectory));
-				nonContainedCount = tempReturnValue.getValue();
-				// update index
-				updateCount = updateContentInternalIndex(tempReturnValue.getKey());
-				// compact and clean
-				compactAndCleanIndex();
+				checkAndRecoverIndexWriter();
+				for(String mime : notAllowedMimes){
+					if(!notAllowedMimesBefore.contains(mime)){
+						writer.deleteDocuments(new Term("mimeType", mime));
+						groupCommitter.onChanged(writer, 1);
+					}
+				}
+				final Set<String> allowedMimes = new HashSet<>(notAllowedMimesBefore);
+				allowedMimes.removeAll(notAllowedMimes);
+				final GlobMatcher allowedGlobs = mimeOption.compileGlobs(allowedMimes);
+				if(!allowedGlobs.isEmpty()){
+					if(!state.progress()){
+						LOG.info("Files of allowed types are indexed in a next crawl");
+						return false;
+					}
+					try{
+						indexMatchedFiles(basicOption.getDirectoryList(), file -> allowedGlobs.matches(file.getFileName().toString()));
+					}finally{
+						state.ready();
+					}
+				}
+				commitPendingChanges();
+				refreshSearcher();
 			} catch (IOException e) {
 				LOG.warn(ExceptionUtils.getStackTrace(e));
 				return false;
-			} finally {
-				invokerForCommand.terminateUpdateSummary(nonPresentCount,
-						nonContainedCount, updateCount);
 			}
-		return true;
+			return true;
+		});
+	}
+
+	/**
+	 * Crawl directories and index new or changed files which pass a filter.
+	 * Documents which are not visited are not deleted.
+	 * @param list a list of directories
+	 * @param filter
+	 * @throws IOException
+	 */
+	void indexMatchedFiles(final List<Directory> list, final Predicate<Path> filter) throws IOException {
+		refreshSearcher();
+		final IndexSnapshot snapshot = loadIndexSnapshot();
+		final List<Path> keptPaths = new ArrayList<>();
+		final CrawlPipeline pipeline = createCrawlPipeline();
+		pipeline.start();
+		try{
+			for(Directory dir : list){
+				if(!crawlDirectory(Paths.get(dir.getPathString()), dir.isRecursively(), snapshot, pipeline, keptPaths, filter))
+					break;
+			}
+		}finally{
+			pipeline.finish();
+		}
+		pipeline.await();
 	}
 
 	/**
@@ -431,18 +871,31 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 				Optional.of(INDEX_WRITE_STATE.STOPPING)
 				, Optional.of(INDEX_WRITE_STATE.READY)
 				, (self) -> {
+					commitPendingChanges();
 					result.complete(true);
 					state.removeObserver(self);
 					LOG.error("IS STOPPED");
 				});
 		if(state.stopping()){
 			state.addObserverOfTransition(observer);
-			latch.signalAll();
+			memoryBudget.signalAll(); // waiting documents are cancelled
 		}else
 			result.complete(false);
 		return result;
 	}
 
+	/**
+	 * Commit all changes which are grouped by GroupCommitter.
+	 */
+	void commitPendingChanges() {
+		try {
+			checkAndRecoverIndexWriter();
+			groupCommitter.commit(writer);
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
 	/**
 	 * search full string which contains space charactor. it's translated to
 	 * Query
@@ -459,7 +912,41 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	 */
 	public List<ScoreDoc> search(String fullString, int lowerBound) throws QueryNodeException,
 	IOException {
-		checkDirectoryReader();
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			return search(searcher, fullString, lowerBound);
+		} finally {
+			manager.release(searcher);
+		}
+	}
+
+	/**
+	 * search full string and load documents with a same searcher.
+	 * Document ids are not exposed because it can be changed after refreshing a searcher.
+	 * 
+	 * @param fullString
+	 * @param lowerBound
+	 * @return a list of documents
+	 * @throws QueryNodeException
+	 * @throws IOException
+	 */
+	public List<Document> searchDocuments(String fullString, int lowerBound) throws QueryNodeException,
+	IOException {
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			final List<Document> documentList = new ArrayList<>();
+			for(ScoreDoc scoreDoc : search(searcher, fullString, lowerBound))
+				documentList.add(searcher.doc(scoreDoc.doc));
+			return documentList;
+		} finally {
+			manager.release(searcher);
+		}
+	}
+
+	private List<ScoreDoc> search(IndexSearcher searcher, String fullString, int lowerBound) throws QueryNodeException,
+	IOException {
 		final TopDocs docs = searcher.search(getHandyFinderQuery(fullString),
 				basicOption.getLimitCountOfResult());
 		
@@ -471,6 +958,7 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		
 		return docList;
 	}
+
 	/**
 	 * get Document by docid
 	 * 
@@ -479,8 +967,13 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	 * @throws IOException
 	 */
 	public Document getDocument(int docid) throws IOException {
-		checkDirectoryReader();
-		return searcher.doc(docid);
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			return searcher.doc(docid);
+		} finally {
+			manager.release(searcher);
+		}
 	}
 
 	/**
@@ -490,7 +983,16 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	 * @throws IOException
 	 */
 	public Optional<Integer> getDocument(String pathString) throws IOException{
-		checkDirectoryReader();
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			return getDocument(searcher, pathString);
+		} finally {
+			manager.release(searcher);
+		}
+	}
+
+	private Optional<Integer> getDocument(IndexSearcher searcher, String pathString) throws IOException{
 		TopDocs results = searcher.search(new TermQuery(new Term("pathString", pathString)), 1);
 		if (results.totalHits == 0) {
 			return Optional.empty();
@@ -512,39 +1014,55 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	public Explanation getExplanation(int docid, String queryString)
 			throws org.apache.lucene.queryparser.classic.ParseException,
 			IOException, QueryNodeException {
-		checkDirectoryReader();
-		Query query = getHandyFinderQuery(queryString);
-		Explanation explanation = searcher.explain(query, docid);
-
-		return explanation;
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			Query query = getHandyFinderQuery(queryString);
+			Explanation explanation = searcher.explain(query, docid);
+			return explanation;
+		} finally {
+			manager.release(searcher);
+		}
 	}
 
 	/**
-	 * 
+	 * Documents are counted from doc values of segments without loading them.
 	 * @return a count of indexed documents
 	 */
 	public int getDocumentCount() {
-		checkDirectoryReader();
-						final List<Document> list = getDocumentList();
-		return (int) list.stream()
-				.filter(doc -> doc.get("pathString") != null)
-				.filter(doc -> !doc.get("pathString").trim().isEmpty()).count();
+		final SearcherManager manager = getSearcherManager();
+		try {
+			final IndexSearcher searcher = manager.acquire();
+			try {
+				return IndexedFileCursor.count(searcher.getIndexReader());
+			} finally {
+				manager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 	
 	/**
-	 * 
+	 * Paths are streamed from doc values of segments without loading documents.
 	 * @return path List
 	 */
 	public List<String> getDocumentPathList(){
-		checkDirectoryReader();
-		final List<Document> list = getDocumentList();
-		return list.stream()
-				.map(doc -> doc.get("pathString"))
-				.filter(pathString -> pathString != null)
-				.filter(pathString -> !pathString.trim().isEmpty())
-				.collect(Collectors.toList());
-		//reader
-		
+		final SearcherManager manager = getSearcherManager();
+		try {
+			final IndexSearcher searcher = manager.acquire();
+			try {
+				final List<String> list = new ArrayList<>();
+				final IndexedFileCursor cursor = IndexedFileCursor.open(searcher.getIndexReader());
+				while (cursor.next())
+					list.add(cursor.getPathString());
+				return list;
+			} finally {
+				manager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	/**
@@ -563,7 +1081,22 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		if(!docResult.isPresent()){
 			return null;
 		}
-		return highlight(docResult.get(), queryString);
+		if (!Files.exists(Paths.get(pathString)))
+			throw new IOException(pathString + " does not exists.");
+		final Query query = getHandyFinderQuery(queryString);
+		return () -> {
+			final SearcherManager manager = getSearcherManager();
+			final IndexSearcher searcher = manager.acquire();
+			try {
+				//a document id is looked up again because a searcher can be refreshed
+				final Optional<Integer> docid = getDocument(searcher, pathString);
+				if(!docid.isPresent())
+					return Optional.empty();
+				return highlight(searcher, docid.get(), query, queryString);
+			} finally {
+				manager.release(searcher);
+			}
+		};
 	}
 
 	/**
@@ -580,82 +1113,103 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 			throws org.apache.lucene.queryparser.classic.ParseException,
 			IOException, InvalidTokenOffsetsException, QueryNodeException
 	{
-		checkDirectoryReader();
-
-		if(docid >= reader.maxDoc() || docid < 0){
-			return null;
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		final String pathString;
+		try {
+			if(docid >= searcher.getIndexReader().maxDoc() || docid < 0){
+				return null;
+			}
+			pathString = searcher.doc(docid).get("pathString");
+		} finally {
+			manager.release(searcher);
 		}
 
-		final Document doc = getDocument(docid);
-		final Query query = getHandyFinderQuery(queryString);
-		final SimpleHTMLFormatter htmlFormatter = new SimpleHTMLFormatter("","");
-		final Highlighter highlighter = new Highlighter(htmlFormatter, new QueryScorer(query));
-		final String pathString = doc.get("pathString");
-
 		if (!Files.exists(Paths.get(pathString)))
 			throw new IOException(pathString + " does not exists.");
+		final Query query = getHandyFinderQuery(queryString);
 		
-		final Callable<Optional<Map.Entry<String, String>>> getHighlightContent = () -> {
-			final StringBuilder sb = new StringBuilder();
+		return () -> {
+			final SearcherManager currentManager = getSearcherManager();
+			final IndexSearcher currentSearcher = currentManager.acquire();
 			try {
-				final String contents = extractContentsFromFile(new File(pathString));
-				
-				Document tempDocument = new Document();
-				FieldType type = new FieldType();
-				type.setStored(true);
-				Field contentsField = new Field("contents", contents.toString(), type);
-				tempDocument.add(contentsField);
-
-
-				//first, lucene find offset of sentence and highlight sentence from file
-				try (@SuppressWarnings("deprecation")
-				TokenStream tokenStream = TokenSources
-						.getAnyTokenStream(reader, docid, "contents", tempDocument, analyzer)) {
-					TextFragment[] frag = highlighter.getBestTextFragments(
-							tokenStream, contents, false, 4);
-					for (int j = 0; j < frag.length; j++) {
-						if ((frag[j] != null) && (frag[j].getScore() > 0)) {
-							sb.append(frag[j].toString());
-						}
-					}
-				}
-
-				if (sb.length() == 0)
-				{
-					try (@SuppressWarnings("deprecation")
-					TokenStream tokenStream = TokenSources
-							.getAnyTokenStream(reader, docid, "pathStringForQuery", analyzer)) {
-						TextFragment[] frag = highlighter.getBestTextFragments(
-								tokenStream, pathString, false, 4);// highlighter.getBestFragments(tokenStream,
-						for (int j = 0; j < frag.length; j++) {
-							if ((frag[j] != null) && (frag[j].getScore() > 0)) {
-								sb.append(frag[j].toString());
-							}
-						}
-					}
-				}
-				if(sb.length() == 0)
-					sb.append(queryString);
-				
-			} catch (Exception e) {
-				LOG.warn(ExceptionUtils.getStackTrace(e));
-				return Optional.empty();
+				//a document id is valid only in a searcher which it's from, so a path is looked up again
+				final Optional<Integer> currentDocid = getDocument(currentSearcher, pathString);
+				if(!currentDocid.isPresent())
+					return Optional.empty();
+				return highlight(currentSearcher, currentDocid.get(), query, queryString);
+			} finally {
+				currentManager.release(currentSearcher);
 			}
-			final String highlightedText = sb.toString();
-			final String trimHighlightedText = highlightedText.substring(0,
-					highlightedText.length() < 200 ? highlightedText.length()
-							: 200);
-			final Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(pathString, trimHighlightedText);
-			final Optional<Map.Entry<String, String>> result = Optional.of(entry);
-			return result;
 		};
-		return getHighlightContent;
 	}
 
-	public void deleteAllIndexesFromFileSystem() throws IOException {
-		checkAndRecoverIndexWriter();
-		writer.deleteAll();
+	/**
+	 * highlight content of document with a acquired searcher.
+	 * @param searcher
+	 * @param docid
+	 * @param query
+	 * @param queryString
+	 * @return
+	 * @throws IOException
+	 */
+	private Optional<Map.Entry<String, String>> highlight(IndexSearcher searcher, int docid, Query query, String queryString) throws IOException{
+		final String pathString = searcher.doc(docid).get("pathString");
+		final StringBuilder sb = new StringBuilder();
+		try {
+			// a snippet of contents, a path or a query string in order
+			final Map<String, String[]> snippets = highlighter.highlightFields(HIGHLIGHT_FIELDS, query, searcher
+					, new int[]{docid}, new int[]{1, 1});
+			for(String field : HIGHLIGHT_FIELDS){
+				final String[] snippet = snippets.get(field);
+				if(sb.length() == 0 && snippet != null && snippet[0] != null)
+					sb.append(snippet[0]);
+			}
+			if(sb.length() == 0)
+				sb.append(queryString);
+		} catch (Exception e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+			return Optional.empty();
+		}
+		final String highlightedText = sb.toString();
+		final String trimHighlightedText = highlightedText.substring(0,
+				highlightedText.length() < snippetLength ? highlightedText.length()
+						: snippetLength);
+		final Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(pathString, trimHighlightedText);
+		final Optional<Map.Entry<String, String>> result = Optional.of(entry);
+		return result;
+	}
+
+	/**
+	 * Get indexed text of a file from a text store.
+	 * If it's not stored, extract it from a file and store it.
+	 * Only first characters which are highlighted are stored.
+	 * @param pathString
+	 * @param lastModifiedTime an indexed last modified time
+	 * @return text
+	 * @throws IOException
+	 */
+	private String getContents(String pathString, IndexableField lastModifiedTime) throws IOException {
+		final Path path = Paths.get(pathString);
+		if(lastModifiedTime == null)
+			return readContents(path);
+		final long indexedTime = lastModifiedTime.numericValue().longValue();
+		final Optional<String> stored = textStore.get(pathString, indexedTime);
+		if(stored.isPresent())
+			return stored.get();
+		final String contents = readContents(path);
+		if(Files.getLastModifiedTime(path).toMillis() == indexedTime)
+			textStore.put(pathString, indexedTime, contents);
+		return contents;
+	}
+
+	public void deleteAllIndexesFromFileSystem() throws IOException {
+		checkAndRecoverIndexWriter();
+		writer.deleteAll();
 		writer.commit();
+		journal.reset();
+		textStore.clear();
+		refreshSearcher();
 	}
 
 	/**
@@ -677,142 +1231,419 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 
 	@Override
 	public void close() throws IOException {
-		latch.terminate();
+		stopWatch();
+		memoryBudget.close();
+		extractionPool.close();
+		traversal.close();
+		if (searcherManager != null)
+			searcherManager.close();
 		if (writer != null){
 			writer.commit();
 			writer.close();
 		}
-		if (reader != null)
-			reader.close();
 		if (dir != null)
 			dir.close();
+		journal.close();
+		textStore.close();
 		map.remove(writerPath.toAbsolutePath().toString());
 		writer = null;
-		reader = null;
+		searcherManager = null;
 	}
 	
-	List<CompletableFuture<IndexResult>> indexFailedDocumentsAsync(Stream<Path> failedPathList){
-		if (state.isStopping()) {
-			return Collections.emptyList();
+	private CrawlPipeline createCrawlPipeline(){
+		return new CrawlPipeline(indexExecutor, indexWorkerCount, crawlQueueCapacity
+				, this::indexJournaledFile, () -> state.isStopping());
+	}
+
+	/**
+	 * Index a file and record it in a journal.
+	 * A file which crashed or failed in a last run is skipped when a run is resumed.
+	 * @param file
+	 * @return a result of index
+	 */
+	final IndexResult indexJournaledFile(Path file) {
+		final String pathString = file.toAbsolutePath().toString();
+		if (journal.isSkipped(pathString)) {
+			LOG.info("skip a file which is failed in a last run : " + pathString);
+			currentProgress.incrementAndGet();
+			return IndexResult.SKIPPED;
 		}
-		if (!isDiskAvailable()){
-			return Collections.emptyList();
+		journal.started(pathString);
+		final IndexResult result = indexFile(file);
+		if (result.code == IndexResult.IndexResultCode.EXCEPTION)
+			journal.failed(pathString);
+		else
+			journal.done(pathString);
+		return result;
+	}
+
+	/**
+	 * @param list a list of directories
+	 * @return a signature of directories and options which affect a crawl
+	 */
+	private String getCrawlSignature(List<Directory> list){
+		final StringBuilder sb = new StringBuilder();
+		for(Directory dir : list)
+			sb.append(dir.getPathString()).append(dir.isRecursively() ? "/R" : "/N").append(dir.getExcludePatterns()).append(';');
+		sb.append(basicOption.getMaximumDocumentMBSize());
+		sb.append(basicOption.getExcludePatterns()).append(basicOption.isIgnoreFilesUsed());
+		return sb.toString();
+	}
+
+	/**
+	 * Load a snapshot of indexed paths from a current searcher.
+	 * @return a snapshot
+	 * @throws IOException
+	 */
+	IndexSnapshot loadIndexSnapshot() throws IOException {
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			return IndexSnapshot.load(searcher.getIndexReader());
+		} finally {
+			manager.release(searcher);
 		}
-		List<CompletableFuture<IndexResult>> someFutureList = failedPathList
-				.map(_path -> CompletableFuture.supplyAsync(() -> indexFile(_path), indexExecutor))
-				.collect(Collectors.toList());
-		return someFutureList;
 	}
 
-	ArrayList<CompletableFuture<IndexResult>> indexDirectoriesAsync(final List<Directory> list) {
-		final ArrayList<CompletableFuture<IndexResult>> returnedList = new ArrayList<CompletableFuture<IndexResult>>(1000);
-		final List<Directory> copiedList = new ArrayList<Directory>(list);
-		for (Directory dir : copiedList) {
-			if (state.isStopping()) {
-				break;
-			}
-			if (!isDiskAvailable()){
-				break;
-			}
+	/**
+	 * Walk directories once and offer new or changed files into a pipeline.
+	 * Directories are walked concurrently and a root is recorded in order when all files under it are indexed.
+	 * A total count of progress is increased whenever a file is found.
+	 * 
+	 * @param list a list of directories
+	 * @param snapshot a snapshot of indexed paths
+	 * @param pipeline a pipeline where files are offered
+	 * @param keptPaths paths which can't be visited or are skipped by a journal are added
+	 * @return if all directories are crawled return true, otherwise return false
+	 */
+	boolean crawlDirectories(final List<Directory> list, final IndexSnapshot snapshot, final CrawlPipeline pipeline, final List<Path> keptPaths) {
+		if (state.isStopping() || !isDiskAvailable()) {
+			return false;
+		}
+		final Set<String> committedRoots = journal.getCommittedRoots();
+		final AtomicBoolean cancelled = new AtomicBoolean(false);
+		final List<Map.Entry<Directory, Optional<ForkJoinTask<Boolean>>>> walks = new ArrayList<>();
+		for (Directory dir : list) {
 			Path path = Paths.get(dir.getPathString());
-			if (dir.isRecursively()) {
-				indexDirectoryAsync(path, true).ifPresent(futureList -> returnedList.addAll(futureList));
-			} else {
-				indexDirectoryAsync(path, false).ifPresent(futureList -> returnedList.addAll(futureList));
+			if(committedRoots.contains(dir.getPathString())){
+				LOG.info("skip a directory which is crawled in a last run : " + path);
+				synchronized (keptPaths) { // walks of other directories are running
+					keptPaths.add(path.toAbsolutePath());
+				}
+				continue;
+			}
+			walks.add(new AbstractMap.SimpleImmutableEntry<>(dir
+					, walkDirectory(path, dir.isRecursively(), snapshot, pipeline, keptPaths, file -> true, cancelled::get)));
+		}
+		boolean completed = true;
+		for (Map.Entry<Directory, Optional<ForkJoinTask<Boolean>>> walk : walks) {
+			final boolean walked = walk.getValue().map(ForkJoinTask::join).orElse(true);
+			// a root is recorded after all files under it are indexed
+			if(completed && walked && pipeline.awaitProcessed()){
+				journal.rootCrawled(walk.getKey().getPathString());
+			}else{
+				completed = false;
+				cancelled.set(true); // other walks are terminated
 			}
 		}
-		return returnedList;
+		LOG.info("Traversal : " + traversal.getVisitedFileCount() + " files, " + traversal.getVisitedDirectoryCount()
+				+ " directories, " + traversal.getFilesPerSecond() + " files/s");
+		return completed;
+	}
+
+	/**
+	 * @return visited files per second while directories are walked
+	 */
+	public long getTraversalRate() {
+		return traversal.getFilesPerSecond();
 	}
 
 	/**
-	 * single directory index method
+	 * Delete documents which are not visited in a whole crawl.
+	 * They are deleted, not contained in directories or too big.
+	 * @param snapshot a snapshot of indexed paths
+	 * @param keptPaths documents under these paths are kept
+	 * @param scope only documents in scope are deleted
+	 * @return a count of non present documents and a count of excluded documents
+	 */
+	Map.Entry<Integer, Integer> deleteUnvisitedDocuments(final IndexSnapshot snapshot, final List<Path> keptPaths
+			, final Predicate<Path> scope) {
+		checkAndRecoverIndexWriter();
+		final AtomicInteger nonPresentCount = new AtomicInteger(0);
+		final AtomicInteger nonContainedCount = new AtomicInteger(0);
+		final BatchDeleter deleter = new BatchDeleter();
+		final Set<Path> kept = new HashSet<>(keptPaths);
+		snapshot.forEachUnvisited(pathString -> {
+			final Path path = Paths.get(pathString);
+			if(!scope.test(path))
+				return;
+			if(!kept.isEmpty() && isUnder(path, kept))
+				return;
+			deleter.delete(pathString);
+			if(Files.exists(path))
+				nonContainedCount.incrementAndGet();
+			else
+				nonPresentCount.incrementAndGet();
+			LOG.debug("clean unvisited index : " + pathString);
+		});
+		deleter.flush();
+		return new AbstractMap.SimpleImmutableEntry<>(nonPresentCount.get(), nonContainedCount.get());
+	}
+
+	/**
+	 * A path is looked up with its ancestors, so a cost doesn't depend on a count of paths.
+	 * @param path
+	 * @param paths
+	 * @return if a path or one of its ancestors is in paths return true
+	 */
+	private static boolean isUnder(Path path, Set<Path> paths) {
+		for(Path ancestor = path; ancestor != null; ancestor = ancestor.getParent()){
+			if(paths.contains(ancestor))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * single directory crawl method
 	 * 
 	 * @param path
 	 * @param recursively
-	 * @throws IOException
+	 * @param snapshot
+	 * @param pipeline
+	 * @param keptPaths
+	 * @return if crawling is terminated return false, otherwise return true
 	 */
-	Optional<ArrayList<CompletableFuture<IndexResult>>> indexDirectoryAsync(final Path path, final boolean recursively) {
-		if (Files.isDirectory(path)) {
-			final ArrayList<CompletableFuture<IndexResult>> futureList = new ArrayList<CompletableFuture<IndexResult>>(100);
-			final List<Path> pathList = new ArrayList<>(1000);
-			final Path rootDirectory = path;
-			if (recursively) {
-				try {
-					Files.walkFileTree(rootDirectory,
-							new SimpleFileVisitor<Path>() {
-						public FileVisitResult visitFile(Path file,
-								BasicFileAttributes attrs)
-										throws IOException {
-							if (attrs.isRegularFile()) {
-								if (Files.size(file) / (1000 * 1000) <= basicOption.getMaximumDocumentMBSize()
-										&& !isExistsInLuceneIndex(file.toAbsolutePath().toString())){
-									final CompletableFuture<IndexResult> f = CompletableFuture.supplyAsync(() -> indexFile(file), indexExecutor);
-									futureList.add(f);
-									//	}
-								} else {
-									LOG.trace("skip " + file.toString());
-									currentProgress.incrementAndGet(); // STATE UPDATE
-								}
-								if (state.isStopping()) {
-									return FileVisitResult.TERMINATE;
-								}
-								if (!isDiskAvailable()) {
-									return FileVisitResult.TERMINATE;
-								}
-							}
-							return FileVisitResult.CONTINUE;
-						}
-					});
-				} catch (IOException e) {
-					LOG.error(ExceptionUtils.getStackTrace(e));
+	boolean crawlDirectory(final Path path, final boolean recursively, final IndexSnapshot snapshot
+			, final CrawlPipeline pipeline, final List<Path> keptPaths) {
+		return crawlDirectory(path, recursively, snapshot, pipeline, keptPaths, file -> true);
+	}
+
+	/**
+	 * single directory crawl method.
+	 * A file of which a name matches only types which are not allowed is skipped before it's read.
+	 * 
+	 * @param path
+	 * @param recursively
+	 * @param snapshot
+	 * @param pipeline
+	 * @param keptPaths
+	 * @param filter only files which pass a filter are offered
+	 * @return if crawling is terminated return false, otherwise return true
+	 */
+	boolean crawlDirectory(final Path path, final boolean recursively, final IndexSnapshot snapshot
+			, final CrawlPipeline pipeline, final List<Path> keptPaths, final Predicate<Path> filter) {
+		return walkDirectory(path, recursively, snapshot, pipeline, keptPaths, filter, () -> false)
+				.map(ForkJoinTask::join).orElse(true);
+	}
+
+	/**
+	 * Start to walk a directory in parallel. A visitor is called by multiple threads.
+	 * 
+	 * @param path
+	 * @param recursively
+	 * @param snapshot
+	 * @param pipeline
+	 * @param keptPaths it's synchronized while it's walked
+	 * @param filter only files which pass a filter are offered
+	 * @param cancelled if it returns true, a walk is terminated
+	 * @return a walk which returns false if it's terminated. if a path is not a directory return empty
+	 */
+	private Optional<ForkJoinTask<Boolean>> walkDirectory(final Path path, final boolean recursively, final IndexSnapshot snapshot
+			, final CrawlPipeline pipeline, final List<Path> keptPaths, final Predicate<Path> filter, final BooleanSupplier cancelled) {
+		if (!Files.isDirectory(path))
+			return Optional.empty();
+		final ExclusionFilter exclusion = getExclusionFilter(path);
+		if (exclusion.isExcluded(path, true))
+			return Optional.empty(); // documents under it are not visited
+		return Optional.of(traversal.walk(path, recursively, new DirectoryTraversal.Visitor() {
+			@Override
+			public boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (exclusion.isExcluded(dir, true)) {
+					LOG.debug("skip an excluded directory : " + dir);
+					return false;
 				}
-			} else {
-				try {
-					Files.walkFileTree(rootDirectory,
-							EnumSet.noneOf(FileVisitOption.class), 1,
-							new SimpleFileVisitor<Path>() {
-						public FileVisitResult visitFile(Path file,
-								BasicFileAttributes attrs)
-										throws IOException {
-							if (attrs.isRegularFile()) {
-								if (Files.size(file) / (1000 * 1000) <= basicOption.getMaximumDocumentMBSize()
-										&& !isExistsInLuceneIndex(file.toAbsolutePath().toString())){
-									final CompletableFuture<IndexResult> f = CompletableFuture.supplyAsync(() -> indexFile(file), indexExecutor);
-									futureList.add(f);
-								} else {
-									LOG.trace("skip " + file.toString());
-									currentProgress.incrementAndGet(); // STATE UPDATE
-								}
-								if (state.isStopping()) {
-									return FileVisitResult.TERMINATE;
-								}
-								if (!isDiskAvailable()) {
-									return FileVisitResult.TERMINATE;
-								}
-							}
-							return FileVisitResult.CONTINUE;
-						}
-					});
-				} catch (IOException e) {
-					LOG.error(ExceptionUtils.getStackTrace(e));
+				return true;
+			}
+
+			@Override
+			public boolean visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					totalProcess.incrementAndGet(); // STATE UPDATE
+					if (attrs.size() / (1000 * 1000) <= basicOption.getMaximumDocumentMBSize()
+							&& isAllowedName(file) && filter.test(file) && !exclusion.isExcluded(file, false)
+							&& snapshot.classify(file.toAbsolutePath().toString()
+									, attrs.lastModifiedTime().toMillis(), attrs.size()) != IndexSnapshot.FileState.UNCHANGED){
+						if(!pipeline.offer(file))
+							return false;
+					} else {
+						LOG.trace("skip " + file.toString());
+						currentProgress.incrementAndGet(); // STATE UPDATE
+					}
+					if (state.isStopping() || !isDiskAvailable() || cancelled.getAsBoolean())
+						return false;
 				}
+				return true;
 			}
-			
-			if (state.isStopping()) {
-				return Optional.of(futureList);
+
+			@Override
+			public void visitFileFailed(Path file, IOException exc) {
+				LOG.warn("skip " + file.toString() + " : " + exc.toString());
+				synchronized (keptPaths) {
+					keptPaths.add(file.toAbsolutePath());
+				}
 			}
-			if (!isDiskAvailable()) {
-				return Optional.of(futureList);
+		}));
+	}
+
+	/**
+	 * Compile exclusion rules of a directory which contains a path.
+	 * Global patterns and patterns of a directory are applied. 
+	 * If no directory contains a path, a path is a root of global patterns.
+	 * @param path
+	 * @return a filter of exclusion
+	 */
+	ExclusionFilter getExclusionFilter(Path path) {
+		final Path absolutePath = path.toAbsolutePath();
+		Directory root = null;
+		for (Directory dir : basicOption.getDirectoryList()) {
+			final Path dirPath = Paths.get(dir.getPathString()).toAbsolutePath();
+			if (absolutePath.startsWith(dirPath) && (root == null || dirPath.startsWith(Paths.get(root.getPathString()).toAbsolutePath())))
+				root = dir;
+		}
+		final List<String> patterns = new ArrayList<>(basicOption.getExcludePatterns());
+		if (root == null)
+			return new ExclusionFilter(absolutePath, patterns, basicOption.isIgnoreFilesUsed());
+		patterns.addAll(root.getExcludePatterns());
+		return new ExclusionFilter(Paths.get(root.getPathString()), patterns, basicOption.isIgnoreFilesUsed());
+	}
+
+	/**
+	 * @param path
+	 * @param filters filters which are compiled in a batch by roots
+	 * @return if a path is excluded return true
+	 */
+	private boolean isExcluded(Path path, Map<Path, ExclusionFilter> filters) {
+		final Path parent = path.toAbsolutePath().getParent();
+		if (parent == null)
+			return false;
+		return filters.computeIfAbsent(parent, this::getExclusionFilter).isExcluded(path, Files.isDirectory(path));
+	}
+
+	/**
+	 * @param file
+	 * @return if a name of a file is allowed by a mime option return true
+	 */
+	private boolean isAllowedName(Path file) {
+		final Path name = file.getFileName();
+		return name == null || mimeOption.isAllowName(name.toString());
+	}
+
+	/**
+	 * Delete documents of directories which are removed from options.
+	 * Documents of a directory are deleted by a single term.
+	 * A directory which is still covered by another directory is skipped
+	 * and documents without a hierarchy are deleted by a next crawl.
+	 * Directories which are kept inside a removed recursive directory are excluded from its subtree.
+	 * @param before directories before a change
+	 * @param after directories after a change
+	 * @return a count of removed directories of which documents are deleted
+	 * @throws IOException
+	 */
+	public int deleteRemovedDirectories(List<Directory> before, List<Directory> after) throws IOException {
+		final List<Query> queries = new ArrayList<>();
+		for(Directory removed : before){
+			final Path path = Paths.get(removed.getPathString()).toAbsolutePath();
+			final boolean covered = after.stream().anyMatch(dir -> {
+				final Path root = Paths.get(dir.getPathString()).toAbsolutePath();
+				if(dir.isRecursively())
+					return path.startsWith(root);
+				return root.equals(path) && !removed.isRecursively();
+			});
+			if(covered)
+				continue;
+			if(!removed.isRecursively()){
+				queries.add(new TermQuery(PathHierarchy.children(path)));
+				continue;
+			}
+			final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+			builder.add(new TermQuery(PathHierarchy.subtree(path)), Occur.MUST);
+			for(Directory kept : after){
+				final Path root = Paths.get(kept.getPathString()).toAbsolutePath();
+				if(root.startsWith(path)) // e.g. a same directory which isn't recursive anymore
+					builder.add(new TermQuery(PathHierarchy.of(root, kept.isRecursively())), Occur.MUST_NOT);
 			}
-			List<CompletableFuture<IndexResult>> someFutureList = pathList.stream()
-					.map(_path -> CompletableFuture.supplyAsync(() -> indexFile(_path), indexExecutor))
-					.collect(Collectors.toList());
-			futureList.addAll(someFutureList);
-			return Optional.of(futureList);
+			queries.add(builder.build());
 		}
-		return Optional.empty();
+		if(queries.isEmpty())
+			return 0;
+		checkAndRecoverIndexWriter();
+		writer.deleteDocuments(queries.toArray(new Query[queries.size()]));
+		groupCommitter.onChanged(writer, queries.size());
+		LOG.info("Documents of removed directories are deleted : " + queries);
+		return queries.size();
 	}
-	
+
+	/**
+	 * @return if all documents have a hierarchy return true
+	 * @throws IOException
+	 */
+	private boolean isPathHierarchyIndexed() throws IOException {
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			return PathHierarchy.isIndexed(searcher.getIndexReader());
+		} finally {
+			manager.release(searcher);
+		}
+	}
+
+	/**
+	 * Delete a document of a file which is not indexed anymore.
+	 * @param path
+	 * @throws IOException
+	 */
+	private void deleteDocument(Path path) throws IOException {
+		final String pathString = path.toAbsolutePath().toString();
+		checkAndRecoverIndexWriter();
+		writer.deleteDocuments(new Term("pathString", pathString));
+		groupCommitter.onChanged(writer, 1);
+		textStore.remove(pathString);
+	}
+
+	/**
+	 * Deleter of documents which deletes terms of paths in a batch.
+	 * It's used by a single thread and {@link #flush()} should be called at last.
+	 */
+	private final class BatchDeleter {
+		private final List<Term> terms = new ArrayList<>(deleteBatchSize);
+		private final List<String> pathStrings = new ArrayList<>(deleteBatchSize);
+
+		void delete(String pathString) {
+			terms.add(new Term("pathString", pathString));
+			pathStrings.add(pathString);
+			if (terms.size() >= deleteBatchSize)
+				flush();
+		}
+
+		void flush() {
+			if (terms.isEmpty())
+				return;
+			try {
+				checkAndRecoverIndexWriter();
+				writer.deleteDocuments(terms.toArray(new Term[terms.size()]));
+				groupCommitter.onChanged(writer, terms.size());
+				for (String pathString : pathStrings)
+					textStore.remove(pathString);
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			} finally {
+				terms.clear();
+				pathStrings.clear();
+			}
+		}
+	}
+
 	final IndexResult indexFile(Path file) {
 		if (state.isStopping()) {
 			return IndexResult.STOPPED;
@@ -838,39 +1669,125 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	}
 	
 	/**
-	 * single file indexing API commit() call at end
+	 * single file indexing API.
+	 * A change is committed in group by GroupCommitter, not on every call.
+	 * A binary without text or a file of a type which is not allowed isn't indexed.
 	 * 
 	 * @param path
 	 * @throws IOException
 	 */
 	boolean index(final Path path) throws IOException {
-		final MediaType mimeType = JSearch.getContentType(path.toFile(), path
-				.getFileName().toString());
+		if(BinarySniffer.isUnindexable(path)){
+			LOG.debug("skip a binary : " + path);
+			deleteDocument(path);
+			return true;
+		}
+		final MediaType mimeType = ContentsExtractor.detect(path);
+		if(!mimeOption.isAllowMime(mimeType.toString())){
+			LOG.debug("skip a type which is not allowed : " + path);
+			deleteDocument(path);
+			return true;
+		}
 		
+		final INDEX_PROFILE profile = writerProfile;
+		final FieldType type = createContentsType(profile);
+		final BasicFileAttributes attr = Files.readAttributes(path,
+				BasicFileAttributes.class);
+		final String fingerprint = ContentFingerprint.sampled(path, attr.size());
+		final Document doc = createDocument(path, mimeType.toString(), attr.creationTime().toMillis()
+				, attr.lastModifiedTime().toMillis(), attr.size(), fingerprint, profile);
+
+		if(state.isStopping())
+			return false;
+
+		final MemoryBudget.Permit permit;
+		try {
+			// an estimate of tokens of contents which are buffered while a document is analyzed
+			permit = memoryBudget.acquire(Files.size(path) * multiplyForNGram, state::isStopping);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		if(permit == null)
+			return false; // stopping
+		LOG.debug("Admitted : " + path + " / permit : " + permit.getBytes()
+				+ " / used : " + memoryBudget.getUsedBytes() + " of " + memoryBudget.getBudget());
+
+		try {
+			if(state.isStopping())
+				return false;
+			// reused contents are also analyzed by IndexWriter
+			if(indexWithReusedContents(path, attr.size(), fingerprint, doc, type))
+				return true;
+		
+			checkAndRecoverIndexWriter();
+			// contents are extracted while they are analyzed
+			try (NormalizingReader contents = new NormalizingReader(openContents(path, mimeType), maxHighlightLength)) {
+				doc.add(new Field("contents", contents, type));
+				// WARNING) This is high memory cost operation
+				writer.updateDocument(new Term("pathString", path.toAbsolutePath().toString()), doc);
+				groupCommitter.onChanged(writer, 1); // a near-real-time reader makes it searchable before commit
+				textStore.put(path.toAbsolutePath().toString(), attr.lastModifiedTime().toMillis(), contents.getCaptured());
+			}
+		} finally {
+			permit.close(); // buffered tokens are counted by IndexWriter until they are flushed
+		}
+		LOG.info("Indexed : " + path);
+		return true;
+	}
+	
+	/**
+	 * Contents are indexed with offsets in postings for a highlighter.
+	 * Term vectors are stored only in a default profile. They are used to reuse and migrate contents.
+	 * In a compact profile, contents are reused from a text store only if a text is complete.
+	 * @param profile
+	 * @return a field type of contents
+	 */
+	private FieldType createContentsType(INDEX_PROFILE profile) {
 		final FieldType type = new FieldType();
 		type.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-		type.setStoreTermVectors(true);
-		type.setStoreTermVectorOffsets(true);
+		if(profile == INDEX_PROFILE.DEFAULT){
+			type.setStoreTermVectors(true);
+			type.setStoreTermVectorOffsets(true);
+		}
+		return type;
+	}
 
-		final FieldType typeWithStore = new FieldType(type);
-		typeWithStore.setStored(true);
+	/**
+	 * Create a document without contents.
+	 * A path is stored once in a compact profile, a highlighter reads it from a stored path.
+	 * @param path
+	 * @param mimeType
+	 * @param createdTime
+	 * @param lastModifiedTime
+	 * @param size
+	 * @param fingerprint
+	 * @param profile
+	 * @return a document
+	 */
+	private Document createDocument(final Path path, final String mimeType, final long createdTime
+			, final long lastModifiedTime, final long size, final String fingerprint, final INDEX_PROFILE profile) {
+		final FieldType pathType = createContentsType(profile);
+		pathType.setStored(profile == INDEX_PROFILE.DEFAULT);
 
-		final BasicFileAttributes attr = Files.readAttributes(path,
-				BasicFileAttributes.class);
 		final StringField mimeTypeString = new StringField("mimeType",
-				mimeType.toString(), Store.YES);
+				mimeType, Store.YES);
 		final StringField title = new StringField("title", path.getFileName()
 				.toString(), Store.YES);
 		@SuppressWarnings("deprecation")
 		final LegacyLongField createdTimeField = new LegacyLongField("createdTime",
-				attr.creationTime().toMillis(), Store.YES);
+				createdTime, Store.YES);
 		@SuppressWarnings("deprecation")
 		final LegacyLongField lastModifiedTimeField = new LegacyLongField(
-				"lastModifiedTime", attr.lastModifiedTime().toMillis(), Store.YES);
+				"lastModifiedTime", lastModifiedTime, Store.YES);
 		final Field pathStringField = new StringField("pathString", path.toAbsolutePath().toString(), Store.YES);
-		final Field pathStringForQueryField = new Field("pathStringForQuery", path.toAbsolutePath().toString(), typeWithStore);
-
-		final Field contentsField = new Field("contents", extractContentsFromFile(path.toFile()), type);
+		// doc values for IndexSnapshot
+		final Field pathStringValueField = new BinaryDocValuesField(IndexSnapshot.PATH_FIELD, new BytesRef(path.toAbsolutePath().toString()));
+		final Field lastModifiedTimeValueField = new NumericDocValuesField(IndexSnapshot.LAST_MODIFIED_TIME_FIELD, lastModifiedTime);
+		final Field sizeValueField = new NumericDocValuesField(IndexSnapshot.SIZE_FIELD, size);
+		final Field mimeTypeValueField = new SortedDocValuesField(IndexSnapshot.MIME_TYPE_FIELD, new BytesRef(mimeType));
+		final Field pathStringForQueryField = new Field("pathStringForQuery", path.toAbsolutePath().toString(), pathType);
+		final Field fingerprintField = new StringField("fingerprint", fingerprint, Store.YES);
 
 		final Document doc = new Document();
 		doc.add(mimeTypeString);
@@ -878,265 +1795,174 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		doc.add(createdTimeField);
 		doc.add(lastModifiedTimeField);
 		doc.add(pathStringField);
+		doc.add(pathStringValueField);
+		doc.add(lastModifiedTimeValueField);
+		doc.add(sizeValueField);
+		doc.add(mimeTypeValueField);
 		doc.add(pathStringForQueryField);
-		doc.add(contentsField);
-		
-		final long maxHeapSize = Runtime.getRuntime().maxMemory();					
-		final long currentHeap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory(); 
-		if((maxHeapSize) < (currentHeap + (Files.size(path) * multiplyForNGram))){	//if over size of max heap
-			LOG.debug("Waiting. System hasn't enough memory space for running index");
-			try {
-				latch.await(() -> {
-					try {
-						final long _currentHeap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory(); 
-						if((maxHeapSize) > (_currentHeap + (Files.size(path) * multiplyForNGram))){
-							return true;	//have enough memory space
-						}else {
-							LOG.debug("A job is waiting for realease");
-							return false;	//no have enough memory space
-						}
-					} catch (IOException e) {
-						LOG.warn("Exception in functional latch\n" + ExceptionUtils.getStackTrace(e));
-						return true;
-					}
-				}, 1, 10, TimeUnit.SECONDS);
-				LOG.debug("go thread");
-			} catch (InterruptedException e) {
-				LOG.warn(ExceptionUtils.getStackTrace(e));
-			}
-		}
-
-		LOG.debug("\n before update Document\n* Memory check - \n* limit : " +(maxHeapSize) + " / size : " + (currentHeap + (Files.size(path) * multiplyForNGram) 
-				+ "\n* Ram buffer for index : " + indexConfig.getRAMBufferSizeMB() + "," + indexConfig.getMaxBufferedDeleteTerms() + "," + indexConfig.getMaxBufferedDocs()
-				));
-		
-		if(state.isStopping())
-			return false;
-		
-		checkAndRecoverIndexWriter();
-		// WARNING) This is high memory cost operation
-		writer.updateDocument(new Term("pathString", path.toAbsolutePath().toString()), doc);
-		writer.commit(); // commit() is important for real-time search
-		LOG.info("Indexed : " + path);
-		return true;
+		doc.add(fingerprintField);
+		createPathFields(path).forEach(doc::add);
+		return doc;
 	}
-	
-	/*
-	private final Consumer<List<Path>> parallelIndex = (pathList) -> {
-		final ExecutorService threads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-		pathList.forEach((file) -> {
-			threads.submit(new Runnable(){
-				@Override
-				public void run() {
-					if (isStopping()) {
-						return;
-					}
-					if (!isDiskAvailable()) {
-						return;
-					}
-					try {
-						if(!index(file)){
-							LOG.warn("some changes in operation : " + file.toString());
-						}else{
-							currentProgress.incrementAndGet();
-							invokerForCommand.updateProgress(currentProgress.get(), file, totalProcess.get()); // STATE
-						}
-					} catch (Exception e) {
-						failedPathSet.add(file);
-						LOG.warn("later, we will index again : " + file.toString());
-						LOG.warn(ExceptionUtils.getStackTrace(e));
-					}
-				}
-			});
-		});
-		threads.shutdown();
-		try {
-			threads.awaitTermination(24, TimeUnit.HOURS);
-		} catch (InterruptedException e) {
-			threads.shutdownNow();
-			LOG.error(ExceptionUtils.getStackTrace(e));
-		}
-	};
-	*/
-	
+
 	/**
-	 * check if indexed. function time test : 1000 of indexed documents consume
-	 * 200 millis. maybe 500 micro seconds
-	 * 
-	 * @param pathString
-	 * @return
-	 * @throws IOException
+	 * Fields of a document which are derived only from a path.
+	 * They are added to documents of older segments by {@link IndexMigration#backfill(org.apache.lucene.store.Directory, IndexWriterConfig, java.util.function.Function)}.
+	 * @param path
+	 * @return a document of fields of a path
 	 */
-	boolean isExistsInLuceneIndex(String pathString) throws IOException {
-		checkDirectoryReader();
-		TopDocs results = searcher.search(new TermQuery(new Term("pathString",
-				pathString)), 1);
-		if (results.totalHits == 0) {
-			return false;
+	private Document createPathFields(final Path path) {
+		final FieldType gramType = new FieldType();
+		gramType.setIndexOptions(IndexOptions.DOCS);
+		gramType.setTokenized(true);
+		gramType.setOmitNorms(true);
 
-		}
-		return true;
+		final Document doc = new Document();
+		doc.add(new Field(PathSubstringQuery.FIELD, path.toAbsolutePath().toString(), gramType));
+		PathHierarchy.addFields(doc, path);
+		return doc;
 	}
 
 	/**
-	 * 
-	 * @return live documents
+	 * Create a document of a profile from a stored document and a token stream of contents.
+	 * @param stored
+	 * @param size
+	 * @param contents
+	 * @param profile
+	 * @return a document. if stored fields are missing return null
 	 */
-	List<Document> getDocumentList() {
-		checkDirectoryReader();
-		int maxDocId = reader.maxDoc();
-		List<Document> list = new ArrayList<>();
-		for (int i = 0; i < maxDocId; i++) {
-			try {
-				Bits liveDocs = MultiFields.getLiveDocs(reader);
-				if (liveDocs == null || liveDocs.get(i)) {
-					Document doc = reader.document(i);
-					list.add(doc);
-				}
-			} catch (IOException e) {
-				LOG.warn(e.toString());
-			}
-		}
-		return list;
+	private Document createMigratedDocument(final Document stored, final long size, final TokenStream contents
+			, final INDEX_PROFILE profile) {
+		final String pathString = stored.get("pathString");
+		final String mimeType = stored.get("mimeType");
+		final IndexableField createdTime = stored.getField("createdTime");
+		final IndexableField lastModifiedTime = stored.getField("lastModifiedTime");
+		final String fingerprint = stored.get("fingerprint");
+		if(mimeType == null || createdTime == null || lastModifiedTime == null || fingerprint == null)
+			return null;
+		final Document doc = createDocument(Paths.get(pathString), mimeType, createdTime.numericValue().longValue()
+				, lastModifiedTime.numericValue().longValue(), size, fingerprint, profile);
+		final String contentHash = stored.get("contentHash");
+		if(contentHash != null)
+			doc.add(new StringField("contentHash", contentHash, Store.YES));
+		doc.add(new Field(ContentsHighlighter.CONTENTS_FIELD, contents, createContentsType(profile)));
+		return doc;
 	}
 
 	/**
+	 * If a document with same contents is indexed, index a new document with its term vectors
+	 * instead of extracting contents. So a touched, renamed or copied file isn't extracted again.
+	 * A document of a compact profile has no term vectors, so its text in {@link TextStore} is analyzed again
+	 * if it's complete.
+	 * <br><br>A candidate is found with a sampled fingerprint. If samples don't cover a file,
+	 * full hashes are compared for every candidate, including a previous document of a same path.
+	 * A full hash of a file is computed only when there is a candidate, and it's stored in a document.
+	 * A candidate of which contents can't be verified isn't reused.
 	 * 
-	 * @param docList
-	 *            a list of all pathString in Lucene System
-	 * @return
+	 * @param path a path to be indexed
+	 * @param size size of a file
+	 * @param fingerprint a sampled fingerprint of a file
+	 * @param doc a document without contents
+	 * @param type a field type of contents
+	 * @return if a document is indexed return true, otherwise return false
+	 * @throws IOException
 	 */
-	Map.Entry<List<Document>, Integer> cleanNonPresentInternalIndex(
-			List<Document> docList) {
-		checkAndRecoverIndexWriter();
-		int countOfProcessed = 0;
-		Stream<Document> parallelStream = docList.parallelStream();
-		Map<Boolean, List<Document>> map = parallelStream.filter(
-				document -> document.getField("pathString") != null).collect(
-						Collectors.partitioningBy(document -> {
-							String pathString = document.get("pathString");
-							return Files.exists(Paths.get(pathString));
-						}));
-		Iterator<Document> iteratorOfDeletedFiles = map.get(Boolean.FALSE)
-				.iterator();
-		while (iteratorOfDeletedFiles.hasNext()) {
-			final Document currentDoc = iteratorOfDeletedFiles.next();
-			String pathString = currentDoc.get("pathString");
-			try {
-				countOfProcessed++;
-				writer.deleteDocuments(new Term("pathString", pathString));
-				writer.commit();
-				LOG.debug("clean non present index : " + pathString);
-			} catch (Exception e) {
-				LOG.warn(ExceptionUtils.getStackTrace(e));
+	private boolean indexWithReusedContents(final Path path, final long size, final String fingerprint
+			, final Document doc, final FieldType type) throws IOException {
+		final String pathString = path.toAbsolutePath().toString();
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			final TopDocs candidates = searcher.search(new TermQuery(new Term("fingerprint", fingerprint)), maxReuseCandidates);
+			String fullHash = null;
+			for (ScoreDoc candidate : candidates.scoreDocs) {
+				final Document candidateDoc = searcher.doc(candidate.doc);
+				final String candidatePath = candidateDoc.get("pathString");
+				if (candidatePath == null)
+					continue;
+				// a sampled fingerprint misses an edit out of samples or collides with another file
+				if (!ContentFingerprint.isSampledFully(size)) {
+					if (fullHash == null) {
+						fullHash = ContentFingerprint.full(path);
+						doc.add(new StringField("contentHash", fullHash, Store.YES));
+					}
+					if (!hasSameContents(candidateDoc, fullHash))
+						continue;
+				}
+				final TokenStream tokenStream = TokenSources.getTermVectorTokenStreamOrNull("contents"
+						, searcher.getIndexReader().getTermVectors(candidate.doc), -1);
+				if (tokenStream != null) {
+					doc.add(new Field("contents", tokenStream, type));
+				} else {
+					final Optional<String> text = getCompleteText(candidateDoc);
+					if (!text.isPresent())
+						continue;
+					doc.add(new Field("contents", text.get(), type));
+				}
+				checkAndRecoverIndexWriter();
+				// a token stream is consumed while a searcher is acquired
+				writer.updateDocument(new Term("pathString", pathString), doc);
+				groupCommitter.onChanged(writer, 1);
+				copyStoredText(candidateDoc, pathString, doc.getField("lastModifiedTime"));
+				LOG.info("Indexed with contents of " + candidatePath + " : " + path);
+				return true;
 			}
+			return false;
+		} finally {
+			manager.release(searcher);
 		}
-
-		return new AbstractMap.SimpleImmutableEntry<>(map.get(Boolean.TRUE),
-				countOfProcessed);
 	}
 
 	/**
-	 * 
-	 * @param docList
-	 *            a list of all pathString in Lucene System
-	 * @param dirList
-	 *            a list of parent directory indexed
-	 * @return
+	 * Text is captured up to {@link #maxHighlightLength} characters of normalized contents,
+	 * so a shorter text is all contents and it's analyzed into same tokens.
+	 * @param doc an indexed document
+	 * @return stored text of a document if it's not evicted or cut
 	 */
-	Map.Entry<List<Document>, Integer> cleanNonContainedInternalIndex(
-			List<Document> docList, List<Directory> dirList) {
-		checkAndRecoverIndexWriter();
-		int countOfProcessed = 0;
-		final Stream<Document> parallelStream = docList.parallelStream();
-		final Map<Boolean, List<Document>> map = parallelStream
-				.filter(document -> document.getField("pathString") != null)
-				.collect(
-						Collectors.partitioningBy(document -> { // True partition will
-							// be excepted.
-							String pathString = document.get("pathString");
-							Path path = Paths.get(pathString);
-							try {
-								long size = Files.size(path);
-
-								if (size / (1000 * 1000) > basicOption.getMaximumDocumentMBSize()) {
-									return true;
-								}
-							} catch (Exception e) {
-								LOG.error(e.toString());
-							}
-							return dirList.parallelStream().noneMatch(dir -> {
-								if (dir.isRecursively()) {
-									return path.startsWith(dir.getPathString());
-								} else {
-									return path.getParent().equals(
-											dir.getPathString());
-								}
-							});
-						}));
-		final Iterator<Document> iteratorOfNonContainedFile = map.get(Boolean.TRUE).iterator();
-		
-		while (iteratorOfNonContainedFile.hasNext()) {
-			final Document currentDoc = iteratorOfNonContainedFile.next();
-			String pathString = currentDoc.get("pathString");
-			try {
-				countOfProcessed++;
-				writer.deleteDocuments(new Term("pathString", pathString));
-				LOG.debug("clean non contained index : " + pathString);
-			} catch (Exception e) {
-				LOG.error(ExceptionUtils.getStackTrace(e));
-			}
-		}
-		try {
-			writer.commit();
-		} catch (IOException e) {
-			LOG.error(ExceptionUtils.getStackTrace(e));
-		}
-		return new AbstractMap.SimpleImmutableEntry<>(map.get(Boolean.FALSE), countOfProcessed);
+	private Optional<String> getCompleteText(Document doc) {
+		final IndexableField lastModifiedTime = doc.getField("lastModifiedTime");
+		if(lastModifiedTime == null)
+			return Optional.empty();
+		return textStore.get(doc.get("pathString"), lastModifiedTime.numericValue().longValue())
+				.filter(text -> text.length() < maxHighlightLength);
 	}
 
 	/**
-	 * 
-	 * @param docList
-	 *            a list of all pathString in Lucene System
-	 */
-	int updateContentInternalIndex(List<Document> docList) {
-		int countOfProcessed = 0;
-		final Stream<Document> parallelStream = docList.parallelStream();
-		final Iterator<Path> iteratorForUpdate = parallelStream
-				.filter(document -> document.getField("pathString") != null)
-				.filter(document -> {
-					String pathString = document.get("pathString");
-					Path path = Paths.get(pathString);
-					if (!Files.exists(path))
-						return false;
+	 * Copy stored text of a document with same contents to a new path.
+	 * @param candidateDoc a document of which contents are reused
+	 * @param pathString a new path
+	 * @param lastModifiedTime a last modified time of a new path
+	 */
+	private void copyStoredText(Document candidateDoc, String pathString, IndexableField lastModifiedTime) {
+		final IndexableField candidateTime = candidateDoc.getField("lastModifiedTime");
+		if(candidateTime == null || lastModifiedTime == null)
+			return;
+		textStore.get(candidateDoc.get("pathString"), candidateTime.numericValue().longValue())
+			.ifPresent(text -> textStore.put(pathString, lastModifiedTime.numericValue().longValue(), text));
+	}
 
-					long savedLastModifiedTime = document
-							.getField("lastModifiedTime").numericValue()
-							.longValue();
-					long lastModifiedTime = -1;
-					try {
-						lastModifiedTime = Files.getLastModifiedTime(path)
-								.toMillis();
-					} catch (Exception e) {
-						LOG.warn(ExceptionUtils.getStackTrace(e));
-					}
-					return lastModifiedTime != savedLastModifiedTime;
-				}).map(document -> Paths.get(document.get("pathString")))
-				.iterator();
-		while (iteratorForUpdate.hasNext()) {
-			Path path = iteratorForUpdate.next();
-			try {
-				countOfProcessed++;
-				LOG.debug("change detected : " + path);
-				index(path);
-			} catch (Exception e) {
-				LOG.warn(ExceptionUtils.getStackTrace(e));
-			}
-		}
-		return Integer.valueOf(countOfProcessed);
+	/**
+	 * Compare a full hash with contents of an indexed document.
+	 * @param doc an indexed document
+	 * @param fullHash a full hash of a file
+	 * @return if a stored hash or a hash of an unchanged file is same return true.
+	 * if a file of a document without a stored hash is moved or changed, return false.
+	 * @throws IOException
+	 */
+	private boolean hasSameContents(Document doc, String fullHash) throws IOException {
+		final String storedHash = doc.get("contentHash");
+		if (storedHash != null)
+			return storedHash.equals(fullHash);
+		final Path path = Paths.get(doc.get("pathString"));
+		if (!Files.exists(path))
+			return false; // indexed contents are unknown
+		final IndexableField lastModifiedTime = doc.getField("lastModifiedTime");
+		if (lastModifiedTime == null
+				|| Files.getLastModifiedTime(path).toMillis() != lastModifiedTime.numericValue().longValue())
+			return false; // indexed contents are unknown
+		return ContentFingerprint.full(path).equals(fullHash);
 	}
-	
+
 	boolean isDiskAvailable(){	
 		final long totalSpace = writerFile.getTotalSpace();
 		final long usableSpace = writerFile.getUsableSpace(); 
@@ -1151,131 +1977,85 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		}
 	}
 	
-	void compactAndCleanIndex() throws IOException{
-		writer.forceMergeDeletes();
+	/**
+	 * Commit pending changes and delete files which aren't referenced.
+	 * Segments with deleted documents are merged by a maintenance in background.
+	 * @throws IOException
+	 */
+	void commitAndCleanIndex() throws IOException{
+		checkAndRecoverIndexWriter();
+		groupCommitter.commit(writer);
 		writer.deleteUnusedFiles();
-		writer.commit();
-	}
-	
-	String extractContentsFromFile(File f) throws IOException{
-		final String contents = JSearch
-				.extractContentsFromFile(f)
-				.replaceAll("[\n\t\r ]+", " "); // erase tab, new line, return, space
-		return contents;
 	}
 
 	/**
-	 * handyfinder object indexing API
-	 * 
-	 * @param list
-	 * @throws IOException
+	 * Merge segments with deleted documents now. A status is sent to clients.
+	 * @return if a maintenance is done return true. if another maintenance is running return false
 	 */
-	int sizeOfindexDirectories(List<Directory> list) throws IOException {
-		LOG.debug("Calculating size of files to be indexed");
-		Size size = new Size();
-		List<Directory> depensiveCopy = new ArrayList<>(list);
-		for (Directory dir : depensiveCopy) {
-			Path tmp = Paths.get(dir.getPathString());
-			if (dir.isRecursively())
-				size.add(sizeOfindexDirectory(tmp, true));
-			else
-				size.add(sizeOfindexDirectory(tmp, false));
+	boolean maintainIndex() {
+		try {
+			checkAndRecoverIndexWriter();
+			return maintenance.run(writer, groupCommitter, status -> invokerForCommand.sendMaintenanceStatus(
+					MaintenanceMessage.STATE.valueOf(status.getState().name()), status.getDeletedRatio()
+					, status.getDeletedDocuments(), status.getElapsedMillis())).isPresent();
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+			return false;
 		}
-		LOG.debug("Finish to calculate");
-		return size.getSize();
 	}
-
-	private class Size {
-		int size = 0;
-
-		public void add() {
-			size++;
-		}
-
-		public void add(Size sizeObj) {
-			this.size = this.size + sizeObj.getSize();
-		}
-
-		public int getSize() {
-			return size;
+	
+	/**
+	 * Open a reader of contents of a file. Text is extracted while it's read.
+	 * An isolated extractor is run in a forked worker. If a worker can't be used or a pool is unusable, it's run in this process.
+	 * Throughput of an extractor is measured.
+	 * @param path
+	 * @param mimeType
+	 * @return a reader which should be closed
+	 * @throws IOException
+	 */
+	Reader openContents(Path path, MediaType mimeType) throws IOException{
+		final Extractor extractor = ContentsExtractor.select(path, mimeType);
+		if(!extractor.isIsolated() || !extractionPool.isUsable())
+			return ContentsExtractor.measure(extractor, extractor.open(path, mimeType, mainExecutor));
+		Reader reader;
+		try {
+			reader = extractionPool.extract(path, mimeType);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (IOException e) {
+			LOG.warn("Extract in process : " + path + ", " + e.toString());
+			reader = extractor.open(path, mimeType, mainExecutor);
 		}
+		return ContentsExtractor.measure(extractor, reader);
 	}
 
 	/**
-	 * single directory indexing API
-	 * 
+	 * Extract first characters of contents of a file with whitespaces normalized.
 	 * @param path
-	 * @param recursively
+	 * @return text
 	 * @throws IOException
 	 */
-	Size sizeOfindexDirectory(Path path, boolean recursively) {
-		Size size = new Size();
-		if (Files.isDirectory(path) ) {
-			Path rootDirectory = path;
-			if (recursively) {
-				try {
-					Files.walkFileTree(rootDirectory,
-							new SimpleFileVisitor<Path>() {
-						public FileVisitResult visitFile(Path file,
-								BasicFileAttributes attrs){
-							if (attrs.isRegularFile()) {
-								size.add();
-							}
-							return FileVisitResult.CONTINUE;
-						}
-					});
-				} catch (IOException e) {
-					LOG.error(ExceptionUtils.getStackTrace(e));
-				}
-			} else {
-				try {
-				Files.walkFileTree(rootDirectory,
-						EnumSet.noneOf(FileVisitOption.class), 1,
-						new SimpleFileVisitor<Path>() {
-					public FileVisitResult visitFile(Path file,
-							BasicFileAttributes attrs){
-						if (attrs.isRegularFile()) {
-							size.add();
-						}
-						return FileVisitResult.CONTINUE;
-					}
-				});
-				} catch (IOException e) {
-					LOG.error(ExceptionUtils.getStackTrace(e));
-				}
-			}
+	String readContents(Path path) throws IOException{
+		final MediaType mimeType = ContentsExtractor.detect(path);
+		try (NormalizingReader reader = new NormalizingReader(openContents(path, mimeType), maxHighlightLength)) {
+			return reader.readCaptured();
 		}
-		return size;
 	}
 
 	BooleanQuery getHandyFinderQuery(String fullString)
 			throws QueryNodeException {
 		final BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder();
-		final Iterator<Directory> dirIter = basicOption.getDirectoryList().iterator();
-		
-		//Directory filter
-		final BooleanQuery.Builder dirQueryBuilder = new BooleanQuery.Builder();
-		while(dirIter.hasNext()){
-			final Directory dir = dirIter.next();
-			if(dir.isUsed())
-				dirQueryBuilder.add(new WildcardQuery( 
-						new Term("pathStringForQuery", getEscapedTermList(dir.getPathString(), false, true, Optional.empty()).get(0)))
-						, Occur.SHOULD);
-		}
-		queryBuilder.add(dirQueryBuilder.build(), Occur.FILTER);
 		
-		//Mime filter
-		final Iterator<String> notAllowedMimeIter = mimeOption.getNotAllowedMimeList().iterator();
-		while(notAllowedMimeIter.hasNext()){
-			final String mime = notAllowedMimeIter.next();
-			queryBuilder.add(new TermQuery(new Term("mimeType", mime)), Occur.MUST_NOT);
-		}
+		//Directory and mime filter
+		queryBuilder.add(getSearchScope().getQuery(), Occur.FILTER);
 		
 		//Path string query
 		if(basicOption.getTargetMode().contains(TARGET_MODE.PATH)){
 			BooleanQuery.Builder pathQueryBuilder = new BooleanQuery.Builder();
 			for(String e : getEscapedTermList(fullString, true, true, Optional.empty())){
-				Query query = new WildcardQuery(new Term("pathStringForQuery", e)); 
+				WildcardQuery query = new WildcardQuery(new Term("pathStringForQuery", e));
+				query.setRewriteMethod(pathRewriteMethod);
 				pathQueryBuilder.add(query, Occur.SHOULD);
 			}
 			queryBuilder.add(pathQueryBuilder.build(), Occur.SHOULD);
@@ -1296,6 +2076,52 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		return queryBuilder.build();
 	}
 
+	/**
+	 * A scope is compiled again only when used directories or globs of mime types are changed.
+	 * A query doesn't take a monitor of handler, so it isn't blocked by a migration or a restart.
+	 * @return a scope of search of current options
+	 */
+	SearchScope getSearchScope() {
+		final StringBuilder sb = new StringBuilder();
+		final List<String> directoryPaths = new ArrayList<>();
+		for (Directory dir : basicOption.getDirectoryList()) {
+			if (dir.isUsed()) {
+				directoryPaths.add(dir.getPathString());
+				sb.append(dir.getPathString()).append(';');
+			}
+		}
+		sb.append(mimeOption.getVersion());
+		final String signature = sb.toString();
+		final CompiledScope current = compiledScope;
+		if (current != null && signature.equals(current.signature))
+			return current.scope;
+		synchronized (searchScopeLock) {
+			final CompiledScope latest = compiledScope;
+			if (latest != null && signature.equals(latest.signature))
+				return latest.scope;
+			final CompiledScope compiled = new CompiledScope(signature
+					, new SearchScope(scopeCache, directoryPaths, mimeOption.getNotAllowedMimeList()));
+			compiledScope = compiled;
+			if (latest != null)
+				latest.scope.release();
+			LOG.debug("A scope of search is compiled : " + signature);
+			return compiled.scope;
+		}
+	}
+
+	/**
+	 * A scope and a signature of options which it's compiled from.
+	 */
+	private static final class CompiledScope {
+		final String signature;
+		final SearchScope scope;
+
+		CompiledScope(String signature, SearchScope scope){
+			this.signature = signature;
+			this.scope = scope;
+		}
+	}
+
 	private void checkAndRecoverIndexWriter() {
 		if (writer == null) {
 			throw new IllegalStateException(
@@ -1308,16 +2134,18 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		}
 	}
 
-	private void checkDirectoryReader() {
-		if (reader == null) {
+	/**
+	 * Searchers which are acquired from a manager should be released to the same manager.
+	 * A query thread never reopens a reader. It's refreshed in background.
+	 * @return current searcher manager
+	 */
+	SearcherManager getSearcherManager() {
+		final SearcherManager manager = searcherManager;
+		if (manager == null) {
 			throw new IllegalStateException(
 					"invalid state. After LuceneHandler.closeResources() or close(), you can't search.");
 		}
-		try {
-			updateIndexReader();
-		} catch (IOException e) {
-			LOG.error(ExceptionUtils.getStackTrace(e));
-		}
+		return manager;
 	}
 
 	private List<String> getEscapedTermList(String fullString, boolean prefixWildcard, boolean postfixWildcard, Optional<Integer> trimSize) {
@@ -1342,6 +2170,8 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	private Map<String, Integer> getTermFrequenciesFromContents(
 			IndexReader reader, int docId) throws IOException {
 		Terms vector = reader.getTermVector(docId, "contents");
+		if(vector == null)
+			return getTermFrequenciesFromText(reader.document(docId));
 		TermsEnum termsEnum = null;
 		termsEnum = vector.iterator();
 		Map<String, Integer> frequencies = new HashMap<>();
@@ -1354,6 +2184,27 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 		return frequencies;
 	}
 	
+	/**
+	 * Term vectors aren't stored in a compact profile. First characters of stored text are analyzed instead.
+	 * @param doc
+	 * @return frequencies of terms of contents
+	 * @throws IOException
+	 */
+	private Map<String, Integer> getTermFrequenciesFromText(Document doc) throws IOException {
+		final Map<String, Integer> frequencies = new HashMap<>();
+		if(doc.get("pathString") == null)
+			return frequencies;
+		final String contents = getContents(doc.get("pathString"), doc.getField("lastModifiedTime"));
+		try (TokenStream stream = analyzer.tokenStream(ContentsHighlighter.CONTENTS_FIELD, contents)) {
+			final CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while(stream.incrementToken())
+				frequencies.merge(termAttribute.toString(), 1, Integer::sum);
+			stream.end();
+		}
+		return frequencies;
+	}
+
 	/**
 	 * get term vectors from "contents" field
 	 * 
@@ -1363,7 +2214,12 @@ public final class LuceneHandler implements Cloneable, AutoCloseable {
 	 */
 	public Map<String, Integer> getTermFrequenciesFromContents(int docId)
 			throws IOException {
-		checkDirectoryReader();
-		return getTermFrequenciesFromContents(reader, docId);
+		final SearcherManager manager = getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		try {
+			return getTermFrequenciesFromContents(searcher.getIndexReader(), docId);
+		} finally {
+			manager.release(searcher);
+		}
 	}
 }
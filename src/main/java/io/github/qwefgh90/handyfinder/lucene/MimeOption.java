@@ -19,6 +19,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -45,6 +46,8 @@ public final class MimeOption {
 
 	private Map<String, Set<String>> mimeToGlobListMap = new HashMap<>();
 	private Map<String, Boolean> globMap = new TreeMap<>();
+	private volatile GlobMatcher rejectedGlobMatcher = null; // compiled when it's used
+	private final AtomicLong version = new AtomicLong(0);
 
 	public Map<String, Boolean> getImmutableGlobMap() {
 		return Collections.unmodifiableMap(globMap);
@@ -57,6 +60,8 @@ public final class MimeOption {
 		}
 		Boolean value = Boolean.valueOf(b);
 		globMap.put(glob, value);
+		rejectedGlobMatcher = null;
+		version.incrementAndGet();
 	}
 
 	public void initGlobTrue() {
@@ -64,6 +69,58 @@ public final class MimeOption {
 		while (iter.hasNext()) {
 			globMap.put(iter.next(), Boolean.TRUE);
 		}
+		rejectedGlobMatcher = null;
+		version.incrementAndGet();
+	}
+
+	/**
+	 * @return a version which is increased whenever globs are changed
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * It's used to skip a file before it's read.
+	 * A name which matches no glob is allowed because its mime type is known after it's read.
+	 * 
+	 * @param name a file name
+	 * @return if a name matches globs of only mime types which are not allowed return false
+	 */
+	public boolean isAllowName(String name) {
+		GlobMatcher matcher = rejectedGlobMatcher;
+		if (matcher == null) {
+			matcher = compileRejectedGlobs();
+			rejectedGlobMatcher = matcher;
+		}
+		return !matcher.matches(name);
+	}
+
+	/**
+	 * @param mimes mime types
+	 * @return a matcher of globs of mime types
+	 */
+	GlobMatcher compileGlobs(Set<String> mimes) {
+		final Set<String> globs = new HashSet<>();
+		for (String mime : mimes) {
+			final Set<String> mimeGlobs = mimeToGlobListMap.get(mime);
+			if (mimeGlobs != null)
+				globs.addAll(mimeGlobs);
+		}
+		return GlobMatcher.compile(globs);
+	}
+
+	private GlobMatcher compileRejectedGlobs() {
+		final Set<String> rejected = new HashSet<>();
+		final Set<String> allowed = new HashSet<>();
+		for (Map.Entry<String, Set<String>> entry : mimeToGlobListMap.entrySet()) {
+			if (isAllowMime(entry.getKey()))
+				allowed.addAll(entry.getValue());
+			else
+				rejected.addAll(entry.getValue());
+		}
+		rejected.removeAll(allowed); // a glob of an allowed mime type is allowed
+		return GlobMatcher.compile(rejected);
 	}
 	
 	public Set<String> getAllowedMimeList(){
@@ -162,6 +219,8 @@ public final class MimeOption {
 	 * @param glob
 	 */
 	void addGlobType(String mimetype, String glob) {
+		rejectedGlobMatcher = null;
+		version.incrementAndGet();
 		if (!globMap.containsKey(glob))
 			globMap.put(glob, Boolean.TRUE); // if not exist, put True into map
 
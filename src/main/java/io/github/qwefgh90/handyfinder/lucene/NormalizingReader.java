@@ -0,0 +1,106 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader which collapses a run of tabs, new lines, returns and spaces into a space.
+ * It's same with <code>replaceAll("[\n\t\r ]+", " ")</code> but text is normalized while it's read.
+ * <br><br>First <code>captureLength</code> characters of normalized text are kept for a text store.
+ * So memory of a reader is bounded by a buffer and a captured text, not by size of a document.
+ *
+ * @author qwefgh90
+ *
+ */
+final class NormalizingReader extends FilterReader {
+	private final StringBuilder captured;
+	private final int captureLength;
+	private boolean inWhitespace = false;
+
+	NormalizingReader(Reader in, int captureLength){
+		super(in);
+		this.captureLength = captureLength;
+		this.captured = new StringBuilder(Math.min(captureLength, 8192));
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if(len == 0)
+			return 0;
+		int count = 0;
+		while(count == 0){
+			final int read = in.read(cbuf, off, len);
+			if(read == -1)
+				return -1;
+			// characters are moved forward in place
+			for(int i = off; i < off + read; i++){
+				final char c = cbuf[i];
+				if(c == '\n' || c == '\t' || c == '\r' || c == ' '){
+					if(inWhitespace)
+						continue;
+					inWhitespace = true;
+					cbuf[off + count++] = ' ';
+				}else{
+					inWhitespace = false;
+					cbuf[off + count++] = c;
+				}
+			}
+		}
+		if(captured.length() < captureLength)
+			captured.append(cbuf, off, Math.min(count, captureLength - captured.length()));
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final char[] c = new char[1];
+		return read(c, 0, 1) == -1 ? -1 : c[0];
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		final char[] buffer = new char[(int)Math.min(n, 8192)];
+		long skipped = 0;
+		while(skipped < n){
+			final int read = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+			if(read == -1)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		throw new IOException("mark() is not supported");
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("reset() is not supported");
+	}
+
+	/**
+	 * @return first characters of text which is read
+	 */
+	String getCaptured(){
+		return captured.toString();
+	}
+
+	/**
+	 * Read text until first characters are captured or text is ended.
+	 * @return first characters of text
+	 * @throws IOException
+	 */
+	String readCaptured() throws IOException {
+		final char[] buffer = new char[8192];
+		while(captured.length() < captureLength && read(buffer, 0, buffer.length) != -1);
+		return getCaptured();
+	}
+}
@@ -0,0 +1,86 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+
+/**
+ * Ancestor directories of a file which are indexed as exact terms.
+ * <br><br>All ancestors of a file are terms of a hierarchy field and a parent is a term of a parent field.
+ * So documents under a directory are matched by a single term, not by a prefix of paths.
+ * An empty path is an ancestor of all roots, so it's a term of all documents with a hierarchy.
+ * <br><br>Documents indexed before a hierarchy was added don't have these fields.
+ * {@link #isIndexed(IndexReader)} tells whether all documents of a reader have them.
+ *
+ * @author qwefgh90
+ *
+ */
+final class PathHierarchy {
+	static final String FIELD = "pathHierarchy";
+	static final String PARENT_FIELD = "parentPath";
+	private static final String ALL = "";
+
+	private PathHierarchy(){
+	}
+
+	/**
+	 * Add ancestors of a file to a document
+	 * @param doc
+	 * @param path a path of a file
+	 */
+	static void addFields(Document doc, Path path){
+		final Path parent = path.toAbsolutePath().getParent();
+		doc.add(new StringField(FIELD, ALL, Store.NO));
+		if(parent == null)
+			return;
+		doc.add(new StringField(PARENT_FIELD, parent.toString(), Store.NO));
+		for(Path ancestor = parent; ancestor != null; ancestor = ancestor.getParent())
+			doc.add(new StringField(FIELD, ancestor.toString(), Store.NO));
+	}
+
+	/**
+	 * @param directory
+	 * @return a term of documents under a directory
+	 */
+	static Term subtree(Path directory){
+		return new Term(FIELD, directory.toAbsolutePath().toString());
+	}
+
+	/**
+	 * @param directory
+	 * @return a term of documents of which a parent is a directory
+	 */
+	static Term children(Path directory){
+		return new Term(PARENT_FIELD, directory.toAbsolutePath().toString());
+	}
+
+	/**
+	 * @param directory
+	 * @param recursively
+	 * @return a term of documents in a directory
+	 */
+	static Term of(Path directory, boolean recursively){
+		return recursively ? subtree(directory) : children(directory);
+	}
+
+	/**
+	 * @return a term of all documents with a hierarchy
+	 */
+	static Term all(){
+		return new Term(FIELD, ALL);
+	}
+
+	/**
+	 * Statistics of fields are compared, so documents aren't read.
+	 * @param reader
+	 * @return if all documents with a path have a hierarchy return true
+	 */
+	static boolean isIndexed(IndexReader reader) throws IOException {
+		return reader.getDocCount(FIELD) == reader.getDocCount(IndexSnapshot.PATH_FIELD);
+	}
+}
@@ -0,0 +1,248 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.Bits;
+
+/**
+ * A query which matches paths containing a keyword with n-grams of paths.
+ * <br><br>Documents which have all n-grams of a keyword are approximated by postings of a n-gram field
+ * and a path of a candidate is verified from doc values, or from a stored field if a document has no doc values.
+ * So a term dictionary of paths isn't enumerated
+ * and cost of a query depends on documents with grams of a keyword, not on all indexed files.
+ * A keyword shorter than a gram is itself a term of a n-gram field.
+ * <br><br>It's created by {@link #rewriteMethod(Analyzer)} of a <code>*keyword*</code> wildcard query,
+ * so a highlighter still sees a wildcard query. A wildcard which isn't a literal keyword,
+ * or a segment without n-grams or doc values of paths, is matched by a wildcard query as before.
+ *
+ * @author qwefgh90
+ *
+ */
+final class PathSubstringQuery extends Query {
+	static final String FIELD = "pathGrams";
+	static final int GRAM_SIZE = 3;
+	private static final Set<String> PATH_FIELDS = Collections.singleton(IndexSnapshot.PATH_FIELD);
+
+	private final String keyword; // lower case
+	private final List<Term> grams;
+	private final WildcardQuery fallback;
+
+	private PathSubstringQuery(String keyword, List<Term> grams, WildcardQuery fallback){
+		this.keyword = keyword;
+		this.grams = grams;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * @param analyzer an analyzer of a n-gram field
+	 * @return a rewrite method of a wildcard query of a path field
+	 */
+	static MultiTermQuery.RewriteMethod rewriteMethod(Analyzer analyzer){
+		return new MultiTermQuery.RewriteMethod() {
+			@Override
+			public Query rewrite(IndexReader reader, MultiTermQuery query) throws IOException {
+				final String text = query instanceof WildcardQuery ? getKeyword(((WildcardQuery)query).getTerm().text()) : null;
+				if(text == null || text.isEmpty())
+					return MultiTermQuery.CONSTANT_SCORE_REWRITE.rewrite(reader, query);
+				final String keyword = lowerCase(text);
+				final WildcardQuery fallback = new WildcardQuery(((WildcardQuery)query).getTerm());
+				return new PathSubstringQuery(keyword, getGrams(analyzer, keyword), fallback);
+			}
+		};
+	}
+
+	/**
+	 * @param text a text of a wildcard query
+	 * @return a literal keyword between leading and trailing asterisks. if it's not a literal, return null
+	 */
+	static String getKeyword(String text){
+		if(text.length() < 2 || text.charAt(0) != WildcardQuery.WILDCARD_STRING || text.charAt(text.length() - 1) != WildcardQuery.WILDCARD_STRING)
+			return null;
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 1; i < text.length() - 1; i++){
+			final char c = text.charAt(i);
+			if(c == WildcardQuery.WILDCARD_ESCAPE){
+				if(++i >= text.length() - 1)
+					return null; // an escape of a trailing asterisk
+				sb.append(text.charAt(i));
+			}else if(c == WildcardQuery.WILDCARD_STRING || c == WildcardQuery.WILDCARD_CHAR){
+				return null;
+			}else{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param analyzer
+	 * @param keyword
+	 * @return distinct terms of longest grams of a keyword
+	 * @throws IOException
+	 */
+	static List<Term> getGrams(Analyzer analyzer, String keyword) throws IOException {
+		final Set<String> grams = new LinkedHashSet<>();
+		final int length = Math.min(GRAM_SIZE, keyword.codePointCount(0, keyword.length()));
+		try (TokenStream stream = analyzer.tokenStream(FIELD, keyword)) {
+			final CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while(stream.incrementToken()){
+				final String gram = termAttribute.toString();
+				if(gram.codePointCount(0, gram.length()) == length)
+					grams.add(gram);
+			}
+			stream.end();
+		}
+		final List<Term> terms = new ArrayList<>();
+		for(String gram : grams)
+			terms.add(new Term(FIELD, gram));
+		return terms;
+	}
+
+	/**
+	 * Lower case a text in the same way as a lower case filter of a path field.
+	 * @param text
+	 * @return a lower case text
+	 */
+	static String lowerCase(String text){
+		final StringBuilder sb = new StringBuilder(text.length());
+		for(int i = 0; i < text.length(); ){
+			final int codePoint = text.codePointAt(i);
+			sb.appendCodePoint(Character.toLowerCase(codePoint));
+			i += Character.charCount(codePoint);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param path
+	 * @return if a path contains a keyword return true
+	 */
+	boolean matches(String path){
+		return lowerCase(path).contains(keyword);
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+		final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for(Term gram : grams)
+			builder.add(new TermQuery(gram), Occur.FILTER);
+		if(grams.isEmpty())
+			builder.add(new MatchAllDocsQuery(), Occur.FILTER);
+		final Weight approximationWeight = searcher.createNormalizedWeight(builder.build(), false);
+		// a term dictionary of paths is enumerated only if there are documents without grams
+		final Weight fallbackWeight = isIndexed(searcher.getIndexReader()) ? null : searcher.createNormalizedWeight(fallback, false);
+		return new ConstantScoreWeight(this) {
+			@Override
+			public Scorer scorer(LeafReaderContext context) throws IOException {
+				final LeafReader leaf = context.reader();
+				if(fallbackWeight != null && !isIndexed(leaf)){
+					final Scorer scorer = fallbackWeight.scorer(context);
+					return scorer == null ? null : new ConstantScoreScorer(this, score(), scorer.iterator());
+				}
+				final Scorer approximation = approximationWeight.scorer(context);
+				final BinaryDocValues paths = leaf.getBinaryDocValues(IndexSnapshot.PATH_FIELD);
+				if(approximation == null || paths == null)
+					return null;
+				final Bits docsWithPath = leaf.getDocsWithField(IndexSnapshot.PATH_FIELD);
+				final TwoPhaseIterator verification = new TwoPhaseIterator(approximation.iterator()) {
+					@Override
+					public boolean matches() throws IOException {
+						final int doc = approximation.docID();
+						// a legacy document which is merged with new documents has no doc value
+						final String path = docsWithPath.get(doc) ? paths.get(doc).utf8ToString()
+								: leaf.document(doc, PATH_FIELDS).get(IndexSnapshot.PATH_FIELD);
+						return path != null && PathSubstringQuery.this.matches(path);
+					}
+
+					@Override
+					public float matchCost() {
+						return 100; // a length of a path
+					}
+				};
+				return new ConstantScoreScorer(this, score(), verification);
+			}
+		};
+	}
+
+	/**
+	 * @param reader
+	 * @return if all documents with a path have n-grams return true
+	 * @throws IOException
+	 */
+	static boolean hasGrams(IndexReader reader) throws IOException {
+		return reader.getDocCount(FIELD) == reader.getDocCount(IndexSnapshot.PATH_FIELD);
+	}
+
+	/**
+	 * Documents indexed before doc values were added get n-grams from {@link IndexMigration} but no doc values,
+	 * so a segment of them can't be verified from doc values.
+	 * @param reader
+	 * @return if all segments can be matched with n-grams return true
+	 * @throws IOException
+	 */
+	static boolean isIndexed(IndexReader reader) throws IOException {
+		for(LeafReaderContext context : reader.leaves()){
+			if(!isIndexed(context.reader()))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param leaf
+	 * @return if all documents with a path have n-grams and a segment has doc values of paths return true
+	 * @throws IOException
+	 */
+	static boolean isIndexed(LeafReader leaf) throws IOException {
+		if(!hasGrams(leaf))
+			return false;
+		if(leaf.getDocCount(IndexSnapshot.PATH_FIELD) == 0)
+			return true;
+		final FieldInfo info = leaf.getFieldInfos().fieldInfo(IndexSnapshot.PATH_FIELD);
+		return info != null && info.getDocValuesType() == DocValuesType.BINARY;
+	}
+
+	@Override
+	public String toString(String field) {
+		return "PathSubstring(" + keyword + ")";
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return super.equals(obj) && keyword.equals(((PathSubstringQuery)obj).keyword);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * super.hashCode() + keyword.hashCode();
+	}
+}
@@ -6,7 +6,7 @@ import java.util.Optional;
 public class Result {
 	public static class IndexResult{
 		public enum IndexResultCode{
-			SUCCESS, STOPPED, DISK_IS_FULL, EXCEPTION;
+			SUCCESS, STOPPED, DISK_IS_FULL, EXCEPTION, SKIPPED;
 		}
 		public final IndexResultCode code;
 		public final Optional<String> msg;
@@ -20,6 +20,7 @@ public class Result {
 		public static final IndexResult STOPPED = new IndexResult(IndexResultCode.SUCCESS,Optional.empty(),Optional.empty());;
 		public static final IndexResult DISK_IS_FULL = new IndexResult(IndexResultCode.SUCCESS,Optional.empty(),Optional.empty());;
 		public static final IndexResult EXCEPTION = new IndexResult(IndexResultCode.SUCCESS,Optional.empty(),Optional.empty());;
+		public static final IndexResult SKIPPED = new IndexResult(IndexResultCode.SKIPPED,Optional.empty(),Optional.empty());
 
 		public static IndexResult EXCEPTION(Optional<String> msg, Optional<Path> path){
 			return new IndexResult(IndexResultCode.EXCEPTION, msg, path);
@@ -0,0 +1,253 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A scope of search which is compiled from options.
+ * Documents under used directories are matched and documents of mime types which are not allowed are excluded.
+ * Documents under a directory are matched by terms of {@link PathHierarchy} which are equal in lower case.
+ * A segment of which documents don't have a hierarchy is matched by prefixes of lower case paths.
+ * <br><br>A scope is compiled once per change of options and documents of a segment are matched once.
+ * They are cached in a bit set by a core of a segment, so only new segments are matched by later searches.
+ * Bit sets are kept in a {@link SegmentCache} which is shared by scopes, so a cached bit set is released
+ * when a segment is closed or when a scope is replaced.
+ * Deleted documents are excluded by a searcher, so a bit set is valid while a segment is alive.
+ *
+ * @author qwefgh90
+ *
+ */
+final class SearchScope {
+	static final String PATH_FIELD = "pathStringForQuery"; // a lower case path
+	static final String MIME_TYPE_FIELD = "mimeType";
+
+	private final Set<String> directories = new HashSet<>(); // lower case terms of a hierarchy
+	private final List<BytesRef> prefixes = new ArrayList<>(); // for documents without a hierarchy
+	private final Set<BytesRef> notAllowedMimes = new HashSet<>();
+	private final SegmentCache cache;
+	private volatile boolean released = false;
+	private final Query query = new ScopeQuery(this);
+
+	/**
+	 * @param directoryPaths paths of used directories
+	 * @param notAllowedMimes mime types which are not allowed
+	 */
+	SearchScope(Collection<String> directoryPaths, Collection<String> notAllowedMimes){
+		this(new SegmentCache(), directoryPaths, notAllowedMimes);
+	}
+
+	/**
+	 * @param cache a cache which is shared with scopes which replace each other
+	 * @param directoryPaths paths of used directories
+	 * @param notAllowedMimes mime types which are not allowed
+	 */
+	SearchScope(SegmentCache cache, Collection<String> directoryPaths, Collection<String> notAllowedMimes){
+		this.cache = cache;
+		for(String path : directoryPaths){
+			directories.add(PathHierarchy.subtree(Paths.get(path)).text().toLowerCase(Locale.ROOT));
+			prefixes.add(new BytesRef(path.toLowerCase(Locale.ROOT)));
+		}
+		for(String mime : notAllowedMimes)
+			this.notAllowedMimes.add(new BytesRef(mime));
+	}
+
+	/**
+	 * @return a query which matches documents in a scope. it's used as a filter
+	 */
+	Query getQuery(){
+		return query;
+	}
+
+	/**
+	 * @param leaf a segment
+	 * @return matched documents of a segment including deleted documents
+	 * @throws IOException
+	 */
+	FixedBitSet getBits(LeafReader leaf) throws IOException {
+		final FixedBitSet cached = cache.get(this, leaf.getCoreCacheKey());
+		if(cached != null)
+			return cached;
+		final FixedBitSet bits = match(leaf);
+		if(!released)
+			cache.put(this, leaf, bits); // a replaced scope only serves searches in flight
+		return bits;
+	}
+
+	/**
+	 * Release cached bit sets. It's called when a scope is replaced.
+	 * A scope doesn't cache bit sets after it's released.
+	 */
+	void release(){
+		released = true;
+		cache.release(this);
+	}
+
+	int getCachedSegmentCount(){
+		return cache.size(this);
+	}
+
+	private FixedBitSet match(LeafReader leaf) throws IOException {
+		final FixedBitSet bits = new FixedBitSet(Math.max(1, leaf.maxDoc()));
+		PostingsEnum postings = null;
+		final Terms hierarchy = leaf.terms(PathHierarchy.FIELD);
+		final Terms paths = leaf.terms(PATH_FIELD);
+		if(hierarchy != null && PathHierarchy.isIndexed(leaf)){
+			// terms are exact paths, so they are compared in lower case like prefixes
+			final TermsEnum termsEnum = hierarchy.iterator();
+			BytesRef term;
+			while(!directories.isEmpty() && (term = termsEnum.next()) != null){
+				if(directories.contains(term.utf8ToString().toLowerCase(Locale.ROOT))){
+					postings = termsEnum.postings(postings, PostingsEnum.NONE);
+					bits.or(postings);
+				}
+			}
+		}else if(paths != null){
+			final TermsEnum termsEnum = paths.iterator();
+			for(BytesRef prefix : prefixes){
+				if(termsEnum.seekCeil(prefix) == TermsEnum.SeekStatus.END)
+					continue;
+				do {
+					if(!StringHelper.startsWith(termsEnum.term(), prefix))
+						break;
+					postings = termsEnum.postings(postings, PostingsEnum.NONE);
+					bits.or(postings);
+				} while(termsEnum.next() != null);
+			}
+		}
+		final Terms mimeTypes = leaf.terms(MIME_TYPE_FIELD);
+		if(mimeTypes != null && !notAllowedMimes.isEmpty()){
+			// a segment has fewer mime types than options
+			final FixedBitSet excluded = new FixedBitSet(bits.length());
+			final TermsEnum termsEnum = mimeTypes.iterator();
+			BytesRef term;
+			while((term = termsEnum.next()) != null){
+				if(notAllowedMimes.contains(term)){
+					postings = termsEnum.postings(postings, PostingsEnum.NONE);
+					excluded.or(postings);
+				}
+			}
+			bits.andNot(excluded);
+		}
+		return bits;
+	}
+
+	/**
+	 * Bit sets of segments which are shared by scopes replacing each other.
+	 * A bit set of a core is kept only for a scope which matched it last.
+	 * A listener is added once per core, so it isn't added again by every new scope.
+	 */
+	static final class SegmentCache {
+		private final Map<Object, CachedBits> bitsByCore = new ConcurrentHashMap<>();
+		private final Set<Object> listenedCores = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * @param scope
+		 * @param core a core cache key of a segment
+		 * @return a bit set which a scope cached, otherwise null
+		 */
+		FixedBitSet get(SearchScope scope, Object core){
+			final CachedBits cached = bitsByCore.get(core);
+			return cached != null && cached.scope == scope ? cached.bits : null;
+		}
+
+		void put(SearchScope scope, LeafReader leaf, FixedBitSet bits){
+			final Object core = leaf.getCoreCacheKey();
+			if(listenedCores.add(core)){
+				leaf.addCoreClosedListener(key -> {
+					bitsByCore.remove(key);
+					listenedCores.remove(key);
+				});
+			}
+			final CachedBits cached = new CachedBits(scope, bits);
+			bitsByCore.put(core, cached);
+			if(scope.released)
+				bitsByCore.remove(core, cached); // a scope is replaced while it's matched
+		}
+
+		void release(SearchScope scope){
+			bitsByCore.values().removeIf(cached -> cached.scope == scope);
+		}
+
+		int size(SearchScope scope){
+			return (int)bitsByCore.values().stream().filter(cached -> cached.scope == scope).count();
+		}
+
+		int getListenedCoreCount(){
+			return listenedCores.size();
+		}
+	}
+
+	private static final class CachedBits {
+		final SearchScope scope;
+		final FixedBitSet bits;
+
+		CachedBits(SearchScope scope, FixedBitSet bits){
+			this.scope = scope;
+			this.bits = bits;
+		}
+	}
+
+	/**
+	 * A constant score query over cached bit sets of a scope.
+	 */
+	private static final class ScopeQuery extends Query {
+		private final SearchScope scope;
+
+		ScopeQuery(SearchScope scope){
+			this.scope = scope;
+		}
+
+		@Override
+		public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+			return new ConstantScoreWeight(this) {
+				@Override
+				public Scorer scorer(LeafReaderContext context) throws IOException {
+					final FixedBitSet bits = scope.getBits(context.reader());
+					final long cost = bits.cardinality();
+					if(cost == 0)
+						return null;
+					return new ConstantScoreScorer(this, score(), new BitSetIterator(bits, cost));
+				}
+			};
+		}
+
+		@Override
+		public String toString(String field) {
+			return "SearchScope(" + scope.directories.size() + " directories, " + scope.notAllowedMimes.size() + " excluded mime types)";
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ScopeQuery && ((ScopeQuery)obj).scope == scope;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(scope);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.apache.tika.mime.MediaType;
+import org.mozilla.universalchardet.UniversalDetector;
+
+/**
+ * A built-in extractor of plain text, source and structured text formats.
+ * It decodes a file with a channel while it's read instead of parsing it with Tika.
+ * <br><br>A charset is detected with a byte order mark or with juniversalchardet over a first sample.
+ * If a charset isn't detected, UTF-8 is used. Malformed bytes are replaced.
+ *
+ * @author qwefgh90
+ *
+ */
+final class TextExtractor implements Extractor {
+	static final int SAMPLE_SIZE = 64 * 1024;
+
+	private static final Set<MediaType> MIME_TYPES = Collections.unmodifiableSet(Arrays.asList(
+			"text/plain", "text/x-log", "text/x-java-source", "text/x-csharp", "text/x-web-markdown"
+			, "text/csv", "application/json", "text/x-python", "text/x-csrc", "text/x-chdr"
+			, "application/javascript", "text/x-java-properties", "text/x-sql", "text/x-ini")
+			.stream().map(MediaType::parse).collect(Collectors.toSet()));
+	private static final Set<String> GLOBS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"*.txt", "*.log", "*.java", "*.cs", "*.md", "*.csv", "*.json", "*.py", "*.c", "*.h"
+			, "*.js", "*.properties", "*.sql", "*.ini")));
+
+	@Override
+	public String getName() {
+		return "text";
+	}
+
+	@Override
+	public Set<MediaType> getMimeTypes() {
+		return MIME_TYPES;
+	}
+
+	@Override
+	public Set<String> getGlobs() {
+		return GLOBS;
+	}
+
+	@Override
+	public boolean isIsolated() {
+		return false;
+	}
+
+	@Override
+	public Reader open(Path path, MediaType mimeType, Executor executor) throws IOException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final ByteBuffer sample = ByteBuffer.allocate((int)Math.min(SAMPLE_SIZE, channel.size()));
+			while(sample.hasRemaining() && channel.read(sample) != -1);
+			sample.flip();
+			final Charset charset = detectCharset(sample);
+			channel.position(sample.position()); // after a byte order mark
+			return Channels.newReader(channel, charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE), -1);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Detect a charset of a sample. If a byte order mark is found, a position of a sample is moved after it.
+	 * @param sample first bytes of a file
+	 * @return a charset
+	 */
+	static Charset detectCharset(ByteBuffer sample){
+		if(startsWith(sample, 0xEF, 0xBB, 0xBF)){
+			sample.position(3);
+			return StandardCharsets.UTF_8;
+		}else if(startsWith(sample, 0xFE, 0xFF)){
+			sample.position(2);
+			return StandardCharsets.UTF_16BE;
+		}else if(startsWith(sample, 0xFF, 0xFE)){
+			sample.position(2);
+			return StandardCharsets.UTF_16LE;
+		}
+		final UniversalDetector detector = new UniversalDetector(null);
+		detector.handleData(sample.array(), sample.arrayOffset(), sample.limit());
+		detector.dataEnd();
+		final String detected = detector.getDetectedCharset();
+		try {
+			if(detected != null && Charset.isSupported(detected))
+				return Charset.forName(detected);
+		} catch (IllegalCharsetNameException e) {
+			// not supported by a runtime
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	private static boolean startsWith(ByteBuffer sample, int... mark){
+		if(sample.remaining() < mark.length)
+			return false;
+		for(int i = 0; i < mark.length; i++){
+			if((sample.get(sample.position() + i) & 0xFF) != mark[i])
+				return false;
+		}
+		return true;
+	}
+}
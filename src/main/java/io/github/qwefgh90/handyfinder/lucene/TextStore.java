@@ -0,0 +1,441 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A sidecar store of extracted text. It's written at index time and read by a highlighter.
+ * <br><br>Text is compressed and appended to segment files which are memory-mapped for reading.
+ * An entry is keyed by a path and last modified time of a file.
+ * If a total size of entries exceeds a limit, least recently used entries are evicted
+ * and segments which have few live entries are compacted.
+ * A removed entry is recorded as a record without text. While an older segment may have a record of it,
+ * a removed record is live and it's moved by a compaction, so a removed entry doesn't come back at open.
+ * It's a cache. A segment which is not closed normally is dropped at open.
+ *
+ * @author qwefgh90
+ *
+ */
+final class TextStore implements Closeable {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(TextStore.class);
+
+	static final String CODEC = "HandyFinderText";
+	static final int VERSION = 0;
+	static final String SEGMENT_PREFIX = "text_";
+	static final String SEGMENT_EXTENSION = ".seg";
+	static final long DEFAULT_MAX_BYTES = 512 * 1024 * 1024;
+	static final long DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+	private static final class Entry {
+		final int segment;
+		final long offset;
+		final int length;
+		final int recordLength;
+		final int rawLength;
+		final long lastModifiedTime;
+		byte[] pending; // compressed bytes until a segment is closed
+
+		Entry(int segment, long offset, int length, int recordLength, int rawLength, long lastModifiedTime){
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.recordLength = recordLength;
+			this.rawLength = rawLength;
+			this.lastModifiedTime = lastModifiedTime;
+		}
+	}
+
+	private static final class Segment {
+		final String name;
+		IndexInput input;
+		long liveBytes = 0;
+		long totalBytes = 0;
+		final Map<String, Integer> removed = new HashMap<>(); // lengths of removed records
+
+		Segment(String name){
+			this.name = name;
+		}
+	}
+
+	private final Directory directory;
+	private final long maxBytes;
+	private final long segmentBytes;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+	private final List<Entry> pendingEntries = new ArrayList<>();
+	private IndexOutput output;
+	private int outputSegment = -1;
+	private long liveBytes = 0;
+
+	private TextStore(Directory directory, long maxBytes, long segmentBytes){
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.segmentBytes = segmentBytes;
+	}
+
+	static TextStore open(Path path) throws IOException {
+		return open(path, DEFAULT_MAX_BYTES, DEFAULT_SEGMENT_BYTES);
+	}
+
+	/**
+	 * Open a store and load entries from segments
+	 * @param path a directory of segments
+	 * @param maxBytes maximum size of live records
+	 * @param segmentBytes size of a segment file
+	 * @return a store
+	 * @throws IOException
+	 */
+	static TextStore open(Path path, long maxBytes, long segmentBytes) throws IOException {
+		final TextStore store = new TextStore(FSDirectory.open(path), maxBytes, segmentBytes);
+		store.load();
+		return store;
+	}
+
+	private void load() throws IOException {
+		final TreeMap<Integer, String> names = new TreeMap<>();
+		for(String name : directory.listAll()) {
+			if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION))
+				names.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()), Character.MAX_RADIX), name);
+		}
+		for(Map.Entry<Integer, String> name : names.entrySet()) {
+			final Segment segment = new Segment(name.getValue());
+			final Map<String, Entry> loaded = new LinkedHashMap<>();
+			final Map<String, Integer> removed = new HashMap<>();
+			try (ChecksumIndexInput in = directory.openChecksumInput(segment.name, IOContext.READONCE)) {
+				CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+				final long end = in.length() - CodecUtil.footerLength();
+				while(in.getFilePointer() < end) {
+					final long start = in.getFilePointer();
+					final String pathString = in.readString();
+					final long lastModifiedTime = in.readLong();
+					final int rawLength = in.readVInt();
+					final int length = in.readVInt();
+					final long offset = in.getFilePointer();
+					in.seek(offset + length);
+					loaded.remove(pathString); // keep an order of a last record
+					loaded.put(pathString, length == 0 ? null // removed
+							: new Entry(name.getKey(), offset, length, (int)(in.getFilePointer() - start), rawLength, lastModifiedTime));
+					if(length == 0)
+						removed.put(pathString, (int)(in.getFilePointer() - start));
+					else
+						removed.remove(pathString);
+				}
+				CodecUtil.checkFooter(in);
+			} catch (Exception e) {
+				LOG.info("Drop a broken segment of text : " + segment.name + ", " + e.toString());
+				directory.deleteFile(segment.name);
+				continue;
+			}
+			segment.input = directory.openInput(segment.name, IOContext.READ);
+			segment.totalBytes = segment.input.length() - headerAndFooterLength();
+			segments.put(name.getKey(), segment);
+			for(Map.Entry<String, Integer> record : removed.entrySet())
+				putRemoved(segment, record.getKey(), record.getValue());
+			for(Map.Entry<String, Entry> entry : loaded.entrySet()) {
+				if(entry.getValue() == null)
+					removeEntry(entries.remove(entry.getKey()));
+				else
+					putEntry(entry.getKey(), entry.getValue());
+			}
+		}
+		evictIfNeeded();
+		LOG.debug("Text store is loaded : " + entries.size() + " entries, " + liveBytes + " bytes");
+	}
+
+	/**
+	 * Put text of a file
+	 * @param pathString
+	 * @param lastModifiedTime
+	 * @param text
+	 */
+	void put(String pathString, long lastModifiedTime, String text){
+		final byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+		final byte[] compressed = compress(raw);
+		synchronized(this){
+			try {
+				final Entry entry = writeRecord(pathString, lastModifiedTime, raw.length, compressed);
+				putEntry(pathString, entry);
+				evictIfNeeded();
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
+		}
+	}
+
+	/**
+	 * Get text of a file if a stored entry has a same last modified time
+	 * @param pathString
+	 * @param lastModifiedTime
+	 * @return text
+	 */
+	Optional<String> get(String pathString, long lastModifiedTime){
+		final byte[] compressed;
+		final int rawLength;
+		synchronized(this){
+			final Entry entry = entries.get(pathString);
+			if(entry == null || entry.lastModifiedTime != lastModifiedTime)
+				return Optional.empty();
+			try {
+				compressed = readRecord(entry);
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+				return Optional.empty();
+			}
+			rawLength = entry.rawLength;
+		}
+		try {
+			return Optional.of(new String(decompress(compressed, rawLength), StandardCharsets.UTF_8));
+		} catch (DataFormatException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+			return Optional.empty();
+		}
+	}
+
+	synchronized void remove(String pathString){
+		final Entry entry = entries.remove(pathString);
+		if(entry == null)
+			return;
+		removeEntry(entry);
+		try {
+			writeRemoved(pathString);
+		} catch (IOException e) {
+			LOG.warn(ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Remove all entries and segments
+	 * @throws IOException
+	 */
+	synchronized void clear() throws IOException {
+		closeSegments();
+		for(String name : directory.listAll()) {
+			if(name.startsWith(SEGMENT_PREFIX))
+				directory.deleteFile(name);
+		}
+		entries.clear();
+		pendingEntries.clear();
+		segments.clear();
+		liveBytes = 0;
+	}
+
+	synchronized int size(){
+		return entries.size();
+	}
+
+	synchronized long getLiveBytes(){
+		return liveBytes;
+	}
+
+	/**
+	 * Close a current segment. Entries in it are durable and readable with a memory map.
+	 * @throws IOException
+	 */
+	synchronized void flush() throws IOException {
+		if(output == null)
+			return;
+		CodecUtil.writeFooter(output);
+		output.close();
+		output = null;
+		final Segment segment = segments.get(outputSegment);
+		segment.input = directory.openInput(segment.name, IOContext.READ);
+		segment.totalBytes = segment.input.length() - headerAndFooterLength();
+		for(Entry entry : pendingEntries)
+			entry.pending = null;
+		pendingEntries.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+		closeSegments();
+		directory.close();
+	}
+
+	private void closeSegments() throws IOException {
+		if(output != null) {
+			output.close();
+			output = null;
+		}
+		for(Segment segment : segments.values()) {
+			if(segment.input != null)
+				segment.input.close();
+			segment.input = null;
+		}
+	}
+
+	private static int headerAndFooterLength(){
+		return CodecUtil.headerLength(CODEC) + CodecUtil.footerLength();
+	}
+
+	private Entry writeRecord(String pathString, long lastModifiedTime, int rawLength, byte[] compressed) throws IOException {
+		if(output == null) {
+			outputSegment = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+			final Segment segment = new Segment(SEGMENT_PREFIX + Integer.toString(outputSegment, Character.MAX_RADIX) + SEGMENT_EXTENSION);
+			output = directory.createOutput(segment.name, IOContext.DEFAULT);
+			CodecUtil.writeHeader(output, CODEC, VERSION);
+			segments.put(outputSegment, segment);
+		}
+		final long start = output.getFilePointer();
+		output.writeString(pathString);
+		output.writeLong(lastModifiedTime);
+		output.writeVInt(rawLength);
+		output.writeVInt(compressed.length);
+		final long offset = output.getFilePointer();
+		output.writeBytes(compressed, compressed.length);
+		final Entry entry = new Entry(outputSegment, offset, compressed.length, (int)(output.getFilePointer() - start), rawLength, lastModifiedTime);
+		entry.pending = compressed;
+		pendingEntries.add(entry);
+		if(output.getFilePointer() >= segmentBytes)
+			flush();
+		return entry;
+	}
+
+	private void writeRemoved(String pathString) throws IOException {
+		final Entry record = writeRecord(pathString, 0, 0, new byte[0]);
+		putRemoved(segments.get(record.segment), pathString, record.recordLength);
+	}
+
+	private static void putRemoved(Segment segment, String pathString, int recordLength){
+		final Integer old = segment.removed.put(pathString, recordLength);
+		segment.liveBytes += recordLength - (old == null ? 0 : old);
+	}
+
+	private byte[] readRecord(Entry entry) throws IOException {
+		if(entry.pending != null)
+			return entry.pending;
+		final IndexInput input = segments.get(entry.segment).input.clone();
+		input.seek(entry.offset);
+		final byte[] compressed = new byte[entry.length];
+		input.readBytes(compressed, 0, entry.length);
+		return compressed;
+	}
+
+	private void putEntry(String pathString, Entry entry){
+		removeEntry(entries.put(pathString, entry));
+		segments.get(entry.segment).liveBytes += entry.recordLength;
+		liveBytes += entry.recordLength;
+	}
+
+	private void removeEntry(Entry entry){
+		if(entry == null)
+			return;
+		segments.get(entry.segment).liveBytes -= entry.recordLength;
+		liveBytes -= entry.recordLength;
+	}
+
+	/**
+	 * Evict least recently used entries and delete or compact segments with few live entries.
+	 * @throws IOException
+	 */
+	private void evictIfNeeded() throws IOException {
+		final Iterator<Entry> iterator = entries.values().iterator();
+		while(liveBytes > maxBytes && iterator.hasNext()) {
+			final Entry entry = iterator.next();
+			iterator.remove();
+			removeEntry(entry);
+		}
+		final List<Integer> compacted = new ArrayList<>();
+		for(Map.Entry<Integer, Segment> segment : segments.entrySet()) {
+			if(segment.getKey() == outputSegment && output != null)
+				continue;
+			if(segment.getValue().liveBytes * 4 < segment.getValue().totalBytes)
+				compacted.add(segment.getKey());
+		}
+		for(Integer id : compacted)
+			compact(id);
+	}
+
+	private void compact(int id) throws IOException {
+		final List<Map.Entry<String, Entry>> live = new ArrayList<>();
+		for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+			if(entry.getValue().segment == id)
+				live.add(entry);
+		}
+		for(Map.Entry<String, Entry> entry : live) {
+			final Entry old = entry.getValue();
+			final Entry moved = writeRecord(entry.getKey(), old.lastModifiedTime, old.rawLength, readRecord(old));
+			// keep access order of an entry
+			removeEntry(old);
+			entry.setValue(moved);
+			segments.get(moved.segment).liveBytes += moved.recordLength;
+			liveBytes += moved.recordLength;
+		}
+		final Segment segment = segments.get(id);
+		int movedRemoved = 0;
+		if(segments.firstKey() < id) {
+			// an older segment may have a record of a removed entry
+			for(String pathString : segment.removed.keySet()) {
+				if(entries.containsKey(pathString))
+					continue; // a newer record is live
+				writeRemoved(pathString);
+				movedRemoved++;
+			}
+		}
+		segments.remove(id);
+		segment.input.close();
+		directory.deleteFile(segment.name);
+		LOG.debug("Text segment is compacted : " + segment.name + ", " + live.size() + " entries and " + movedRemoved + " removed records are moved");
+	}
+
+	private static byte[] compress(byte[] raw){
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+			final byte[] buffer = new byte[8192];
+			while(!deflater.finished()) {
+				final int count = deflater.deflate(buffer);
+				bos.write(buffer, 0, count);
+			}
+			return bos.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] decompress(byte[] compressed, int rawLength) throws DataFormatException {
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			final byte[] raw = new byte[rawLength];
+			int offset = 0;
+			while(offset < rawLength && !inflater.finished()) {
+				final int count = inflater.inflate(raw, offset, rawLength - offset);
+				if(count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new DataFormatException("Compressed text is truncated");
+				offset += count;
+			}
+			return raw;
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -1,9 +1,13 @@
 package io.github.qwefgh90.handyfinder.lucene.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Directory {
 	String pathString;
 	boolean used;
 	boolean recursively;
+	List<String> excludePatterns = new ArrayList<>(); // patterns relative to this directory
 	public String getPathString() {
 		return pathString;
 	}
@@ -22,6 +26,12 @@ public class Directory {
 	public void setRecursively(boolean recusively) {
 		this.recursively = recusively;
 	}
+	public List<String> getExcludePatterns() {
+		return excludePatterns;
+	}
+	public void setExcludePatterns(List<String> excludePatterns) {
+		this.excludePatterns = excludePatterns == null ? new ArrayList<>() : excludePatterns;
+	}
 	
 	
 }
@@ -0,0 +1,233 @@
+package io.github.qwefgh90.handyfinder.memory.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MemoryBudget class admits jobs with weighted permits of an explicit memory budget.
+ * <br><br>A job acquires permits of its estimated bytes and releases them when it's done.
+ * Bytes which are buffered by others (e.g. a RAM buffer of IndexWriter) are counted as used
+ * until they are flushed. Waiting threads are woken up as soon as permits are released
+ * or {@link #signalAll()} is called after a flush.
+ * If no permit is acquired, a job is always admitted. So a job which is larger than a budget can run alone.
+ * <br><br>Optionally, collection usage thresholds of heap pools are watched.
+ * While a threshold is exceeded, only one job is admitted at once.
+ *
+ * @author qwefgh90
+ *
+ */
+public class MemoryBudget implements AutoCloseable {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(MemoryBudget.class);
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition changed = lock.newCondition();
+	private final LongSupplier bufferedBytes;
+	private final List<MemoryPoolMXBean> watchedPools = new ArrayList<>();
+	private final NotificationListener thresholdListener = this::onThresholdExceeded;
+	private volatile long budget;
+	private volatile boolean lowMemory = false;
+	private long acquiredBytes = 0;
+	private int acquiredCount = 0;
+
+	/**
+	 * A permit of acquired bytes. Closing it releases bytes.
+	 * @author qwefgh90
+	 *
+	 */
+	public final class Permit implements AutoCloseable {
+		private final long bytes;
+		private boolean released = false;
+
+		private Permit(long bytes){
+			this.bytes = bytes;
+		}
+
+		public long getBytes(){
+			return bytes;
+		}
+
+		@Override
+		public void close() {
+			release(this);
+		}
+	}
+
+	/**
+	 * @param budget bytes greater than zero
+	 */
+	public MemoryBudget(long budget){
+		this(budget, () -> 0L);
+	}
+
+	/**
+	 * @param budget bytes greater than zero
+	 * @param bufferedBytes bytes which are used by others in a budget
+	 */
+	public MemoryBudget(long budget, LongSupplier bufferedBytes){
+		if(budget <= 0)
+			throw new IllegalArgumentException("budget is less than one. " + budget);
+		this.budget = budget;
+		this.bufferedBytes = bufferedBytes;
+	}
+
+	/**
+	 * Causes the current thread to wait until bytes are admitted or it's cancelled.
+	 * Bytes greater than a budget are reduced to a budget.
+	 * @param bytes estimated bytes of a job
+	 * @param cancelled it's checked whenever a thread is woken up
+	 * @return a permit, or null if it's cancelled
+	 * @throws InterruptedException
+	 */
+	public Permit acquire(long bytes, BooleanSupplier cancelled) throws InterruptedException{
+		lock.lockInterruptibly();
+		try {
+			while(true){
+				if(cancelled.getAsBoolean())
+					return null;
+				final long weight = Math.max(0, Math.min(bytes, budget));
+				if(isAdmitted(weight)){
+					acquiredBytes += weight;
+					acquiredCount++;
+					return new Permit(weight);
+				}
+				changed.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isAdmitted(long weight){
+		if(acquiredCount == 0)
+			return true;
+		if(lowMemory){
+			lowMemory = isThresholdExceeded(); // it's cleared after GC
+			if(lowMemory)
+				return false;
+		}
+		return acquiredBytes + bufferedBytes.getAsLong() + weight <= budget;
+	}
+
+	private void release(Permit permit){
+		lock.lock();
+		try {
+			if(permit.released)
+				return;
+			permit.released = true;
+			acquiredBytes -= permit.bytes;
+			acquiredCount--;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wake up all waiting threads to check admission again.
+	 * It should be called when buffered bytes are flushed or jobs are cancelled.
+	 */
+	public void signalAll(){
+		lock.lock();
+		try {
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setBudget(long budget){
+		if(budget <= 0)
+			return;
+		this.budget = budget;
+		signalAll();
+	}
+
+	public long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * @return acquired bytes and buffered bytes
+	 */
+	public long getUsedBytes(){
+		lock.lock();
+		try {
+			return acquiredBytes + bufferedBytes.getAsLong();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Watch collection usage of heap pools. A notification is sent when usage after GC exceeds a ratio.
+	 * @param ratio between 0 and 1 of maximum size of a pool
+	 */
+	public void watchHeapPools(double ratio){
+		if(ratio <= 0 || ratio >= 1)
+			throw new IllegalArgumentException("Invalid ratio is found. " + ratio);
+		synchronized(watchedPools){
+			if(!watchedPools.isEmpty())
+				return;
+			for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+				if(pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported())
+					continue;
+				final long max = pool.getUsage().getMax();
+				if(max <= 0)
+					continue;
+				pool.setCollectionUsageThreshold((long)(max * ratio));
+				watchedPools.add(pool);
+			}
+			if(watchedPools.isEmpty())
+				return;
+			((NotificationEmitter)ManagementFactory.getMemoryMXBean()).addNotificationListener(thresholdListener
+					, notification -> MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()), null);
+		}
+	}
+
+	private void onThresholdExceeded(Notification notification, Object handback){
+		LOG.warn("Heap usage after GC exceeds a threshold. Jobs are admitted one at a time.");
+		lowMemory = true;
+	}
+
+	private boolean isThresholdExceeded(){
+		synchronized(watchedPools){
+			return watchedPools.stream().anyMatch(MemoryPoolMXBean::isCollectionUsageThresholdExceeded);
+		}
+	}
+
+	/**
+	 * Stop watching heap pools and wake up all waiting threads.
+	 */
+	@Override
+	public void close(){
+		synchronized(watchedPools){
+			if(!watchedPools.isEmpty()){
+				try {
+					((NotificationEmitter)ManagementFactory.getMemoryMXBean()).removeNotificationListener(thresholdListener);
+				} catch (ListenerNotFoundException e) {
+					LOG.debug(e.toString());
+				}
+				watchedPools.clear();
+			}
+		}
+		lowMemory = false;
+		signalAll();
+	}
+}
@@ -1,5 +1,7 @@
 package io.github.qwefgh90.handyfinder.springweb.model;
 
+import java.util.List;
+
 public class OptionDto {
 	private int limitCountOfResult;
 	private int maximumDocumentMBSize;
@@ -8,8 +10,37 @@ public class OptionDto {
 	private boolean pathTarget;
 	private boolean contentTarget;
 	private int diskUseLimit;
+	private List<String> excludePatterns; // if null, it's not changed
+	private Boolean ignoreFilesUsed; // if null, it's not changed
+	private String indexProfile; // if null, it's not changed
+	private Boolean watchMode; // if null, it's not changed
 	
+	public Boolean getWatchMode() {
+		return watchMode;
+	}
+	public void setWatchMode(Boolean watchMode) {
+		this.watchMode = watchMode;
+	}
+	
+	public String getIndexProfile() {
+		return indexProfile;
+	}
+	public void setIndexProfile(String indexProfile) {
+		this.indexProfile = indexProfile;
+	}
 	
+	public List<String> getExcludePatterns() {
+		return excludePatterns;
+	}
+	public void setExcludePatterns(List<String> excludePatterns) {
+		this.excludePatterns = excludePatterns;
+	}
+	public Boolean getIgnoreFilesUsed() {
+		return ignoreFilesUsed;
+	}
+	public void setIgnoreFilesUsed(Boolean ignoreFilesUsed) {
+		this.ignoreFilesUsed = ignoreFilesUsed;
+	}
 	public int getDiskUseLimit() {
 		return diskUseLimit;
 	}
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -28,7 +29,6 @@ import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
 import org.apache.tika.mime.MediaType;
 import org.json.simple.JSONArray;
@@ -41,6 +41,7 @@ import org.springframework.stereotype.Service;
 
 import io.github.qwefgh90.handyfinder.gui.AppStartup;
 import io.github.qwefgh90.handyfinder.lucene.BasicOption;
+import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.INDEX_PROFILE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.TARGET_MODE;
 import io.github.qwefgh90.handyfinder.lucene.LuceneHandler;
 import io.github.qwefgh90.handyfinder.lucene.MimeOption;
@@ -91,7 +92,13 @@ public class RootService {
 	 */
 	public void updateDirectories(List<Directory> list) throws SQLException {
 		if(getDirectories().size() != list.size()){
+			final List<Directory> before = new ArrayList<>(getDirectories());
 			indexProperty.save(list);
+			try {
+				handler.deleteRemovedDirectories(before, list); // before a crawl to skip documents of removed directories
+			} catch (IOException e) {
+				LOG.warn(ExceptionUtils.getStackTrace(e));
+			}
 			CompletableFuture<Boolean> f = handler.restartIndexAsync(list);
 			f.exceptionally((exception) -> {
 				LOG.error("To update indexes failed " + ExceptionUtils.getStackTrace(exception));
@@ -148,7 +155,8 @@ public class RootService {
 	private final Map<String, String> onlineVersion = new HashMap<>(); 
 	
 	/**
-	 * update support type and save to disk
+	 * update support type and save to disk.
+	 * only documents of a changed type are added or deleted.
 	 * 
 	 * @param item
 	 * @throws FileNotFoundException
@@ -156,8 +164,10 @@ public class RootService {
 	 */
 	public void updateSupportType(SupportTypeDto typeDto)
 			throws FileNotFoundException, IOException {
+		final Set<String> notAllowedMimes = tikaMimeObject.getNotAllowedMimeList();
 		tikaMimeObject.setGlob(typeDto.getType(), typeDto.isUsed());
 		tikaMimeObject.updateGlobPropertiesFile();
+		updateIndexOfSupportType(notAllowedMimes);
 	}
 
 	/**
@@ -169,10 +179,20 @@ public class RootService {
 	 */
 	public void updateSupportsType(List<SupportTypeDto> typeDtoList)
 			throws FileNotFoundException, IOException {
+		final Set<String> notAllowedMimes = tikaMimeObject.getNotAllowedMimeList();
 		for (SupportTypeDto typeDto : typeDtoList) {
 			tikaMimeObject.setGlob(typeDto.getType(), typeDto.isUsed());
 		}
 		tikaMimeObject.updateGlobPropertiesFile();
+		updateIndexOfSupportType(notAllowedMimes);
+	}
+
+	private void updateIndexOfSupportType(Set<String> notAllowedMimesBefore) {
+		CompletableFuture<Boolean> f = handler.updateSupportTypeAsync(notAllowedMimesBefore);
+		f.exceptionally((exception) -> {
+			LOG.error("To update indexes of support types failed " + ExceptionUtils.getStackTrace(exception));
+			return true;
+		});
 	}
 
 	/**
@@ -206,6 +226,10 @@ public class RootService {
 		dto.setPathTarget(globalAppData.getTargetMode().contains(TARGET_MODE.PATH));
 		dto.setContentTarget(globalAppData.getTargetMode().contains(TARGET_MODE.CONTENT));
 		dto.setDiskUseLimit(globalAppData.getDiskUseLimit());
+		dto.setExcludePatterns(new ArrayList<>(globalAppData.getExcludePatterns()));
+		dto.setIgnoreFilesUsed(globalAppData.isIgnoreFilesUsed());
+		dto.setIndexProfile(globalAppData.getIndexProfile().name());
+		dto.setWatchMode(globalAppData.isWatchMode());
 		return dto;
 	}
 
@@ -214,8 +238,18 @@ public class RootService {
 	 * @param option will be applied
 	 */
 	public void setOption(OptionDto dto) {
+		// documents under newly excluded paths are deleted by a crawl
+		final boolean exclusionChanged = (dto.getExcludePatterns() != null && !dto.getExcludePatterns().equals(globalAppData.getExcludePatterns()))
+				|| (dto.getIgnoreFilesUsed() != null && dto.getIgnoreFilesUsed() != globalAppData.isIgnoreFilesUsed());
+		// the index is migrated and crawled again
+		final boolean profileChanged = dto.getIndexProfile() != null
+				&& INDEX_PROFILE.valueOf(dto.getIndexProfile()) != globalAppData.getIndexProfile();
+		// changes made while directories are not watched are found by a crawl
+		final boolean watchStarted = dto.getWatchMode() != null && dto.getWatchMode() && !globalAppData.isWatchMode();
+		final boolean watchStopped = dto.getWatchMode() != null && !dto.getWatchMode() && globalAppData.isWatchMode();
 		final boolean needUpdate = (dto.getMaximumDocumentMBSize() > globalAppData.getMaximumDocumentMBSize())
-				|| (dto.getDiskUseLimit() > globalAppData.getDiskUseLimit());
+				|| (dto.getDiskUseLimit() > globalAppData.getDiskUseLimit())
+				|| exclusionChanged || watchStarted;
 		
 		if (dto.getLimitCountOfResult() > 0)
 			globalAppData.setLimitCountOfResult(dto.getLimitCountOfResult());
@@ -229,10 +263,26 @@ public class RootService {
 		if(dto.isContentTarget())
 			targetMode.add(TARGET_MODE.CONTENT);
 		globalAppData.setDiskUseLimit(dto.getDiskUseLimit());
+		if(dto.getExcludePatterns() != null)
+			globalAppData.setExcludePatterns(dto.getExcludePatterns());
+		if(dto.getIgnoreFilesUsed() != null)
+			globalAppData.setIgnoreFilesUsed(dto.getIgnoreFilesUsed());
+		if(profileChanged)
+			globalAppData.setIndexProfile(INDEX_PROFILE.valueOf(dto.getIndexProfile()));
+		if(dto.getWatchMode() != null)
+			globalAppData.setWatchMode(dto.getWatchMode());
 		globalAppData.setTargetMode(targetMode);
 		globalAppData.writeAppDataToDisk();
 		
-		if(needUpdate){
+		if(watchStopped)
+			handler.stopWatch();
+		if(profileChanged){
+			CompletableFuture<Boolean> f = handler.migrateIndexAsync(globalAppData.getIndexProfile());
+			f.exceptionally((exception) -> {
+				LOG.error("To migrate indexes failed " + ExceptionUtils.getStackTrace(exception));
+				return true;
+			});
+		}else if(needUpdate){
 			CompletableFuture<Boolean> f = handler.restartIndexAsync(globalAppData.getDirectoryList());
 			f.exceptionally((exception) -> {
 				LOG.error("To update indexes failed " + ExceptionUtils.getStackTrace(exception));
@@ -273,9 +323,8 @@ public class RootService {
 	public Optional<List<DocumentDto>> search(String keyword) {
 		List<DocumentDto> list = new ArrayList<>();
 		try {
-			List<ScoreDoc> docs = handler.search(keyword, 0);
-			for (ScoreDoc scoreDocument : docs){
-				Document document = handler.getDocument(scoreDocument.doc);
+			List<Document> docs = handler.searchDocuments(keyword, 0);
+			for (Document document : docs){
 				DocumentDto dto = new DocumentDto();
 				String pathString = document.get("pathString");
 				Path path = Paths.get(pathString);
@@ -326,13 +375,6 @@ public class RootService {
 			}*/
 			//break;
 		}
-		/*case UPDATE_INDEXING: {
-			List<Directory> list;
-			list = indexProperty.selectDirectory();
-			if (handler.isReady())
-				handler.updateIndexedDocuments(list);
-			break;
-		}*/
 		case STOP_INDEXING: {
 			//handler.stopIndex();
 			//indexActor.tell(new Stop(), null);
@@ -5,4 +5,5 @@ public interface IMessageSender {
 	void sendSelectedDirectoryChannel(String pathString);
 	void sendToUpdateSummary(IMessage obj);
 	void sendToDocumentContent(IMessage obj);
+	void sendToMaintenance(IMessage obj);
 }
@@ -0,0 +1,72 @@
+package io.github.qwefgh90.handyfinder.springweb.websocket;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A status of a background maintenance of the index
+ * @author qwefgh90
+ *
+ */
+@JsonIgnoreProperties({ "sender" })
+public class MaintenanceMessage implements IMessage {
+
+	public enum STATE {
+		IDLE, MERGING, DONE, FAILED
+	}
+
+	private STATE state;
+	private double deletedRatio;
+	private int deletedDocuments;
+	private long elapsedMillis;
+	private IMessageSender sender;
+
+	private MaintenanceMessage() {
+	}
+
+	public static MaintenanceMessage createMessage(IMessageSender sender, STATE state, double deletedRatio, int deletedDocuments, long elapsedMillis){
+		MaintenanceMessage message = new MaintenanceMessage();
+		message.sender = sender;
+		message.state = state;
+		message.deletedRatio = deletedRatio;
+		message.deletedDocuments = deletedDocuments;
+		message.elapsedMillis = elapsedMillis;
+		return message;
+	}
+
+	@Override
+	public void send() {
+		sender.sendToMaintenance(this);
+	}
+
+	public STATE getState() {
+		return state;
+	}
+
+	public void setState(STATE state) {
+		this.state = state;
+	}
+
+	public double getDeletedRatio() {
+		return deletedRatio;
+	}
+
+	public void setDeletedRatio(double deletedRatio) {
+		this.deletedRatio = deletedRatio;
+	}
+
+	public int getDeletedDocuments() {
+		return deletedDocuments;
+	}
+
+	public void setDeletedDocuments(int deletedDocuments) {
+		this.deletedDocuments = deletedDocuments;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+}
@@ -101,5 +101,14 @@ public class MessageController {
 				,countOfModified);
 		comm.send();
 	}
+
+	public void sendMaintenanceStatus(MaintenanceMessage.STATE state, double deletedRatio, int deletedDocuments, long elapsedMillis){
+		MaintenanceMessage message = MaintenanceMessage.createMessage(receiver
+				,state
+				,deletedRatio
+				,deletedDocuments
+				,elapsedMillis);
+		message.send();
+	}
 	
 }
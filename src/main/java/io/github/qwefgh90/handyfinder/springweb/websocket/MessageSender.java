@@ -32,4 +32,9 @@ public class MessageSender implements IMessageSender {
 	public void sendToDocumentContent(IMessage obj) {
 		messaging.convertAndSend("/search/document", obj);
 	}
+
+	@Override
+	public void sendToMaintenance(IMessage obj) {
+		messaging.convertAndSend("/index/maintenance", obj);
+	}
 }
@@ -82,6 +82,7 @@ define(['angular','sockjs', 'stomp'], function(angular, SockJS, Stomp){
 				cache.subProgressPromise = undefined;
 				cache.subUpdatePromise = undefined;
 				cache.subDirectoryPromise = undefined;
+				cache.subMaintenancePromise = undefined;
 			},
 			subProgress : function() {
 				if(cache.subProgressPromise == undefined)
@@ -93,6 +94,11 @@ define(['angular','sockjs', 'stomp'], function(angular, SockJS, Stomp){
 					cache.subUpdatePromise = stompClient.subscribe("/index/update");
 				return cache.subUpdatePromise;
 			},
+			subMaintenance : function() {
+				if(cache.subMaintenancePromise == undefined)
+					cache.subMaintenancePromise = stompClient.subscribe("/index/maintenance");
+				return cache.subMaintenancePromise;
+			},
 			subGuiDirectory : function() {
 				if(cache.subDirectoryPromise == undefined)
 					cache.subDirectoryPromise = stompClient.subscribe("/gui/directory");
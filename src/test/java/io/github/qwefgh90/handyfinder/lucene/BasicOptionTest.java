@@ -1,6 +1,8 @@
 package io.github.qwefgh90.handyfinder.lucene;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -63,6 +65,31 @@ public class BasicOptionTest {
 				Matchers.is(2000));
 	}
 
+	@Test
+	public void excludePatternsTest() throws IOException{
+		Assert.assertThat(BasicOption.loadAppDataFromDisk(basicOption.getAppDataJsonPath()).getExcludePatterns(),
+				Matchers.hasItem("node_modules/")); // a new option
+		basicOption.writeAppDataToDisk();
+		Assert.assertThat(BasicOption.loadAppDataFromDisk(basicOption.getAppDataJsonPath()).getExcludePatterns(),
+				Matchers.is(basicOption.getExcludePatterns()));
+
+		// an option which is saved before exclude patterns were added
+		Files.write(basicOption.getAppDataJsonPath(), "{\"limitCountOfResult\":100}".getBytes(StandardCharsets.UTF_8));
+		Assert.assertThat(BasicOption.loadAppDataFromDisk(basicOption.getAppDataJsonPath()).getExcludePatterns(),
+				Matchers.empty());
+	}
+
+	@Test
+	public void watchModeTest() throws IOException{
+		Assert.assertThat(BasicOption.loadAppDataFromDisk(basicOption.getAppDataJsonPath()).isWatchMode(),
+				Matchers.is(true)); // a new option
+
+		// an option which is saved before a watch mode was added
+		Files.write(basicOption.getAppDataJsonPath(), "{\"limitCountOfResult\":100}".getBytes(StandardCharsets.UTF_8));
+		Assert.assertThat(BasicOption.loadAppDataFromDisk(basicOption.getAppDataJsonPath()).isWatchMode(),
+				Matchers.is(false));
+	}
+
 	@Test
 	public void methodTest() {
 		basicOption.addDirectory(testDir);
@@ -0,0 +1,64 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.mime.MediaType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for BinarySniffer object
+ * @author qwefgh90
+ *
+ */
+public class BinarySnifferTest {
+
+	Path dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("sniffer");
+	}
+
+	@After
+	public void clean() throws IOException {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void rejectBinaries() throws IOException {
+		assertThat(BinarySniffer.isUnindexable(write("image.txt", 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0)), is(true));
+		assertThat(BinarySniffer.isUnindexable(write("program.exe", 'M', 'Z', 0x90, 0x00, 0x03, 0x00)), is(true));
+		assertThat(BinarySniffer.isUnindexable(write("program", 0x7F, 'E', 'L', 'F', 0x02, 0x01)), is(true));
+		assertThat(BinarySniffer.sniff(write("a.gz", 0x1F, 0x8B, 0x08, 0x00)).get(), is(MediaType.application("gzip")));
+	}
+
+	@Test
+	public void acceptDocuments() throws IOException {
+		assertThat(BinarySniffer.isUnindexable(write("text.txt", "MZ is not an executable".getBytes(StandardCharsets.US_ASCII))), is(false));
+		assertThat(BinarySniffer.isUnindexable(write("doc.docx", 'P', 'K', 0x03, 0x04, 0x14, 0x00)), is(false));
+		assertThat(BinarySniffer.isUnindexable(write("doc.pdf", "%PDF-1.4".getBytes(StandardCharsets.US_ASCII))), is(false));
+		assertThat(BinarySniffer.isUnindexable(write("empty.txt", new byte[0])), is(false));
+	}
+
+	private Path write(String name, int... bytes) throws IOException {
+		final byte[] array = new byte[bytes.length];
+		for(int i = 0; i < bytes.length; i++)
+			array[i] = (byte)bytes[i];
+		return write(name, array);
+	}
+
+	private Path write(String name, byte[] bytes) throws IOException {
+		final Path file = dir.resolve(name);
+		Files.write(file, bytes);
+		return file;
+	}
+}
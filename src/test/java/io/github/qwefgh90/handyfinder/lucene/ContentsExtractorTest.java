@@ -0,0 +1,112 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.mime.MediaType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for ContentsExtractor object
+ * @author qwefgh90
+ *
+ */
+public class ContentsExtractorTest {
+
+	Path dir;
+	final Executor executor = Runnable::run;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("extractor");
+	}
+
+	@After
+	public void clean() throws IOException {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void selectExtractors() throws IOException {
+		final Path java = dir.resolve("Sample.JAVA");
+		Files.write(java, "%PDF-1.4".getBytes(StandardCharsets.US_ASCII)); // a name is trusted
+		assertThat(ContentsExtractor.detect(java), is(MediaType.parse("text/x-java-source")));
+		assertThat(ContentsExtractor.select(java, ContentsExtractor.detect(java)).getName(), is("text"));
+		assertThat(ContentsExtractor.select(dir.resolve("a.md"), MediaType.OCTET_STREAM).getName(), is("text"));
+		assertThat(ContentsExtractor.select(dir.resolve("a.txt"), MediaType.parse("text/plain; charset=UTF-8")).getName(), is("text"));
+		assertThat(ContentsExtractor.select(dir.resolve("a.hwp"), MediaType.application("x-hwp-v5")).getName(), is("jsearch"));
+		assertThat(ContentsExtractor.select(dir.resolve("a.pdf"), MediaType.application("pdf")).getName(), is("tika"));
+		assertThat(ContentsExtractor.select(java, ContentsExtractor.detect(java)).isIsolated(), is(false));
+	}
+
+	@Test
+	public void decodeCharsets() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 200; i++)
+			sb.append("핸디파인더는 문서를 검색하는 프로그램입니다. ");
+		final String text = sb.toString();
+		assertThat(extract("euc-kr.txt", text.getBytes(Charset.forName("EUC-KR"))), is(text));
+		assertThat(extract("utf-8.txt", text.getBytes(StandardCharsets.UTF_8)), is(text));
+		assertThat(extract("bom.csv", concat(new byte[]{(byte)0xEF, (byte)0xBB, (byte)0xBF}, text.getBytes(StandardCharsets.UTF_8))), is(text));
+		assertThat(extract("utf-16.log", concat(new byte[]{(byte)0xFF, (byte)0xFE}, text.getBytes(StandardCharsets.UTF_16LE))), is(text));
+		assertThat(extract("empty.json", new byte[0]), is(""));
+	}
+
+	@Test
+	public void measureThroughput() throws IOException {
+		final long documents = ContentsExtractor.getThroughputs().containsKey("measured")
+				? ContentsExtractor.getThroughputs().get("measured").getDocuments() : 0;
+		final Extractor extractor = new Extractor(){
+			@Override
+			public String getName() {
+				return "measured";
+			}
+
+			@Override
+			public Set<MediaType> getMimeTypes() {
+				return Collections.emptySet();
+			}
+
+			@Override
+			public Reader open(Path path, MediaType mimeType, Executor executor) {
+				throw new UnsupportedOperationException();
+			}
+		};
+		try (Reader reader = ContentsExtractor.measure(extractor, new StringReader("handyfinder"))) {
+			assertThat(IOUtils.toString(reader), is("handyfinder"));
+		}
+		final ContentsExtractor.Throughput throughput = ContentsExtractor.getThroughputs().get("measured");
+		assertThat(throughput.getDocuments(), is(documents + 1));
+		assertThat(throughput.getCharacters(), greaterThanOrEqualTo(11L));
+	}
+
+	private String extract(String name, byte[] bytes) throws IOException {
+		final Path file = dir.resolve(name);
+		Files.write(file, bytes);
+		try (Reader reader = ContentsExtractor.open(file, ContentsExtractor.detect(file), executor)) {
+			return IOUtils.toString(reader);
+		}
+	}
+
+	private static byte[] concat(byte[] a, byte[] b){
+		final byte[] result = new byte[a.length + b.length];
+		System.arraycopy(a, 0, result, 0, a.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+}
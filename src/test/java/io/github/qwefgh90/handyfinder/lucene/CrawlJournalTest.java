@@ -0,0 +1,109 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for CrawlJournal object
+ * @author qwefgh90
+ *
+ */
+public class CrawlJournalTest {
+
+	Path dir;
+	Path journalPath;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("journal");
+		journalPath = dir.resolve("crawl.journal");
+	}
+
+	@After
+	public void clean() throws IOException {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void resumeInterruptedRun() throws IOException {
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			assertThat(journal.begin("sig"), is(false));
+			journal.started("/a/1.txt");
+			journal.done("/a/1.txt");
+			journal.rootCrawled("/a");
+			journal.checkpoint();
+			journal.rootCrawled("/b"); // not committed
+			journal.started("/c/crash.txt"); // a process exits in indexing
+		}
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			assertThat(journal.begin("sig"), is(true));
+			assertThat(journal.getCommittedRoots(), contains("/a"));
+			assertThat(journal.isSkipped("/c/crash.txt"), is(true));
+			assertThat(journal.isSkipped("/a/1.txt"), is(false));
+		}
+	}
+
+	@Test
+	public void resumeKilledRun() throws IOException {
+		final CrawlJournal killed = CrawlJournal.open(journalPath);
+		try {
+			killed.begin("sig");
+			killed.started("/c/crash.txt"); // a process is killed without a checkpoint and a close
+			try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+				assertThat(journal.begin("sig"), is(true));
+				assertThat(journal.isSkipped("/c/crash.txt"), is(true));
+			}
+		} finally {
+			killed.close();
+		}
+	}
+
+	@Test
+	public void writeAppendsAtCheckpoint() throws IOException {
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			journal.begin("sig");
+			journal.started("/a/1.txt");
+			assertThat(Files.readAllLines(journalPath), hasItem("I\t/a/1.txt")); // before extraction
+			journal.done("/a/1.txt");
+			assertThat(Files.readAllLines(journalPath), not(hasItem("D\t/a/1.txt"))); // buffered
+			journal.checkpoint();
+			assertThat(Files.readAllLines(journalPath), not(hasItem("I\t/a/1.txt"))); // compacted
+		}
+	}
+
+	@Test
+	public void restartAfterCompletedRun() throws IOException {
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			journal.begin("sig");
+			journal.rootCrawled("/a");
+			journal.checkpoint();
+			journal.complete();
+		}
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			assertThat(journal.begin("sig"), is(false));
+			assertThat(journal.getCommittedRoots(), empty());
+		}
+	}
+
+	@Test
+	public void signatureIsChanged() throws IOException {
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			journal.begin("sig");
+			journal.rootCrawled("/a");
+			journal.checkpoint();
+		}
+		try (CrawlJournal journal = CrawlJournal.open(journalPath)) {
+			assertThat(journal.begin("other"), is(false));
+			assertThat(journal.getCommittedRoots(), empty());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import io.github.qwefgh90.handyfinder.lucene.Result.IndexResult;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for CrawlPipeline object
+ * @author qwefgh90
+ *
+ */
+public class CrawlPipelineTest {
+
+	ExecutorService executor;
+
+	@Before
+	public void setup(){
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void clean(){
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void drainAllPaths(){
+		final int COUNT = 10000;
+		final AtomicInteger maxInFlight = new AtomicInteger(0);
+		final AtomicInteger offered = new AtomicInteger(0);
+		final AtomicInteger indexed = new AtomicInteger(0);
+		final CrawlPipeline pipeline = new CrawlPipeline(executor, 4, 16, path -> {
+			final int current = indexed.incrementAndGet();
+			maxInFlight.accumulateAndGet(offered.get() - current, Math::max);
+			if(path.toString().endsWith("7"))
+				return IndexResult.EXCEPTION(Optional.empty(), Optional.of(path));
+			return IndexResult.SUCCESS;
+		}, () -> false);
+		pipeline.start();
+		for(int i = 0; i < COUNT; i++){
+			assertThat(pipeline.offer(Paths.get("file" + i)), is(true));
+			offered.incrementAndGet();
+		}
+		pipeline.finish();
+		pipeline.await();
+
+		assertThat(pipeline.getSubmittedCount(), is(COUNT));
+		assertThat(pipeline.getFailedPaths().size(), is(COUNT / 10));
+		assertThat(pipeline.getSuccessCount(), is(COUNT - COUNT / 10));
+		// queue capacity + paths which are taken by workers
+		assertThat(maxInFlight.get(), lessThanOrEqualTo(16 + 4 + 1));
+	}
+
+	@Test
+	public void stopWhenFull(){
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		final CrawlPipeline pipeline = new CrawlPipeline(executor, 1, 1, path -> {
+			while(!stopped.get())
+				Thread.yield();
+			return IndexResult.STOPPED;
+		}, () -> stopped.get());
+		pipeline.start();
+		int count = 0;
+		final Path path = Paths.get("file");
+		while(count < 10 && pipeline.offer(path)){
+			count++;
+			if(count == 2)
+				stopped.set(true); // a worker holds one path and the queue is full
+		}
+		pipeline.finish();
+		pipeline.await();
+		assertThat(count, lessThanOrEqualTo(3));
+		assertThat(pipeline.getFailedPaths().size(), is(0));
+	}
+
+	@Test
+	public void tryOfferWithoutWaiting(){
+		final AtomicBoolean released = new AtomicBoolean(false);
+		final AtomicBoolean taken = new AtomicBoolean(false);
+		final CrawlPipeline pipeline = new CrawlPipeline(executor, 1, 1, path -> {
+			taken.set(true);
+			while(!released.get())
+				Thread.yield();
+			return IndexResult.SUCCESS;
+		}, () -> false);
+		pipeline.start();
+		final Path path = Paths.get("file");
+		assertThat(pipeline.tryOffer(path), is(true));
+		while(!taken.get())
+			Thread.yield();
+		assertThat(pipeline.tryOffer(path), is(true)); // a worker holds one path
+		assertThat(pipeline.tryOffer(path), is(false)); // the queue is full
+		released.set(true);
+		assertThat(pipeline.awaitProcessed(), is(true));
+		pipeline.finish();
+		pipeline.await();
+		assertThat(pipeline.getSubmittedCount(), is(2));
+		assertThat(pipeline.getSuccessCount(), is(2));
+	}
+}
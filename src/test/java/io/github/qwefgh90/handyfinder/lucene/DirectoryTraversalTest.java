@@ -0,0 +1,92 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for DirectoryTraversal object
+ * @author qwefgh90
+ *
+ */
+public class DirectoryTraversalTest {
+
+	Path dir;
+	DirectoryTraversal traversal;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("traversal");
+		traversal = new DirectoryTraversal(4);
+		for(int i = 0; i < 10; i++){
+			final Path sub = Files.createDirectories(dir.resolve("sub" + i).resolve("deep" + i));
+			for(int j = 0; j < 10; j++){
+				Files.write(sub.resolve(j + ".txt"), new byte[j]);
+				Files.write(sub.getParent().resolve(j + ".txt"), new byte[j]);
+			}
+		}
+		Files.write(dir.resolve("root.txt"), new byte[1]);
+	}
+
+	@After
+	public void clean() throws IOException {
+		traversal.close();
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void walkInParallel() {
+		final Set<Path> visited = ConcurrentHashMap.newKeySet();
+		final AtomicInteger sizeMismatch = new AtomicInteger(0);
+		assertThat(traversal.walk(dir, true, visitor((file, attrs) -> {
+			if(!visited.add(file) || attrs.size() != Integer.parseInt(file.getFileName().toString().replace(".txt", "").replace("root", "1")))
+				sizeMismatch.incrementAndGet();
+			return true;
+		})).join(), is(true));
+		assertThat(visited.size(), is(201));
+		assertThat(sizeMismatch.get(), is(0));
+		assertThat(traversal.getVisitedDirectoryCount(), is(21L));
+		assertThat(traversal.getFilesPerSecond(), greaterThan(0L));
+	}
+
+	@Test
+	public void walkOnlyRoot() {
+		final Set<Path> visited = ConcurrentHashMap.newKeySet();
+		assertThat(traversal.walk(dir, false, visitor((file, attrs) -> visited.add(file))).join(), is(true));
+		assertThat(visited, contains(dir.resolve("root.txt")));
+	}
+
+	@Test
+	public void terminateWalk() {
+		final AtomicInteger count = new AtomicInteger(0);
+		assertThat(traversal.walk(dir, true, visitor((file, attrs) -> count.incrementAndGet() < 5)).join(), is(false));
+		assertThat(count.get(), lessThan(201));
+	}
+
+	private static DirectoryTraversal.Visitor visitor(BiPredicate<Path, BasicFileAttributes> f){
+		return new DirectoryTraversal.Visitor() {
+			@Override
+			public boolean visitFile(Path file, BasicFileAttributes attrs) {
+				return f.test(file, attrs);
+			}
+
+			@Override
+			public void visitFileFailed(Path path, IOException exc) {
+				throw new AssertionError(exc);
+			}
+		};
+	}
+}
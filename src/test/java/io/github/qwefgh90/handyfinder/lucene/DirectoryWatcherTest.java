@@ -0,0 +1,95 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import io.github.qwefgh90.handyfinder.lucene.model.Directory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for DirectoryWatcher object
+ * @author qwefgh90
+ *
+ */
+public class DirectoryWatcherTest {
+
+	Path root;
+	DirectoryWatcher watcher;
+	final Set<Path> changed = ConcurrentHashMap.newKeySet();
+	final Set<Path> deleted = ConcurrentHashMap.newKeySet();
+	final Set<Path> rescanned = ConcurrentHashMap.newKeySet();
+
+	@Before
+	public void setup() throws IOException, InterruptedException {
+		root = Files.createTempDirectory("watch");
+		final Directory dir = new Directory();
+		dir.setPathString(root.toAbsolutePath().toString());
+		dir.setRecursively(true);
+		dir.setUsed(true);
+		watcher = new DirectoryWatcher(Arrays.asList(dir), root -> new ExclusionFilter(Paths.get(root.getPathString())
+				, Arrays.asList("node_modules/"), false), (changedPaths, deletedPaths, rescanPaths) -> {
+			changed.addAll(changedPaths);
+			deleted.addAll(deletedPaths);
+			rescanned.addAll(rescanPaths.keySet());
+		}, 200, 1000);
+		watcher.start();
+		Thread.sleep(500); // registration
+	}
+
+	@After
+	public void clean() throws IOException {
+		watcher.close();
+		FileUtils.deleteDirectory(root.toFile());
+	}
+
+	@Test
+	public void coalesceEvents() throws IOException, InterruptedException {
+		final Path file = root.resolve("a.txt");
+		Files.write(file, "first".getBytes());
+		Files.write(file, "second".getBytes());
+		final Path sub = Files.createDirectory(root.resolve("sub"));
+		awaitUntil(() -> changed.contains(file) && rescanned.contains(sub));
+
+		final Path subFile = sub.resolve("b.txt");
+		Files.write(subFile, "sub".getBytes());
+		awaitUntil(() -> changed.contains(subFile));
+
+		Files.delete(file);
+		awaitUntil(() -> deleted.contains(file));
+		assertThat(deleted, not(hasItem(subFile)));
+	}
+
+	@Test
+	public void skipExcludedDirectories() throws IOException, InterruptedException {
+		final Path excluded = Files.createDirectory(root.resolve("node_modules"));
+		final Path sub = Files.createDirectory(root.resolve("sub"));
+		awaitUntil(() -> rescanned.contains(sub));
+		assertThat(rescanned, not(hasItem(excluded)));
+
+		final Path excludedFile = excluded.resolve("a.js");
+		Files.write(excludedFile, "excluded".getBytes());
+		final Path subFile = sub.resolve("b.txt");
+		Files.write(subFile, "sub".getBytes());
+		awaitUntil(() -> changed.contains(subFile));
+		Thread.sleep(500); // a later batch
+		assertThat(changed, not(hasItem(excludedFile)));
+	}
+
+	private void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		for(int i = 0; i < 100 && !condition.getAsBoolean(); i++)
+			Thread.sleep(100);
+		assertThat(condition.getAsBoolean(), is(true));
+	}
+}
@@ -0,0 +1,73 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for ExclusionFilter object
+ * @author qwefgh90
+ *
+ */
+public class ExclusionFilterTest {
+
+	Path root;
+
+	@Before
+	public void setup() throws IOException {
+		root = Files.createTempDirectory("exclusion");
+	}
+
+	@After
+	public void clean() throws IOException {
+		FileUtils.deleteDirectory(root.toFile());
+	}
+
+	@Test
+	public void excludePatterns() {
+		final ExclusionFilter filter = new ExclusionFilter(root, Arrays.asList("node_modules/", "*.tmp", "/build", "docs/*.bak"), false);
+		assertThat(filter.isExcluded(root.resolve("node_modules"), true), is(true));
+		assertThat(filter.isExcluded(root.resolve("a").resolve("node_modules"), true), is(true));
+		assertThat(filter.isExcluded(root.resolve("a").resolve("node_modules"), false), is(false)); // only a directory
+		assertThat(filter.isExcluded(root.resolve("node_modules").resolve("x").resolve("index.js"), false), is(true)); // under an excluded directory
+		assertThat(filter.isExcluded(root.resolve("a").resolve("b.TMP"), false), is(true));
+		assertThat(filter.isExcluded(root.resolve("build"), true), is(true));
+		assertThat(filter.isExcluded(root.resolve("a").resolve("build"), true), is(false)); // anchored to a root
+		assertThat(filter.isExcluded(root.resolve("docs").resolve("a.bak"), false), is(true));
+		assertThat(filter.isExcluded(root.resolve("a").resolve("docs").resolve("a.bak"), false), is(false));
+		assertThat(filter.isExcluded(root.resolve("src").resolve("Main.java"), false), is(false));
+		assertThat(filter.isExcluded(root, true), is(false));
+		assertThat(filter.isExcluded(root.getParent().resolve("node_modules"), true), is(false)); // not under a root
+	}
+
+	@Test
+	public void honourIgnoreFiles() throws IOException {
+		final Path project = Files.createDirectories(root.resolve("project"));
+		Files.write(project.resolve(".gitignore"), Arrays.asList("# comment", "target/", "*.log", "!keep.log", "/out"), StandardCharsets.UTF_8);
+		Files.write(project.resolve(".ignore"), Arrays.asList("secret.txt"), StandardCharsets.UTF_8);
+
+		final ExclusionFilter filter = new ExclusionFilter(root, Collections.emptyList(), true);
+		assertThat(filter.isExcluded(project.resolve("target"), true), is(true));
+		assertThat(filter.isExcluded(project.resolve("module").resolve("target"), true), is(true)); // inherited
+		assertThat(filter.isExcluded(project.resolve("keep.log"), false), is(true)); // negation is ignored
+		assertThat(filter.isExcluded(project.resolve("out"), true), is(true));
+		assertThat(filter.isExcluded(project.resolve("module").resolve("out"), true), is(false));
+		assertThat(filter.isExcluded(project.resolve("secret.txt"), false), is(true));
+		assertThat(filter.isExcluded(root.resolve("target"), true), is(false)); // out of a scope of a file
+		assertThat(filter.isExcluded(project.resolve("README.md"), false), is(false));
+
+		final ExclusionFilter notUsed = new ExclusionFilter(root, Collections.emptyList(), false);
+		assertThat(notUsed.isExcluded(project.resolve("target"), true), is(false));
+	}
+}
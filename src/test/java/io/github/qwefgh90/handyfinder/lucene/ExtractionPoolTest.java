@@ -0,0 +1,102 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.mime.MediaType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for ExtractionPool object
+ * @author qwefgh90
+ *
+ */
+public class ExtractionPoolTest {
+
+	Path dir;
+	ExtractionPool pool;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("extraction");
+		pool = new ExtractionPool(2, 64, 30 * 1000, 2);
+	}
+
+	@After
+	public void clean() throws IOException {
+		pool.close();
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void extractInWorkers() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 10000; i++)
+			sb.append("handyfinder \uD83D\uDE00 ").append(i).append(' '); // a surrogate pair
+		final Path file = dir.resolve("large.txt");
+		Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+		for(int i = 0; i < 5; i++){ // a worker is recycled after 2 documents
+			try (Reader reader = pool.extract(file, MediaType.TEXT_PLAIN)) {
+				assertThat(IOUtils.toString(reader).replaceAll("\\s+", " ").trim(), is(sb.toString().trim()));
+			}
+		}
+	}
+
+	@Test
+	public void reportFailure() throws Exception {
+		try (Reader reader = pool.extract(dir.resolve("not-exists.html"), MediaType.TEXT_HTML)) {
+			IOUtils.toString(reader);
+			throw new AssertionError("An error isn't reported.");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), containsString("Extraction is failed"));
+		}
+		final Path file = dir.resolve("small.html");
+		Files.write(file, "<html><body>after failure</body></html>".getBytes(StandardCharsets.UTF_8));
+		try (Reader reader = pool.extract(file, MediaType.TEXT_HTML)) {
+			assertThat(IOUtils.toString(reader).trim(), is("after failure"));
+		}
+	}
+
+	@Test
+	public void unusableWithoutWorker() throws Exception {
+		try (ExtractionPool broken = new ExtractionPool("io.github.qwefgh90.handyfinder.lucene.NotExists", 1, 64, 30 * 1000, 2)) {
+			assertThat(broken.isUsable(), is(true));
+			final Path file = dir.resolve("small.html");
+			Files.write(file, "<html><body>broken</body></html>".getBytes(StandardCharsets.UTF_8));
+			try {
+				broken.extract(file, MediaType.TEXT_HTML).close();
+				throw new AssertionError("A worker which exits at start is used.");
+			} catch (IOException e) {
+				assertThat(broken.isUsable(), is(false));
+			}
+		}
+	}
+
+	@Test
+	public void timeoutOnlyWhileWaiting() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 10000; i++)
+			sb.append("handyfinder ").append(i).append(' ');
+		final Path file = dir.resolve("slow-reader.txt");
+		Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+		try (ExtractionPool shortPool = new ExtractionPool(1, 64, 2000, 2)) {
+			try (Reader reader = shortPool.extract(file, MediaType.TEXT_PLAIN)) {
+				final char[] buffer = new char[16];
+				final int read = reader.read(buffer);
+				assertThat(read, greaterThan(0));
+				Thread.sleep(3000); // a caller analyzes text longer than a time limit
+				assertThat((new String(buffer, 0, read) + IOUtils.toString(reader)).replaceAll("\\s+", " ").trim(), is(sb.toString().trim()));
+			}
+		}
+	}
+}
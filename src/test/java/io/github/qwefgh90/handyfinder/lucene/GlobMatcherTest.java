@@ -0,0 +1,49 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Test class is for GlobMatcher object
+ * @author qwefgh90
+ *
+ */
+public class GlobMatcherTest {
+
+	@Test
+	public void matchSuffixes() {
+		final GlobMatcher matcher = GlobMatcher.compile(Arrays.asList("*.txt", "*.ad.txt", "*~", "*.tar.gz"));
+		assertThat(matcher.matches("readme.txt"), is(true));
+		assertThat(matcher.matches("README.TXT"), is(true));
+		assertThat(matcher.matches("guide.ad.txt"), is(true));
+		assertThat(matcher.matches("backup~"), is(true));
+		assertThat(matcher.matches("a.tar.gz"), is(true));
+		assertThat(matcher.matches("a.gz"), is(false));
+		assertThat(matcher.matches("txt"), is(false));
+		assertThat(matcher.matches("a.txt.bak"), is(false));
+	}
+
+	@Test
+	public void matchNamesAndPatterns() {
+		final GlobMatcher matcher = GlobMatcher.compile(Arrays.asList("Makefile", "s_*.txt", "[Rr]eadme.?", "^rdf$"));
+		assertThat(matcher.matches("makefile"), is(true));
+		assertThat(matcher.matches("Makefile.am"), is(false));
+		assertThat(matcher.matches("s_1.txt"), is(true));
+		assertThat(matcher.matches("as_1.txt"), is(false));
+		assertThat(matcher.matches("readme.1"), is(true));
+		assertThat(matcher.matches("rdf"), is(true));
+		assertThat(matcher.matches("a.rdf"), is(false));
+	}
+
+	@Test
+	public void matchNothing() {
+		final GlobMatcher matcher = GlobMatcher.compile(Collections.emptyList());
+		assertThat(matcher.isEmpty(), is(true));
+		assertThat(matcher.matches("a.txt"), is(false));
+	}
+}
@@ -0,0 +1,143 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for GroupCommitter object
+ * @author qwefgh90
+ *
+ */
+public class GroupCommitterTest {
+
+	RAMDirectory dir;
+	IndexWriter writer;
+	AtomicInteger commits;
+
+	@Before
+	public void setup() throws IOException {
+		dir = new RAMDirectory();
+		writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()));
+		writer.commit();
+		commits = new AtomicInteger(0);
+	}
+
+	@After
+	public void clean() throws IOException {
+		writer.close();
+		dir.close();
+	}
+
+	private void addDocument(String path) throws IOException {
+		Document doc = new Document();
+		doc.add(new StringField("pathString", path, Store.YES));
+		writer.addDocument(doc);
+	}
+
+	private int committedDocuments() throws IOException {
+		try (DirectoryReader reader = DirectoryReader.open(dir)) {
+			return reader.numDocs();
+		}
+	}
+
+	@Test
+	public void commitBeforeRamBufferIsFlushed() throws IOException {
+		assertThat((double)GroupCommitter.DEFAULT_MAX_PENDING_RAM_BYTES
+				, lessThan(writer.getConfig().getRAMBufferSizeMB() * 1024 * 1024));
+		GroupCommitter committer = new GroupCommitter();
+		committer.setCommitListener(() -> commits.incrementAndGet());
+		boolean committed = false;
+		for(int i = 0; i < GroupCommitter.DEFAULT_MAX_PENDING_DOCUMENTS - 1 && !committed; i++){
+			final StringBuilder sb = new StringBuilder();
+			for(int j = 0; j < 5000; j++)
+				sb.append("term").append(i).append('x').append(j).append(' '); // unique terms fill a RAM buffer
+			Document doc = new Document();
+			doc.add(new TextField("contents", sb.toString(), Store.NO));
+			writer.addDocument(doc);
+			committed = committer.onChanged(writer, 1);
+		}
+		assertThat(committed, is(true)); // by ram usage, not by a count
+		assertThat(commits.get(), is(1));
+	}
+
+	@Test
+	public void commitWhenCountIsExceeded() throws IOException {
+		GroupCommitter committer = new GroupCommitter(3, 60 * 1000, Long.MAX_VALUE);
+		committer.setCommitListener(() -> commits.incrementAndGet());
+		for(int i = 0; i < 2; i++){
+			addDocument("/a/" + i);
+			assertThat(committer.onChanged(writer, 1), is(false));
+		}
+		assertThat(committedDocuments(), is(0));
+		assertThat(committer.getPendingDocuments(), is(2));
+
+		addDocument("/a/2");
+		assertThat(committer.onChanged(writer, 1), is(true));
+		assertThat(committedDocuments(), is(3));
+		assertThat(committer.getPendingDocuments(), is(0));
+		assertThat(commits.get(), is(1));
+	}
+
+	@Test
+	public void commitWhenTimeIsExpired() throws IOException, InterruptedException {
+		GroupCommitter committer = new GroupCommitter(1000, 100, Long.MAX_VALUE);
+		committer.setCommitListener(() -> commits.incrementAndGet());
+		addDocument("/a/0");
+		assertThat(committer.onChanged(writer, 1), is(false));
+		assertThat(committer.commitIfExpired(writer), is(false));
+		assertThat(committedDocuments(), is(0));
+
+		Thread.sleep(200);
+		assertThat(committer.commitIfExpired(writer), is(true));
+		assertThat(committedDocuments(), is(1));
+		assertThat(commits.get(), is(1));
+	}
+
+	@Test
+	public void noCommitWithoutChanges() throws IOException, InterruptedException {
+		GroupCommitter committer = new GroupCommitter(1, 1, Long.MAX_VALUE);
+		committer.setCommitListener(() -> commits.incrementAndGet());
+		Thread.sleep(10);
+		assertThat(committer.commitIfExpired(writer), is(false));
+		assertThat(committer.commit(writer), is(false));
+		assertThat(commits.get(), is(0));
+	}
+
+	@Test
+	public void listenerIsCalledAfterEveryCommit() throws IOException {
+		GroupCommitter committer = new GroupCommitter(1, 60 * 1000, Long.MAX_VALUE);
+		committer.setCommitListener(() -> {
+			try {
+				// changes should be durable when a listener is called
+				assertThat(writer.hasUncommittedChanges(), is(false));
+			} finally {
+				commits.incrementAndGet();
+			}
+		});
+		for(int i = 0; i < 3; i++){
+			addDocument("/a/" + i);
+			assertThat(committer.onChanged(writer, 1), is(true));
+			assertThat(commits.get(), is(i + 1));
+		}
+		addDocument("/a/3");
+		assertThat(committer.commit(writer), is(true));
+		assertThat(commits.get(), is(4));
+		assertThat(committedDocuments(), is(4));
+	}
+}
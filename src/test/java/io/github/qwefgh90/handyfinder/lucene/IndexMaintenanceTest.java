@@ -0,0 +1,61 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+/**
+ * Test class is for IndexMaintenance object
+ * @author qwefgh90
+ *
+ */
+public class IndexMaintenanceTest {
+
+	@Test
+	public void mergeDeletedDocuments() throws IOException {
+		final IndexMaintenance maintenance = new IndexMaintenance(0.2, 0);
+		final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+		config.setMergeScheduler(IndexMaintenance.createMergeScheduler(100));
+		config.setMergePolicy(maintenance.createMergePolicy());
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, config)) {
+			for(int i = 0; i < 10; i++){
+				final Document doc = new Document();
+				doc.add(new StringField("pathString", "/a/" + i, Store.YES));
+				writer.addDocument(doc);
+			}
+			writer.commit();
+			assertThat(maintenance.isDue(writer, 0, true), is(false)); // nothing is deleted
+
+			for(int i = 0; i < 5; i++)
+				writer.deleteDocuments(new Term("pathString", "/a/" + i));
+			writer.commit();
+			assertThat(IndexMaintenance.getDeletedRatio(writer), closeTo(0.5, 0.001));
+			assertThat(maintenance.isDue(writer, 0, false), is(false)); // a crawl is running
+			assertThat(maintenance.isDue(writer, System.currentTimeMillis() - 1000, true), is(true));
+			assertThat(new IndexMaintenance(0.2, 60 * 1000).isDue(writer, System.currentTimeMillis(), true), is(false)); // not idle
+
+			final List<IndexMaintenance.Status.State> states = new ArrayList<>();
+			final Optional<IndexMaintenance.Status> status = maintenance.run(writer, new GroupCommitter(), s -> states.add(s.getState()));
+			assertThat(status.isPresent(), is(true));
+			assertThat(states, contains(IndexMaintenance.Status.State.MERGING, IndexMaintenance.Status.State.DONE));
+			assertThat(status.get().getDeletedDocuments(), is(0));
+			assertThat(writer.numDocs(), is(5));
+			assertThat(maintenance.isDue(writer, 0, true), is(false));
+		}
+	}
+}
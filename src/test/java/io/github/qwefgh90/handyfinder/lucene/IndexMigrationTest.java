@@ -0,0 +1,146 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+/**
+ * Test class is for IndexMigration object
+ * @author qwefgh90
+ *
+ */
+public class IndexMigrationTest {
+
+	@Test
+	public void migrateWithTermVectors() throws IOException {
+		final FieldType withVectors = new FieldType(TextField.TYPE_NOT_STORED);
+		withVectors.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+		withVectors.setStoreTermVectors(true);
+		withVectors.setStoreTermVectorOffsets(true);
+		final FieldType compact = new FieldType(TextField.TYPE_NOT_STORED);
+		compact.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+
+		try (RAMDirectory dir = new RAMDirectory()) {
+			try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+				writer.addDocument(new Document());
+				writer.addDocument(createDocument("/a/1.txt", "migrated contents", withVectors));
+				writer.addDocument(createDocument("/a/2.txt", "other contents", withVectors));
+				writer.addDocument(createDocument("/a/legacy.txt", "legacy contents", TextField.TYPE_NOT_STORED));
+				writer.addDocument(createDocument("/a/deleted.txt", "deleted contents", withVectors));
+				writer.deleteDocuments(new Term("pathString", "/a/deleted.txt"));
+				writer.commit();
+			}
+
+			final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+			config.setCodec(IndexMigration.createCompactCodec());
+			final IndexMigration.Result result = IndexMigration.migrate(dir, config, (stored, size, contents) -> {
+				final Document doc = new Document();
+				doc.add(new StringField("pathString", stored.get("pathString"), Store.YES));
+				doc.add(new NumericDocValuesField(IndexSnapshot.LAST_MODIFIED_TIME_FIELD, 10));
+				doc.add(new Field(ContentsHighlighter.CONTENTS_FIELD, contents, compact));
+				return doc;
+			});
+			assertThat(result.getMigratedDocuments(), is(2));
+			assertThat(result.getStaleDocuments(), is(1)); // without term vectors
+
+			try (DirectoryReader reader = DirectoryReader.open(dir)) {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				assertThat(reader.numDocs(), is(3));
+				assertThat(reader.maxDoc(), is(3));
+				assertThat(searcher.count(new TermQuery(new Term(ContentsHighlighter.CONTENTS_FIELD, "migrated"))), is(1));
+				assertThat(searcher.count(new TermQuery(new Term(ContentsHighlighter.CONTENTS_FIELD, "contents"))), is(3));
+				assertThat(searcher.count(new TermQuery(new Term(ContentsHighlighter.CONTENTS_FIELD, "deleted"))), is(0));
+				assertThat(reader.getTermVectors(0), nullValue());
+				// a stale document is kept with an unknown last modified time
+				final NumericDocValues times = MultiDocValues.getNumericValues(reader, IndexSnapshot.LAST_MODIFIED_TIME_FIELD);
+				final int legacy = searcher.search(new TermQuery(new Term("pathString", "/a/legacy.txt")), 1).scoreDocs[0].doc;
+				final int migrated = searcher.search(new TermQuery(new Term("pathString", "/a/1.txt")), 1).scoreDocs[0].doc;
+				assertThat(times.get(migrated), is(10L));
+				assertThat(times.get(legacy), is(IndexSnapshot.UNKNOWN));
+				assertThat(reader.getTermVectors(legacy), nullValue());
+				final SegmentReader segment = (SegmentReader)reader.leaves().get(0).reader();
+				assertThat(segment.getSegmentInfo().info.getAttribute("Lucene50StoredFieldsFormat.mode"), is("BEST_COMPRESSION"));
+			}
+		}
+	}
+
+	@Test
+	public void backfillPathFields() throws IOException {
+		try (RAMDirectory dir = new RAMDirectory()) {
+			try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+				writer.addDocument(new Document());
+				writer.addDocument(createDocument("/a/1.txt", "older contents", TextField.TYPE_NOT_STORED));
+				writer.addDocument(createDocument("/a/b/deleted.txt", "deleted contents", TextField.TYPE_NOT_STORED));
+				final Document legacy = new Document();
+				legacy.add(new StringField("pathString", "/a/b/legacy.txt", Store.YES));
+				writer.addDocument(legacy);
+				writer.deleteDocuments(new Term("pathString", "/a/b/deleted.txt"));
+				writer.commit(); // a segment without a hierarchy
+				final Document doc = createDocument("/a/2.txt", "newer contents", TextField.TYPE_NOT_STORED);
+				doc.add(new StringField(PathSubstringQuery.FIELD, "/a/2.txt", Store.NO));
+				PathHierarchy.addFields(doc, Paths.get("/a/2.txt"));
+				writer.addDocument(doc);
+				writer.commit();
+			}
+
+			final int backfilled = IndexMigration.backfill(dir, new IndexWriterConfig(new StandardAnalyzer()), path -> {
+				final Document doc = new Document();
+				doc.add(new StringField(PathSubstringQuery.FIELD, path.toString(), Store.NO));
+				PathHierarchy.addFields(doc, path);
+				return doc;
+			});
+			assertThat(backfilled, is(3)); // with a document of initialization
+
+			try (DirectoryReader reader = DirectoryReader.open(dir)) {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				assertThat(IndexMigration.hasPathFields(reader), is(true));
+				assertThat(reader.numDocs(), is(4));
+				assertThat(searcher.count(new TermQuery(PathHierarchy.subtree(Paths.get("/a")))), is(3));
+				assertThat(searcher.count(new TermQuery(PathHierarchy.children(Paths.get("/a/b")))), is(1));
+				assertThat(searcher.count(new TermQuery(new Term(PathSubstringQuery.FIELD, "/a/1.txt"))), is(1));
+				assertThat(searcher.count(new TermQuery(new Term(ContentsHighlighter.CONTENTS_FIELD, "older"))), is(1));
+				assertThat(searcher.count(new TermQuery(new Term(ContentsHighlighter.CONTENTS_FIELD, "deleted"))), is(0));
+				// last modified times are kept, so a crawl doesn't index documents again
+				final NumericDocValues times = MultiDocValues.getNumericValues(reader, IndexSnapshot.LAST_MODIFIED_TIME_FIELD);
+				final int older = searcher.search(new TermQuery(new Term("pathString", "/a/1.txt")), 1).scoreDocs[0].doc;
+				assertThat(times.get(older), is(10L));
+			}
+			assertThat(IndexMigration.backfill(dir, new IndexWriterConfig(new StandardAnalyzer()), path -> new Document()), is(0));
+		}
+	}
+
+	private Document createDocument(String pathString, String contents, FieldType type) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", pathString, Store.YES));
+		doc.add(new BinaryDocValuesField(IndexSnapshot.PATH_FIELD, new BytesRef(pathString)));
+		doc.add(new NumericDocValuesField(IndexSnapshot.SIZE_FIELD, contents.length()));
+		doc.add(new NumericDocValuesField(IndexSnapshot.LAST_MODIFIED_TIME_FIELD, 10));
+		doc.add(new Field(ContentsHighlighter.CONTENTS_FIELD, contents, type));
+		return doc;
+	}
+}
@@ -0,0 +1,118 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import io.github.qwefgh90.handyfinder.lucene.IndexSnapshot.FileState;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LegacyLongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+/**
+ * Test class is for IndexSnapshot object
+ * @author qwefgh90
+ *
+ */
+public class IndexSnapshotTest {
+
+	@Test
+	public void classifyTest() throws IOException {
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.addDocument(createDocument("/a/unchanged.txt", 100, 10));
+			writer.addDocument(createDocument("/a/changed.txt", 100, 10));
+			writer.addDocument(createDocument("/a/deleted.txt", 100, 10));
+			writer.commit(); // legacy documents in another segment
+			writer.addDocument(createLegacyDocument("/a/legacy.txt", 100));
+			writer.addDocument(createLegacyDocument("/a/legacy-changed.txt", 100));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				final IndexSnapshot snapshot = IndexSnapshot.load(reader);
+				assertThat(snapshot.size(), is(5));
+				assertThat(snapshot.classify("/a/unchanged.txt", 100, 10), is(FileState.UNCHANGED));
+				assertThat(snapshot.classify("/a/changed.txt", 200, 10), is(FileState.CHANGED));
+				assertThat(snapshot.classify("/a/legacy.txt", 100, 10), is(FileState.UNCHANGED));
+				assertThat(snapshot.classify("/a/legacy-changed.txt", 200, 10), is(FileState.CHANGED));
+				assertThat(snapshot.classify("/a/new.txt", 100, 10), is(FileState.NEW));
+
+				final List<String> unvisited = new ArrayList<>();
+				snapshot.forEachUnvisited(unvisited::add);
+				assertThat(unvisited, contains("/a/deleted.txt"));
+			}
+		}
+	}
+
+	@Test
+	public void classifyConcurrently() throws Exception {
+		final int COUNT = 5000;
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			for(int i = 0; i < COUNT; i++)
+				writer.addDocument(createDocument("/a/" + i + ".txt", 100, 10));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				final IndexSnapshot snapshot = IndexSnapshot.load(reader);
+				final ExecutorService executor = Executors.newFixedThreadPool(8);
+				try {
+					final List<Future<?>> futures = new ArrayList<>();
+					for(int t = 0; t < 8; t++){
+						final int offset = t;
+						futures.add(executor.submit(() -> {
+							for(int i = offset; i < COUNT; i += 4){ // two threads visit each path
+								assertThat(snapshot.classify("/a/" + i + ".txt", 100, i % 2 == 0 ? 10 : 20)
+										, is(i % 2 == 0 ? FileState.UNCHANGED : FileState.CHANGED));
+								assertThat(snapshot.classify("/b/" + i + ".txt", 100, 10), is(FileState.NEW));
+							}
+						}));
+					}
+					for(Future<?> future : futures)
+						future.get();
+				} finally {
+					executor.shutdown();
+				}
+				final List<String> unvisited = new ArrayList<>();
+				snapshot.forEachUnvisited(unvisited::add);
+				assertThat(unvisited, empty());
+				assertThat(snapshot.getChangedCount(), is(COUNT)); // half of paths, twice
+			}
+		}
+	}
+
+	private Document createDocument(String pathString, long lastModifiedTime, long size) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", pathString, Store.YES));
+		doc.add(new BinaryDocValuesField(IndexSnapshot.PATH_FIELD, new BytesRef(pathString)));
+		doc.add(new NumericDocValuesField(IndexSnapshot.LAST_MODIFIED_TIME_FIELD, lastModifiedTime));
+		doc.add(new NumericDocValuesField(IndexSnapshot.SIZE_FIELD, size));
+		doc.add(new StringField(PathSubstringQuery.FIELD, pathString, Store.NO));
+		PathHierarchy.addFields(doc, Paths.get(pathString));
+		return doc;
+	}
+
+	private Document createLegacyDocument(String pathString, long lastModifiedTime) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", pathString, Store.YES));
+		doc.add(new LegacyLongField("lastModifiedTime", lastModifiedTime, Store.YES));
+		return doc;
+	}
+}
@@ -0,0 +1,84 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LegacyLongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+/**
+ * Test class is for IndexedFileCursor object
+ * @author qwefgh90
+ *
+ */
+public class IndexedFileCursorTest {
+
+	@Test
+	public void streamSegments() throws IOException {
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.addDocument(new Document()); // a document of initialization
+			writer.addDocument(createDocument("/a/1.txt", 100, 10, "text/plain"));
+			writer.addDocument(createDocument("/a/deleted.txt", 100, 10, "text/plain"));
+			writer.commit(); // a first segment
+			final Document legacy = new Document();
+			legacy.add(new StringField("pathString", "/a/legacy.pdf", Store.YES));
+			legacy.add(new StringField("mimeType", "application/pdf", Store.YES));
+			legacy.add(new LegacyLongField("lastModifiedTime", 150, Store.YES));
+			writer.addDocument(legacy);
+			writer.addDocument(createDocument("/a/2.md", 200, 20, "text/x-web-markdown"));
+			writer.deleteDocuments(new Term("pathString", "/a/deleted.txt"));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				assertThat(reader.leaves().size(), greaterThan(1));
+				assertThat(IndexedFileCursor.count(reader), is(3));
+
+				final List<String> paths = new ArrayList<>();
+				final List<String> mimeTypes = new ArrayList<>();
+				final List<Long> times = new ArrayList<>();
+				final IndexedFileCursor cursor = IndexedFileCursor.open(reader);
+				while(cursor.next()){
+					paths.add(cursor.getPathString());
+					mimeTypes.add(cursor.getMimeType());
+					times.add(cursor.getLastModifiedTime());
+				}
+				assertThat(paths, contains("/a/1.txt", "/a/legacy.pdf", "/a/2.md"));
+				assertThat(mimeTypes, contains("text/plain", "application/pdf", "text/x-web-markdown"));
+				assertThat(times, contains(100L, 150L, 200L));
+				assertThat(cursor.next(), is(false));
+			}
+		}
+	}
+
+	private Document createDocument(String pathString, long lastModifiedTime, long size, String mimeType) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", pathString, Store.YES));
+		doc.add(new StringField("mimeType", mimeType, Store.YES));
+		doc.add(new BinaryDocValuesField(IndexSnapshot.PATH_FIELD, new BytesRef(pathString)));
+		doc.add(new NumericDocValuesField(IndexSnapshot.LAST_MODIFIED_TIME_FIELD, lastModifiedTime));
+		doc.add(new NumericDocValuesField(IndexSnapshot.SIZE_FIELD, size));
+		doc.add(new SortedDocValuesField(IndexSnapshot.MIME_TYPE_FIELD, new BytesRef(mimeType)));
+		doc.add(new StringField(PathSubstringQuery.FIELD, pathString, Store.NO));
+		PathHierarchy.addFields(doc, Paths.get(pathString));
+		return doc;
+	}
+}
@@ -7,15 +7,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -33,6 +46,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 
 import io.github.qwefgh90.handyfinder.gui.AppStartup;
+import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.INDEX_PROFILE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.KEYWORD_MODE;
 import io.github.qwefgh90.handyfinder.lucene.BasicOptionModel.TARGET_MODE;
 import io.github.qwefgh90.handyfinder.lucene.model.Directory;
@@ -140,6 +154,115 @@ public class LuceneHandlerTest {
 		Assert.assertThat(docs.size(), Matchers.is(5));
 	}
 
+	@Test
+	public void reuseContentsTest() throws IOException, QueryNodeException, InterruptedException, ExecutionException {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		List<ScoreDoc> docs = handler.search("javageek", 0);
+		final Path original = Paths.get(handler.getDocument(docs.get(0).doc).get("pathString"));
+		final Path copied = testFilesPath.resolve("copied-" + original.getFileName());
+		try {
+			Files.copy(original, copied);
+			assertTrue(handler.index(copied));
+			handler.refreshSearcher();
+			Assert.assertThat(handler.search("javageek", 0).size(), Matchers.is(docs.size() + 1));
+		} finally {
+			Files.deleteIfExists(copied);
+		}
+	}
+
+	@Test
+	public void reuseCompactContentsTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		handler.state.ready();
+		handler.migrateIndex(INDEX_PROFILE.COMPACT); // no term vectors
+		handler.refreshSearcher();
+		List<ScoreDoc> docs = handler.search("javageek", 0);
+		final Path original = Paths.get(handler.getDocument(docs.get(0).doc).get("pathString"));
+		final Path copied = testFilesPath.resolve("copied-" + original.getFileName());
+		try {
+			Files.copy(original, copied);
+			assertTrue(handler.index(copied)); // from a text store
+			handler.refreshSearcher();
+			Assert.assertThat(handler.search("javageek", 0).size(), Matchers.is(docs.size() + 1));
+			final Optional<Map.Entry<String, String>> snippet = handler.highlight(copied.toAbsolutePath().toString(), "javageek").call();
+			assertTrue(snippet.isPresent());
+			Assert.assertThat(snippet.get().getValue().toLowerCase(), Matchers.containsString("javageek"));
+		} finally {
+			Files.deleteIfExists(copied);
+		}
+	}
+
+	@Test
+	public void reindexEditOutOfSamplesTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final Path large = testFilesPath.resolve("large-edited.txt");
+		final byte[] bytes = new byte[ContentFingerprint.SAMPLE_SIZE * ContentFingerprint.SAMPLE_COUNT * 2];
+		Arrays.fill(bytes, (byte)' ');
+		final int offset = ContentFingerprint.SAMPLE_SIZE + ContentFingerprint.SAMPLE_SIZE / 2; // between a head and a middle
+		try {
+			System.arraycopy("beforeedit".getBytes(), 0, bytes, offset, 10);
+			Files.write(large, bytes);
+			assertTrue(handler.index(large));
+			handler.refreshSearcher();
+			Assert.assertThat(handler.search("beforeedit", 0).size(), Matchers.is(1));
+
+			// same size and same samples
+			System.arraycopy("afteredit!".getBytes(), 0, bytes, offset, 10);
+			Files.write(large, bytes);
+			Files.setLastModifiedTime(large, FileTime.fromMillis(Files.getLastModifiedTime(large).toMillis() + 10000));
+			assertTrue(handler.index(large));
+			handler.refreshSearcher();
+			Assert.assertThat(handler.search("beforeedit", 0).size(), Matchers.is(0));
+			Assert.assertThat(handler.search("afteredit", 0).size(), Matchers.is(1));
+		} finally {
+			Files.deleteIfExists(large);
+		}
+	}
+
+	@Test
+	public void highlightTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		List<ScoreDoc> docs = handler.search("javageek", 0);
+		final Optional<Map.Entry<String, String>> snippet = handler.highlight(docs.get(0).doc, "javageek").call();
+		assertTrue(snippet.isPresent());
+		Assert.assertThat(snippet.get().getValue().toLowerCase(), Matchers.containsString("javageek"));
+		Assert.assertThat(snippet.get().getValue().length(), Matchers.lessThanOrEqualTo(200));
+	}
+
+	@Test
+	public void migrateIndexTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final int count = handler.getDocumentCount();
+		final List<ScoreDoc> docs = handler.search("javageek", 0);
+		Assert.assertThat(handler.getTermFrequenciesFromContents(docs.get(0).doc).size(), Matchers.greaterThan(0));
+
+		handler.state.ready();
+		final IndexMigration.Result result = handler.migrateIndex(INDEX_PROFILE.COMPACT);
+		handler.refreshSearcher();
+		Assert.assertThat(result.getMigratedDocuments(), Matchers.is(count));
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count));
+		final List<ScoreDoc> migratedDocs = handler.search("javageek", 0);
+		Assert.assertThat(migratedDocs.size(), Matchers.is(docs.size()));
+		Assert.assertThat(handler.getTermFrequenciesFromContents(migratedDocs.get(0).doc).size(), Matchers.greaterThan(0)); // from stored text
+		final Optional<Map.Entry<String, String>> snippet = handler.highlight(migratedDocs.get(0).doc, "javageek").call();
+		assertTrue(snippet.isPresent());
+		Assert.assertThat(snippet.get().getValue().toLowerCase(), Matchers.containsString("javageek"));
+
+		// contents without term vectors stay searchable and are indexed again by a crawl
+		Assert.assertThat(handler.migrateIndex(INDEX_PROFILE.DEFAULT).getStaleDocuments(), Matchers.is(count));
+		handler.refreshSearcher();
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count));
+		final List<ScoreDoc> staleDocs = handler.search("javageek", 0);
+		Assert.assertThat(staleDocs.size(), Matchers.is(docs.size()));
+		Assert.assertThat(handler.getDocument(staleDocs.get(0).doc).get("pathStringForQuery"), Matchers.nullValue());
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count));
+		final List<ScoreDoc> reindexedDocs = handler.search("javageek", 0);
+		Assert.assertThat(reindexedDocs.size(), Matchers.is(docs.size()));
+		for(ScoreDoc doc : reindexedDocs)
+			Assert.assertThat(handler.getDocument(doc.doc).get("pathStringForQuery"), Matchers.notNullValue()); // a default profile
+	}
+
 	@Test
 	public void factoryMethodTest() {
 		handler2 = LuceneHandler.getInstance(AppStartup.pathForIndex,
@@ -161,6 +284,101 @@ public class LuceneHandlerTest {
 		Assert.assertThat(docs.size(), Matchers.is(0));
 	}
 
+	@Test
+	public void documentPathListTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final List<String> pathList = handler.getDocumentPathList();
+		Assert.assertThat(new HashSet<>(pathList).size(), Matchers.is(pathList.size())); // an empty document isn't listed
+		Assert.assertThat(pathList, Matchers.hasItem(temptxt.toAbsolutePath().toString()));
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(pathList.size()));
+		Assert.assertThat(handler.getDocumentCount(), Matchers.greaterThan(0));
+	}
+
+	@Test
+	public void excludeDirectoryTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final String depthPath = testFilesPath.resolve("depth").toAbsolutePath().toString();
+		final int count = handler.getDocumentCount();
+		final long countUnderDepth = handler.getDocumentPathList().stream()
+				.filter(pathString -> pathString.startsWith(depthPath)).count();
+		Assert.assertThat(countUnderDepth, Matchers.greaterThan(0L));
+
+		final List<String> patterns = new ArrayList<>(basicOption.getExcludePatterns());
+		try {
+			final List<String> excluded = new ArrayList<>(patterns);
+			excluded.add("depth/");
+			basicOption.setExcludePatterns(excluded);
+			handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+			Assert.assertThat(handler.getDocumentCount(), Matchers.is(count - (int)countUnderDepth));
+		} finally {
+			basicOption.setExcludePatterns(patterns);
+		}
+	}
+
+	@Test
+	public void deleteRemovedDirectoryTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final String depthPath = testFilesPath.resolve("depth").toAbsolutePath().toString();
+		final int count = handler.getDocumentCount();
+		final long countUnderDepth = handler.getDocumentPathList().stream()
+				.filter(pathString -> pathString.startsWith(depthPath)).count();
+		Assert.assertThat(countUnderDepth, Matchers.greaterThan(0L));
+
+		final Directory depthDir = new Directory();
+		depthDir.setPathString(depthPath);
+		depthDir.setRecursively(true);
+		depthDir.setUsed(true);
+		Assert.assertThat(handler.deleteRemovedDirectories(Arrays.asList(depthDir), indexDirList), Matchers.is(0)); // still covered
+		Assert.assertThat(handler.deleteRemovedDirectories(Arrays.asList(depthDir), Collections.emptyList()), Matchers.is(1));
+		handler.refreshSearcher();
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count - (int)countUnderDepth));
+	}
+
+	@Test
+	public void deleteKeptDirectoryInRemovedDirectoryTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final String depthPath = testFilesPath.resolve("depth").toAbsolutePath().toString();
+		final int count = handler.getDocumentCount();
+		final long countUnderDepth = handler.getDocumentPathList().stream()
+				.filter(pathString -> pathString.startsWith(depthPath)).count();
+		Assert.assertThat(countUnderDepth, Matchers.greaterThan(0L));
+
+		// a same directory which isn't recursive anymore keeps its files
+		final Directory flatDir = new Directory();
+		flatDir.setPathString(testFilesPath.toAbsolutePath().toString());
+		flatDir.setRecursively(false);
+		flatDir.setUsed(true);
+		Assert.assertThat(handler.deleteRemovedDirectories(indexDirList, Arrays.asList(flatDir)), Matchers.is(1));
+		handler.refreshSearcher();
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count - (int)countUnderDepth));
+
+		// a recursive directory in a removed directory keeps its files
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final Directory depthDir = new Directory();
+		depthDir.setPathString(depthPath);
+		depthDir.setRecursively(true);
+		depthDir.setUsed(true);
+		Assert.assertThat(handler.deleteRemovedDirectories(indexDirList, Arrays.asList(depthDir)), Matchers.is(1));
+		handler.refreshSearcher();
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is((int)countUnderDepth));
+	}
+
+	@Test
+	public void updateSupportTypeTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final int count = handler.getDocumentCount();
+
+		Set<String> notAllowedMimes = mimeOption.getNotAllowedMimeList();
+		mimeOption.setGlob("*.pdf", false);
+		assertTrue(handler.updateSupportTypeAsync(notAllowedMimes).get());
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count - 1));
+
+		notAllowedMimes = mimeOption.getNotAllowedMimeList();
+		mimeOption.setGlob("*.pdf", true);
+		assertTrue(handler.updateSupportTypeAsync(notAllowedMimes).get());
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count));
+	}
+
 	@Test
 	public void searchTest2() throws IOException,
 			org.apache.lucene.queryparser.classic.ParseException,
@@ -174,32 +392,41 @@ public class LuceneHandlerTest {
 	@Test
 	public void deleteAndUpdateIndexTest() throws IOException, InterruptedException, ExecutionException {
 		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
-		StringBuilder sb = new StringBuilder();
-		List<Document> listBefore = handler.getDocumentList();
-		listBefore.forEach(doc -> sb.append(doc.get("title") + ", "));
-		LOG.info(sb.toString());
+		List<String> listBefore = handler.getDocumentPathList();
+		LOG.info(listBefore.toString());
 
 		Files.delete(temp2txt);
 		temptxt.toFile().delete();
 		
-		handler.state.ready();
-		handler.updateIndexedDocuments(indexDirList);
+		assertTrue(handler.restartIndexAsync(indexDirList).get());
 		int countAfter = handler.getDocumentCount();
 		
-		sb.setLength(0);
-		List<Document> listAfter = handler.getDocumentList();
-		listAfter.forEach(doc -> sb.append(doc.get("title") + ", "));
-		LOG.info(sb.toString());
+		List<String> listAfter = handler.getDocumentPathList();
+		LOG.info(listAfter.toString());
 		
 		Assert.assertThat(listAfter.size(), Matchers.is(listBefore.size()-2));
 		Assert.assertThat(listAfter.size(), Matchers.is(countAfter));
 
-		handler.updateIndexedDocuments(Collections.emptyList());
+		assertTrue(handler.restartIndexAsync(Collections.emptyList()).get());
 		int clearCount = handler.getDocumentCount();
 		Assert.assertThat(clearCount, Matchers.is(0));
 		LOG.info("clear count : " + clearCount);
 	}
 
+	@Test
+	public void updateChangedDocumentTest() throws IOException, InterruptedException, ExecutionException, QueryNodeException {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		Assert.assertThat(handler.search("reconciled", 0).size(), Matchers.is(0));
+		final int count = handler.getDocumentCount();
+
+		Files.write(temptxt, "contents are reconciled".getBytes());
+		Files.setLastModifiedTime(temptxt, FileTime.fromMillis(System.currentTimeMillis() + 10 * 1000));
+		assertTrue(handler.restartIndexAsync(indexDirList).get());
+
+		Assert.assertThat(handler.search("reconciled", 0).size(), Matchers.is(1));
+		Assert.assertThat(handler.getDocumentCount(), Matchers.is(count));
+	}
+
 	@Test
 	public void fileURITest()
 			throws org.apache.lucene.queryparser.classic.ParseException,
@@ -210,4 +437,64 @@ public class LuceneHandlerTest {
 		List<ScoreDoc> docs = handler.search("http",0);
 		Assert.assertThat(docs.size(), Matchers.is(1));
 	}
+
+	@Test
+	public void releaseSearcherTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final SearcherManager manager = handler.getSearcherManager();
+		final IndexSearcher searcher = manager.acquire();
+		final IndexReader reader = searcher.getIndexReader();
+		final int refCount = reader.getRefCount();
+		try {
+			List<ScoreDoc> docs = handler.search("javageek", 0);
+			handler.searchDocuments("javageek", 0);
+			assertTrue(handler.highlight(docs.get(0).doc, "javageek").call().isPresent());
+			final String pathString = handler.getDocument(docs.get(0).doc).get("pathString");
+			assertTrue(handler.highlight(pathString, "javageek").call().isPresent());
+			Assert.assertThat(reader.getRefCount(), Matchers.is(refCount)); // every searcher is released
+		} finally {
+			manager.release(searcher);
+		}
+
+		handler.close();
+		Assert.assertThat(reader.getRefCount(), Matchers.is(0)); // a reader is closed with a manager
+		try {
+			handler.search("javageek", 0);
+			Assert.fail("a closed handler can't search");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void searchWithoutHandlerMonitorTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			synchronized (handler) { // a migration or a restart holds a monitor of handler
+				final Future<List<ScoreDoc>> docs = executor.submit(() -> handler.search("javageek", 0));
+				Assert.assertThat(docs.get(10, TimeUnit.SECONDS).size(), Matchers.is(5));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void refreshAfterCommitTest() throws Exception {
+		handler.restartIndexAsync(basicOption.getDirectoryList()).get();
+		handler.setRefreshInterval(60 * 1000, 60 * 1000); // a background refresh doesn't run in a test
+		final Path added = testFilesPath.resolve("refresh-test.txt");
+		try {
+			Files.write(added, "refreshkeyword".getBytes());
+			assertTrue(handler.index(added));
+			Assert.assertThat(handler.search("refreshkeyword", 0).size(), Matchers.is(0)); // a searcher isn't refreshed yet
+
+			handler.commitPendingChanges();
+			handler.refreshSearcher();
+			Assert.assertThat(handler.search("refreshkeyword", 0).size(), Matchers.is(1));
+		} finally {
+			Files.deleteIfExists(added);
+			handler.setRefreshInterval(1000, 10 * 1000);
+		}
+	}
 }
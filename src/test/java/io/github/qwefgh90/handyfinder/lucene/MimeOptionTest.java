@@ -94,6 +94,18 @@ public class MimeOptionTest {
 		Assert.assertThat(obj.getGlobSet("application/vnd.ms-excel").size(), Matchers.is(8));
 	}
 
+	@Test
+	public void allowNameTest() {
+		assertTrue(obj.isAllowName("sample.hwp"));
+		obj.setGlob("*.hwp", false);
+		assertFalse(obj.isAllowName("sample.hwp"));
+		assertFalse(obj.isAllowName("SAMPLE.HWP"));
+		assertTrue(obj.isAllowName("sample.txt"));
+		assertTrue(obj.isAllowName("no-extension"));
+		obj.setGlob("*.hwp", true);
+		assertTrue(obj.isAllowName("sample.hwp"));
+	}
+
 	@After
 	public void clean() throws URISyntaxException, FileNotFoundException, IOException {
 		File f = new File(afterXmlUrl.toURI());
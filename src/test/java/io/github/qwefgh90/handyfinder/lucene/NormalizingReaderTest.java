@@ -0,0 +1,51 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Test class is for NormalizingReader object
+ * @author qwefgh90
+ *
+ */
+public class NormalizingReaderTest {
+
+	@Test
+	public void normalizeWhitespaces() throws IOException {
+		final String text = "  hello\r\n\r\n\thandy \t finder \n";
+		try (NormalizingReader reader = new NormalizingReader(new StringReader(text), 100)) {
+			assertThat(IOUtils.toString(reader), is(text.replaceAll("[\n\t\r ]+", " ")));
+			assertThat(reader.getCaptured(), is(" hello handy finder "));
+		}
+	}
+
+	@Test
+	public void normalizeAcrossBuffers() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 10000; i++)
+			sb.append("word").append(i).append(i % 7 == 0 ? "\n\n \t" : " ");
+		final String text = sb.toString();
+		try (NormalizingReader reader = new NormalizingReader(new StringReader(text), 10)) {
+			final char[] buffer = new char[3]; // a run of whitespaces is split by small reads
+			final StringBuilder result = new StringBuilder();
+			int read;
+			while((read = reader.read(buffer)) != -1)
+				result.append(buffer, 0, read);
+			assertThat(result.toString(), is(text.replaceAll("[\n\t\r ]+", " ")));
+			assertThat(reader.getCaptured(), is("word0 word"));
+		}
+	}
+
+	@Test
+	public void readCaptured() throws IOException {
+		try (NormalizingReader reader = new NormalizingReader(new StringReader("a  b  c  d"), 3)) {
+			assertThat(reader.readCaptured(), is("a b"));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+/**
+ * Test class is for PathHierarchy object
+ * @author qwefgh90
+ *
+ */
+public class PathHierarchyTest {
+	private final Path root = Paths.get("hierarchy-root").toAbsolutePath();
+
+	@Test
+	public void matchDirectories() throws IOException {
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.addDocument(new Document());
+			writer.addDocument(createDocument(root.resolve("1.txt")));
+			writer.addDocument(createDocument(root.resolve("a").resolve("2.txt")));
+			writer.addDocument(createDocument(root.resolve("a").resolve("b").resolve("3.txt")));
+			writer.addDocument(createDocument(root.resolve("ab").resolve("4.txt")));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				assertThat(PathHierarchy.isIndexed(reader), is(true));
+				assertThat(searcher.count(new TermQuery(PathHierarchy.all())), is(4));
+				assertThat(searcher.count(new TermQuery(PathHierarchy.subtree(root))), is(4));
+				assertThat(searcher.count(new TermQuery(PathHierarchy.subtree(root.resolve("a")))), is(2)); // not ab
+				assertThat(searcher.count(new TermQuery(PathHierarchy.children(root.resolve("a")))), is(1));
+			}
+		}
+	}
+
+	@Test
+	public void legacyDocuments() throws IOException {
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.addDocument(createDocument(root.resolve("1.txt")));
+			final Document legacy = new Document();
+			legacy.add(new StringField("pathString", root.resolve("2.txt").toString(), Store.YES));
+			writer.addDocument(legacy);
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				assertThat(PathHierarchy.isIndexed(reader), is(false));
+			}
+		}
+	}
+
+	private Document createDocument(Path path) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", path.toString(), Store.YES));
+		PathHierarchy.addFields(doc, path);
+		return doc;
+	}
+}
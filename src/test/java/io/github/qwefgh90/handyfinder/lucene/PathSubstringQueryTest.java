@@ -0,0 +1,143 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordTokenizerFactory;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.NGramTokenizerFactory;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+/**
+ * Test class is for PathSubstringQuery object
+ * @author qwefgh90
+ *
+ */
+public class PathSubstringQueryTest {
+
+	@Test
+	public void keywordOfWildcard() {
+		assertThat(PathSubstringQuery.getKeyword("*abc*"), is("abc"));
+		assertThat(PathSubstringQuery.getKeyword("*a\\*b\\\\c*"), is("a*b\\c"));
+		assertThat(PathSubstringQuery.getKeyword("*a?c*"), nullValue());
+		assertThat(PathSubstringQuery.getKeyword("*a*c*"), nullValue());
+		assertThat(PathSubstringQuery.getKeyword("abc*"), nullValue());
+	}
+
+	@Test
+	public void matchSubstrings() throws IOException {
+		final Analyzer gramAnalyzer = createGramAnalyzer();
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(createAnalyzer(gramAnalyzer)))) {
+			writer.addDocument(new Document());
+			writer.addDocument(createDocument("/docs/Report-2016.txt"));
+			writer.addDocument(createDocument("/docs/old/report.md"));
+			writer.addDocument(createDocument("/work/repo/port.txt")); // all grams of "report" but not a substring
+			writer.addDocument(createDocument("/work/a*b.txt"));
+			writer.commit();
+			writer.addDocument(createLegacyDocument("/legacy/report.txt"));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				assertThat(count(searcher, gramAnalyzer, "*report*"), is(3));
+				assertThat(count(searcher, gramAnalyzer, "*REPO*"), is(4));
+				assertThat(count(searcher, gramAnalyzer, "*d*"), is(2));
+				assertThat(count(searcher, gramAnalyzer, "*a\\*b*"), is(1));
+				assertThat(count(searcher, gramAnalyzer, "*re?ort*"), is(3)); // not a literal
+			}
+		}
+	}
+
+	@Test
+	public void matchBackfilledDocuments() throws IOException {
+		final Analyzer gramAnalyzer = createGramAnalyzer();
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(createAnalyzer(gramAnalyzer)))) {
+			writer.addDocument(createDocument("/docs/report.txt"));
+			writer.commit();
+			writer.addDocument(createBackfilledDocument("/legacy/report.md")); // n-grams without doc values
+			writer.addDocument(createBackfilledDocument("/legacy/port.md"));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				assertThat(PathSubstringQuery.hasGrams(reader), is(true));
+				assertThat(PathSubstringQuery.isIndexed(reader), is(false));
+				assertThat(count(new IndexSearcher(reader), gramAnalyzer, "*report*"), is(2));
+			}
+			writer.forceMerge(1); // a segment where only some documents have doc values
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				assertThat(reader.leaves().size(), is(1));
+				assertThat(PathSubstringQuery.isIndexed(reader), is(true));
+				assertThat(count(new IndexSearcher(reader), gramAnalyzer, "*report*"), is(2));
+			}
+		}
+	}
+
+	private int count(IndexSearcher searcher, Analyzer gramAnalyzer, String text) throws IOException {
+		final WildcardQuery query = new WildcardQuery(new Term("pathStringForQuery", text.toLowerCase()));
+		query.setRewriteMethod(PathSubstringQuery.rewriteMethod(gramAnalyzer));
+		return searcher.count(query);
+	}
+
+	private Document createDocument(String pathString) {
+		final Document doc = createLegacyDocument(pathString);
+		doc.add(new BinaryDocValuesField(IndexSnapshot.PATH_FIELD, new BytesRef(pathString)));
+		doc.add(new TextField(PathSubstringQuery.FIELD, pathString, Store.NO));
+		return doc;
+	}
+
+	private Document createBackfilledDocument(String pathString) {
+		final Document doc = createLegacyDocument(pathString);
+		doc.add(new TextField(PathSubstringQuery.FIELD, pathString, Store.NO));
+		return doc;
+	}
+
+	private Document createLegacyDocument(String pathString) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", pathString, Store.YES));
+		doc.add(new Field("pathStringForQuery", pathString, TextField.TYPE_STORED));
+		return doc;
+	}
+
+	private Analyzer createAnalyzer(Analyzer gramAnalyzer) throws IOException {
+		final Map<String, Analyzer> analyzers = new HashMap<>();
+		analyzers.put(PathSubstringQuery.FIELD, gramAnalyzer);
+		analyzers.put("pathStringForQuery", CustomAnalyzer.builder()
+				.withTokenizer(KeywordTokenizerFactory.class)
+				.addTokenFilter(LowerCaseFilterFactory.class)
+				.build());
+		return new PerFieldAnalyzerWrapper(gramAnalyzer, analyzers);
+	}
+
+	private Analyzer createGramAnalyzer() throws IOException {
+		final Map<String, String> map = new HashMap<>();
+		map.put("minGramSize", "1");
+		map.put("maxGramSize", String.valueOf(PathSubstringQuery.GRAM_SIZE));
+		return CustomAnalyzer.builder()
+				.withTokenizer(NGramTokenizerFactory.class, map)
+				.addTokenFilter(LowerCaseFilterFactory.class)
+				.build();
+	}
+}
@@ -0,0 +1,136 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+/**
+ * Test class is for SearchScope object
+ * @author qwefgh90
+ *
+ */
+public class SearchScopeTest {
+
+	@Test
+	public void matchAndCacheSegments() throws IOException {
+		final SearchScope scope = new SearchScope(Arrays.asList("/Docs", "/work/a"), Collections.singletonList("application/pdf"));
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.addDocument(new Document());
+			writer.addDocument(createDocument("/docs/1.txt", "text/plain"));
+			writer.addDocument(createDocument("/docs/sub/2.pdf", "application/pdf"));
+			writer.addDocument(createDocument("/work/a/3.txt", "text/plain"));
+			writer.addDocument(createDocument("/work/b/4.txt", "text/plain"));
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				searcher.setQueryCache(null);
+				assertThat(searcher.count(scope.getQuery()), is(2));
+				assertThat(scope.getCachedSegmentCount(), is(reader.leaves().size()));
+
+				writer.addDocument(createDocument("/docs/5.txt", "text/plain"));
+				writer.commit();
+				try (DirectoryReader newReader = DirectoryReader.openIfChanged(reader)) {
+					final IndexSearcher newSearcher = new IndexSearcher(newReader);
+					newSearcher.setQueryCache(null);
+					assertThat(newSearcher.count(scope.getQuery()), is(3));
+					assertThat(scope.getCachedSegmentCount(), is(reader.leaves().size() + 1)); // only a new segment is matched
+				}
+			}
+		}
+	}
+
+	@Test
+	public void matchHierarchy() throws IOException {
+		final Path root = Paths.get("scope-root").toAbsolutePath();
+		final SearchScope scope = new SearchScope(Collections.singletonList(root.resolve("a").toString()), Collections.emptyList());
+		final SearchScope upperCaseScope = new SearchScope(Collections.singletonList(root.resolve("A").toString()), Collections.emptyList());
+		try (RAMDirectory dir = new RAMDirectory();
+				IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.addDocument(createDocument(root.resolve("a").resolve("1.txt"), "text/plain"));
+			writer.addDocument(createDocument(root.resolve("a").resolve("b").resolve("2.txt"), "text/plain"));
+			writer.addDocument(createDocument(root.resolve("ab").resolve("3.txt"), "text/plain")); // a prefix, not a directory
+			writer.commit();
+
+			try (DirectoryReader reader = DirectoryReader.open(writer)) {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				searcher.setQueryCache(null);
+				assertThat(searcher.count(scope.getQuery()), is(2));
+				assertThat(searcher.count(upperCaseScope.getQuery()), is(2)); // paths are compared in lower case
+			}
+		}
+	}
+
+	@Test
+	public void releaseReplacedScope() throws IOException {
+		final SearchScope.SegmentCache cache = new SearchScope.SegmentCache();
+		final SearchScope scope = new SearchScope(cache, Collections.singletonList("/docs"), Collections.emptyList());
+		final SearchScope replacing = new SearchScope(cache, Collections.singletonList("/docs"), Collections.emptyList());
+		try (RAMDirectory dir = new RAMDirectory()) {
+			try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+				writer.addDocument(createDocument("/docs/1.txt", "text/plain"));
+				writer.commit();
+				writer.addDocument(createDocument("/docs/2.txt", "text/plain"));
+				writer.commit();
+			}
+			final DirectoryReader reader = DirectoryReader.open(dir);
+			try {
+				final IndexSearcher searcher = new IndexSearcher(reader);
+				searcher.setQueryCache(null);
+				assertThat(searcher.count(scope.getQuery()), is(2));
+				assertThat(scope.getCachedSegmentCount(), is(reader.leaves().size()));
+
+				scope.release();
+				assertThat(scope.getCachedSegmentCount(), is(0));
+				assertThat(searcher.count(replacing.getQuery()), is(2));
+				assertThat(searcher.count(scope.getQuery()), is(2)); // a search in flight
+				assertThat(scope.getCachedSegmentCount(), is(0));
+				assertThat(replacing.getCachedSegmentCount(), is(reader.leaves().size()));
+				assertThat(cache.getListenedCoreCount(), is(reader.leaves().size())); // a listener per core
+			} finally {
+				reader.close();
+			}
+			assertThat(replacing.getCachedSegmentCount(), is(0));
+			assertThat(cache.getListenedCoreCount(), is(0));
+		}
+	}
+
+	@Test
+	public void equalityOfQuery() {
+		final SearchScope scope = new SearchScope(Collections.singletonList("/docs"), Collections.emptyList());
+		final SearchScope other = new SearchScope(Collections.singletonList("/docs"), Collections.emptyList());
+		assertThat(scope.getQuery(), equalTo(scope.getQuery()));
+		assertThat(scope.getQuery(), not(equalTo(other.getQuery())));
+	}
+
+	private Document createDocument(Path path, String mimeType) {
+		final Document doc = createDocument(path.toString(), mimeType);
+		PathHierarchy.addFields(doc, path);
+		return doc;
+	}
+
+	private Document createDocument(String pathString, String mimeType) {
+		final Document doc = new Document();
+		doc.add(new StringField("pathString", pathString, Store.YES));
+		doc.add(new StringField(SearchScope.PATH_FIELD, pathString.toLowerCase(), Store.YES));
+		doc.add(new StringField(SearchScope.MIME_TYPE_FIELD, mimeType, Store.YES));
+		return doc;
+	}
+}
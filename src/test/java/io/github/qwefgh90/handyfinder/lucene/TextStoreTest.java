@@ -0,0 +1,126 @@
+package io.github.qwefgh90.handyfinder.lucene;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class is for TextStore object
+ * @author qwefgh90
+ *
+ */
+public class TextStoreTest {
+
+	Path dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("text");
+	}
+
+	@After
+	public void clean() throws IOException {
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	public void putAndReopen() throws IOException {
+		try (TextStore store = TextStore.open(dir)) {
+			store.put("/a/1.txt", 10, "hello handyfinder");
+			assertThat(store.get("/a/1.txt", 10), is(Optional.of("hello handyfinder")));
+			assertThat(store.get("/a/1.txt", 11), is(Optional.empty())); // a file is modified
+			store.put("/a/2.txt", 10, "second");
+			store.remove("/a/2.txt");
+			assertThat(store.get("/a/2.txt", 10), is(Optional.empty()));
+		}
+		try (TextStore store = TextStore.open(dir)) {
+			assertThat(store.size(), is(1));
+			assertThat(store.get("/a/1.txt", 10), is(Optional.of("hello handyfinder")));
+		}
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() throws IOException {
+		final String text = randomText(1000);
+		try (TextStore store = TextStore.open(dir, 2400, 2000)) {
+			for(int i = 0; i < 3; i++)
+				store.put("/a/" + i, 0, text + i);
+			store.get("/a/0", 0); // 1 is least recently used
+			store.put("/a/3", 0, text + 3);
+			assertThat(store.get("/a/1", 0), is(Optional.empty()));
+			assertThat(store.get("/a/0", 0), is(Optional.of(text + 0)));
+			assertThat(store.get("/a/3", 0), is(Optional.of(text + 3)));
+			assertThat(store.getLiveBytes(), lessThanOrEqualTo(2400L));
+		}
+	}
+
+	@Test
+	public void compactOverwrittenSegments() throws IOException {
+		final String text = randomText(1000);
+		try (TextStore store = TextStore.open(dir, 1024 * 1024, 4000)) {
+			for(int i = 0; i < 50; i++)
+				store.put("/a/same", i, text + i);
+			store.flush();
+			assertThat(store.size(), is(1));
+			assertThat(store.get("/a/same", 49), is(Optional.of(text + 49)));
+		}
+		long segmentCount = Files.list(dir).filter(p -> p.getFileName().toString().endsWith(TextStore.SEGMENT_EXTENSION)).count();
+		assertThat(segmentCount, lessThanOrEqualTo(2L));
+	}
+
+	@Test
+	public void keepRemovedAfterCompaction() throws IOException {
+		final String text = randomText(1000);
+		try (TextStore store = TextStore.open(dir, 1024 * 1024, 4000)) {
+			store.put("/a/keep", 0, text);
+			store.put("/a/gone", 0, text + "gone");
+			store.flush(); // an older segment has a record of a removed entry
+			store.remove("/a/gone");
+			for(int i = 0; i < 50; i++)
+				store.put("/a/same", i, text + i); // a segment of a removed record is compacted
+			store.flush();
+			assertThat(store.get("/a/gone", 0), is(Optional.empty()));
+		}
+		try (TextStore store = TextStore.open(dir, 1024 * 1024, 4000)) {
+			assertThat(store.get("/a/gone", 0), is(Optional.empty()));
+			assertThat(store.get("/a/keep", 0), is(Optional.of(text)));
+			assertThat(store.get("/a/same", 49), is(Optional.of(text + 49)));
+			assertThat(store.size(), is(2));
+		}
+	}
+
+	@Test
+	public void dropBrokenSegment() throws IOException {
+		try (TextStore store = TextStore.open(dir)) {
+			store.put("/a/1.txt", 10, "durable");
+			store.flush();
+			store.put("/a/2.txt", 10, "lost");
+		}
+		final Path broken = dir.resolve(TextStore.SEGMENT_PREFIX + "1" + TextStore.SEGMENT_EXTENSION);
+		final byte[] bytes = Files.readAllBytes(broken);
+		Files.write(broken, Arrays.copyOf(bytes, bytes.length - 4)); // a process exits in writing
+		try (TextStore store = TextStore.open(dir)) {
+			assertThat(store.get("/a/1.txt", 10), is(Optional.of("durable")));
+			assertThat(store.get("/a/2.txt", 10), is(Optional.empty()));
+		}
+	}
+
+	private static String randomText(int length){
+		final Random random = new Random(0);
+		final StringBuilder sb = new StringBuilder(length);
+		for(int i = 0; i < length; i++)
+			sb.append((char)('a' + random.nextInt(26)));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,93 @@
+package io.github.qwefgh90.handyfinder.memory.monitor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Test class is for MemoryBudget object
+ * @author qwefgh90
+ *
+ */
+public class MemoryBudgetTest {
+
+	@Test
+	public void wakeUpOnRelease() throws Exception {
+		final MemoryBudget budget = new MemoryBudget(100);
+		final MemoryBudget.Permit first = budget.acquire(70, () -> false);
+		final CompletableFuture<MemoryBudget.Permit> second = acquireAsync(budget, 70, () -> false);
+		assertWaiting(second);
+		final long start = System.nanoTime();
+		first.close();
+		second.get(1, TimeUnit.SECONDS).close();
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(500L));
+		assertThat(budget.getUsedBytes(), is(0L));
+		budget.close();
+	}
+
+	@Test
+	public void admitLargeJobAlone() throws Exception {
+		final MemoryBudget budget = new MemoryBudget(100);
+		try (MemoryBudget.Permit large = budget.acquire(1000, () -> false)) {
+			assertThat(large.getBytes(), is(100L));
+			assertWaiting(acquireAsync(budget, 1, () -> false));
+		}
+		budget.close();
+	}
+
+	@Test
+	public void countBufferedBytes() throws Exception {
+		final AtomicLong buffered = new AtomicLong(0);
+		final MemoryBudget budget = new MemoryBudget(100, buffered::get);
+		final MemoryBudget.Permit first = budget.acquire(10, () -> false);
+		buffered.set(80);
+		final CompletableFuture<MemoryBudget.Permit> second = acquireAsync(budget, 20, () -> false);
+		assertWaiting(second);
+		buffered.set(0); // flushed
+		budget.signalAll();
+		second.get(1, TimeUnit.SECONDS).close();
+		first.close();
+		budget.close();
+	}
+
+	@Test
+	public void cancelWaiting() throws Exception {
+		final MemoryBudget budget = new MemoryBudget(100);
+		final AtomicBoolean stopping = new AtomicBoolean(false);
+		try (MemoryBudget.Permit first = budget.acquire(100, stopping::get)) {
+			final CompletableFuture<MemoryBudget.Permit> second = acquireAsync(budget, 100, stopping::get);
+			assertWaiting(second);
+			stopping.set(true);
+			budget.signalAll();
+			assertThat(second.get(1, TimeUnit.SECONDS), nullValue());
+		}
+		budget.close();
+	}
+
+	private CompletableFuture<MemoryBudget.Permit> acquireAsync(MemoryBudget budget, long bytes, BooleanSupplier cancelled){
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return budget.acquire(bytes, cancelled);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private void assertWaiting(CompletableFuture<MemoryBudget.Permit> future) throws Exception {
+		try {
+			future.get(300, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			return;
+		}
+		throw new AssertionError("A job is admitted over a budget.");
+	}
+}